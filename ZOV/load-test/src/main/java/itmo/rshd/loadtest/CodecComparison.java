@@ -0,0 +1,139 @@
+package itmo.rshd.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares JSON and CBOR for the payloads the server sends over WebSocket: size of
+ * the encoded frame body and the time to encode and decode it. Runs offline, no server needed.
+ * <p>
+ * Usage: mvn spring-boot:run -Dspring-boot.run.main-class=itmo.rshd.loadtest.CodecComparison
+ *        -Dspring-boot.run.arguments="--neighbours=50 --iterations=20000"
+ */
+public class CodecComparison {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        int neighbours = Integer.parseInt(values.getOrDefault("neighbours", "50"));
+        int iterations = Integer.parseInt(values.getOrDefault("iterations", "20000"));
+        String reportFile = values.getOrDefault("report", "codec-report.json");
+
+        ObjectMapper json = new ObjectMapper();
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+        Random random = new Random(42);
+
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        payloads.put("nearby-full", nearbyUpdate(random, neighbours, true));
+        payloads.put("nearby-diff", nearbyUpdate(random, Math.max(1, neighbours / 10), false));
+        payloads.put("social-rating-update", user(random, "user-1"));
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> payload : payloads.entrySet()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("json", measure(json, payload.getValue(), iterations));
+            entry.put("cbor", measure(cbor, payload.getValue(), iterations));
+            results.put(payload.getKey(), entry);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("finishedAt", Instant.now().toString());
+        report.put("neighbours", neighbours);
+        report.put("iterations", iterations);
+        report.put("payloads", results);
+        json.writerWithDefaultPrettyPrinter().writeValue(new File(reportFile), report);
+        System.out.println(json.writerWithDefaultPrettyPrinter().writeValueAsString(results));
+        System.out.println("Report written to " + reportFile);
+    }
+
+    /**
+     * Encoded size and mean encode and decode times; the first half of the iterations is warm-up
+     */
+    private static Map<String, Object> measure(ObjectMapper mapper, Object payload, int iterations) throws IOException {
+        byte[] encoded = mapper.writeValueAsBytes(payload);
+        long sink = 0;
+        for (int i = 0; i < iterations / 2; i++) {
+            sink += mapper.writeValueAsBytes(payload).length;
+            sink += mapper.readTree(encoded).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += mapper.writeValueAsBytes(payload).length;
+        }
+        long encodeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += mapper.readTree(encoded).size();
+        }
+        long decodeNanos = System.nanoTime() - start;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("bytes", encoded.length);
+        result.put("encodeMicros", encodeNanos / 1e3 / iterations);
+        result.put("decodeMicros", decodeNanos / 1e3 / iterations);
+        // Keeps the loops from being optimised away
+        result.put("checksum", sink);
+        return result;
+    }
+
+    // Same shape as the server's NearbyUsersUpdate: a full list or a diff of moved and left users
+    private static Map<String, Object> nearbyUpdate(Random random, int count, boolean full) {
+        Map<String, Object> update = new LinkedHashMap<>();
+        update.put("seq", random.nextInt(1000));
+        update.put("full", full);
+        List<Object> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> user = new LinkedHashMap<>();
+            user.put("id", String.format("%024x", random.nextLong() & Long.MAX_VALUE));
+            if (full) {
+                user.put("username", "user" + i);
+                user.put("fullName", "Synthetic User " + i);
+            }
+            user.put("lat", Math.round((59.9 + random.nextDouble() * 0.1) * 1e5) / 1e5);
+            user.put("lon", Math.round((30.3 + random.nextDouble() * 0.1) * 1e5) / 1e5);
+            user.put("rating", Math.round(random.nextDouble() * 1000) / 10.0);
+            user.put("status", "REGULAR");
+            users.add(user);
+        }
+        if (full) {
+            update.put("entered", users);
+        } else {
+            update.put("moved", users);
+            update.put("left", List.of(String.format("%024x", random.nextLong() & Long.MAX_VALUE)));
+        }
+        return update;
+    }
+
+    private static Map<String, Object> user(Random random, String id) {
+        Map<String, Object> location = new LinkedHashMap<>();
+        location.put("latitude", 59.9 + random.nextDouble() * 0.1);
+        location.put("longitude", 30.3 + random.nextDouble() * 0.1);
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("id", id);
+        user.put("username", "user1");
+        user.put("fullName", "Synthetic User 1");
+        user.put("socialRating", 72.5);
+        user.put("status", "REGULAR");
+        user.put("currentLocation", location);
+        user.put("regionId", "region-1");
+        user.put("districtId", "district-1");
+        user.put("countryId", "country-1");
+        user.put("active", true);
+        user.put("lastLocationUpdateTimestamp", System.currentTimeMillis());
+        return user;
+    }
+}
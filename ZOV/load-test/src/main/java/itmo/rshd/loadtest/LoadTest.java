@@ -0,0 +1,294 @@
+package itmo.rshd.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives a running ZOV server with synthetic moving users and writes a JSON report.
+ * <p>
+ * Each client is an existing user taken from /api/users. It connects over STOMP, sends
+ * /app/connect, then random-walks with /app/update-location and rates random other
+ * clients with /app/rate-person. Latency is measured from the send to the matching
+ * frame on /topic/user-location-update, and to the next reply on the client's
+ * /user/queue destinations. Optional optimal-route queries exercise the supply graph.
+ * <p>
+ * With --virtual-url the same load is run a second time against a server started in
+ * virtual-thread mode (mvn -Pvirtual-threads spring-boot:run on another port), and the
+ * report holds both results side by side.
+ * <p>
+ * Usage: mvn spring-boot:run -Dspring-boot.run.arguments="--clients=500 --location-rate=2"
+ */
+public class LoadTest {
+
+    private static final String ROUTE_QUERY = "GET /api/missile-supply/routes/optimal";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ObjectMapper objectMapper = new ObjectMapper();
+        HttpClient httpClient = HttpClient.newHttpClient();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options.toMap());
+        if (options.virtualUrl == null) {
+            Map<String, Object> run = run(options, objectMapper, httpClient);
+            report.putAll(run);
+            System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(run.get("destinations")));
+        } else {
+            Map<String, Object> platform = run(options, objectMapper, httpClient);
+            Map<String, Object> virtual = run(options.withUrl(options.virtualUrl), objectMapper, httpClient);
+            report.put("platform", platform);
+            report.put("virtual", virtual);
+            report.put("comparison", compare(platform, virtual));
+            System.out.println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report.get("comparison")));
+        }
+        report.put("finishedAt", Instant.now().toString());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(options.report), report);
+        System.out.println("Report written to " + options.report);
+        System.exit(0);
+    }
+
+    /**
+     * Connect every client, apply the load for the warm-up and the measured period, then disconnect
+     */
+    private static Map<String, Object> run(LoadTestOptions options, ObjectMapper objectMapper, HttpClient httpClient)
+            throws Exception {
+        System.out.println("Loading " + options.url);
+        Metrics metrics = new Metrics();
+        Map<String, SyntheticClient.SentPosition> pendingPositions = new ConcurrentHashMap<>();
+
+        List<SyntheticClient> clients = new ArrayList<>();
+        for (JsonNode user : getJson(httpClient, objectMapper, options.url + "/api/users")) {
+            JsonNode location = user.path("currentLocation");
+            if (clients.size() == options.clients) {
+                break;
+            }
+            if (user.path("active").asBoolean(true) && location.has("latitude")) {
+                clients.add(new SyntheticClient(user.path("id").asText(), location.path("latitude").asDouble(),
+                        location.path("longitude").asDouble(), options, metrics, pendingPositions, objectMapper));
+            }
+        }
+        if (clients.size() < options.clients) {
+            System.out.println("Only " + clients.size() + " users with a location exist, running with that many clients");
+        }
+        List<String> userIds = clients.stream().map(SyntheticClient::getUserId).toList();
+
+        ThreadPoolTaskScheduler heartbeatScheduler = new ThreadPoolTaskScheduler();
+        heartbeatScheduler.setPoolSize(2);
+        heartbeatScheduler.setThreadNamePrefix("stomp-heartbeat-");
+        heartbeatScheduler.initialize();
+        WebSocketStompClient stompClient = new WebSocketStompClient(webSocketClient(options));
+        stompClient.setMessageConverter(new CompositeMessageConverter(List.of(
+                new StringMessageConverter(), new RawPayloadConverter(), new MappingJackson2MessageConverter())));
+        stompClient.setTaskScheduler(heartbeatScheduler);
+        stompClient.setInboundMessageSizeLimit(1024 * 1024);
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+
+        // Ramp up at the configured connect rate
+        List<CompletableFuture<?>> connects = new ArrayList<>();
+        AtomicInteger connectedCount = new AtomicInteger();
+        long connectIntervalMicros = 1_000_000L / Math.max(1, options.connectRate);
+        for (int i = 0; i < clients.size(); i++) {
+            SyntheticClient client = clients.get(i);
+            CompletableFuture<Object> connected = new CompletableFuture<>();
+            connects.add(connected);
+            scheduler.schedule(() -> client.connect(stompClient).whenComplete((session, error) -> {
+                if (error != null) {
+                    metrics.error("CONNECT");
+                } else {
+                    connectedCount.incrementAndGet();
+                }
+                connected.complete(null);
+            }), i * connectIntervalMicros, TimeUnit.MICROSECONDS);
+        }
+        try {
+            CompletableFuture.allOf(connects.toArray(new CompletableFuture<?>[0])).get(
+                    clients.size() * connectIntervalMicros + TimeUnit.SECONDS.toMicros(30), TimeUnit.MICROSECONDS);
+        } catch (TimeoutException e) {
+            System.out.println("Gave up waiting for the remaining connections");
+        }
+        System.out.println(connectedCount.get() + " of " + clients.size() + " clients connected");
+        Map<String, Object> rampUp = metrics.snapshot();
+        metrics.reset();
+
+        // Spread each client's sends over the period so the load is smooth
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (SyntheticClient client : clients) {
+            if (options.locationRate > 0) {
+                long period = (long) (1_000_000 / options.locationRate);
+                scheduler.scheduleAtFixedRate(guarded(metrics, client::sendLocation),
+                        random.nextLong(period), period, TimeUnit.MICROSECONDS);
+            }
+            if (options.ratingRate > 0 && userIds.size() > 1) {
+                long period = (long) (1_000_000 / options.ratingRate);
+                scheduler.scheduleAtFixedRate(guarded(metrics, () -> client.sendRating(randomOther(userIds, client))),
+                        random.nextLong(period), period, TimeUnit.MICROSECONDS);
+            }
+        }
+        if (options.routeRate > 0) {
+            List<String> depotIds = new ArrayList<>();
+            for (JsonNode depot : getJson(httpClient, objectMapper, options.url + "/api/missile-supply/depots")) {
+                depotIds.add(depot.path("depotId").asText());
+            }
+            if (depotIds.size() > 1) {
+                long period = (long) (1_000_000 / options.routeRate);
+                scheduler.scheduleAtFixedRate(guarded(metrics, () -> queryRoute(httpClient, options, metrics, depotIds)),
+                        0, period, TimeUnit.MICROSECONDS);
+            }
+        }
+
+        TimeUnit.SECONDS.sleep(options.warmupSeconds);
+        metrics.reset();
+        TimeUnit.SECONDS.sleep(options.durationSeconds);
+        double measuredSeconds = metrics.elapsedSeconds();
+        Map<String, Object> destinations = metrics.snapshot();
+
+        scheduler.shutdownNow();
+        clients.forEach(SyntheticClient::disconnect);
+        stompClient.stop();
+        heartbeatScheduler.shutdown();
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("url", options.url);
+        run.put("connectedClients", connectedCount.get());
+        run.put("rampUp", rampUp);
+        run.put("measuredSeconds", measuredSeconds);
+        run.put("destinations", destinations);
+        return run;
+    }
+
+    /**
+     * Throughput and latency percentiles of both runs per destination, for the ones both runs saw
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> compare(Map<String, Object> platform, Map<String, Object> virtual) {
+        Map<String, Object> platformDestinations = (Map<String, Object>) platform.get("destinations");
+        Map<String, Object> virtualDestinations = (Map<String, Object>) virtual.get("destinations");
+        Map<String, Object> comparison = new LinkedHashMap<>();
+        platformDestinations.forEach((name, platformEntry) -> {
+            Object virtualEntry = virtualDestinations.get(name);
+            if (virtualEntry == null) {
+                return;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            for (String mode : List.of("platform", "virtual")) {
+                Map<String, Object> stats = (Map<String, Object>) (mode.equals("platform") ? platformEntry : virtualEntry);
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("perSecond", stats.get("perSecond"));
+                summary.put("errors", stats.get("errors"));
+                Map<String, Object> latency = (Map<String, Object>) stats.get("latencyMs");
+                if (latency != null) {
+                    summary.put("p50Ms", latency.get("p50"));
+                    summary.put("p99Ms", latency.get("p99"));
+                }
+                entry.put(mode, summary);
+            }
+            comparison.put(name, entry);
+        });
+        return comparison;
+    }
+
+    private static WebSocketClient webSocketClient(LoadTestOptions options) {
+        StandardWebSocketClient webSocketClient = new StandardWebSocketClient();
+        // /ws is the SockJS endpoint, /ws-native takes plain WebSocket connections
+        if (options.isNativeEndpoint()) {
+            return webSocketClient;
+        }
+        return new SockJsClient(List.of(new WebSocketTransport(webSocketClient)));
+    }
+
+    private static void queryRoute(HttpClient httpClient, LoadTestOptions options, Metrics metrics,
+                                   List<String> depotIds) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String from = depotIds.get(random.nextInt(depotIds.size()));
+        String to = depotIds.get(random.nextInt(depotIds.size()));
+        URI uri = URI.create(options.url + "/api/missile-supply/routes/optimal?fromDepotId="
+                + URLEncoder.encode(from, StandardCharsets.UTF_8) + "&toDepotId="
+                + URLEncoder.encode(to, StandardCharsets.UTF_8));
+        long start = System.nanoTime();
+        metrics.sent(ROUTE_QUERY);
+        httpClient.sendAsync(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, error) -> {
+                    // 404 only means the two depots are not connected
+                    if (error != null || response.statusCode() >= 500) {
+                        metrics.error(ROUTE_QUERY);
+                    } else {
+                        metrics.latency(ROUTE_QUERY, System.nanoTime() - start);
+                    }
+                });
+    }
+
+    private static String randomOther(List<String> userIds, SyntheticClient client) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String target;
+        do {
+            target = userIds.get(random.nextInt(userIds.size()));
+        } while (target.equals(client.getUserId()));
+        return target;
+    }
+
+    // An exception would silently cancel a fixed-rate task, so count it instead
+    private static Runnable guarded(Metrics metrics, Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                metrics.error("SEND");
+            }
+        };
+    }
+
+    private static JsonNode getJson(HttpClient httpClient, ObjectMapper objectMapper, String url)
+            throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = httpClient.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("GET " + url + " returned " + response.statusCode());
+        }
+        JsonNode node = objectMapper.readTree(response.body());
+        return node.isArray() ? node : objectMapper.createArrayNode();
+    }
+
+    /**
+     * Hands every frame body over as raw bytes whatever its content type, so sizes can be counted
+     */
+    private static final class RawPayloadConverter extends ByteArrayMessageConverter {
+        @Override
+        protected boolean supportsMimeType(MessageHeaders headers) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package itmo.rshd.loadtest;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line settings of a load run, given as --name=value
+ */
+public class LoadTestOptions {
+
+    final String url;             // Base HTTP url of the server
+    final String endpoint;        // /ws (SockJS) or /ws-native (plain WebSocket)
+    final int clients;
+    final int durationSeconds;
+    final int warmupSeconds;
+    final int connectRate;        // New STOMP sessions per second
+    final double locationRate;    // /app/update-location per client per second
+    final double ratingRate;      // /app/rate-person per client per second
+    final double stepMeters;      // Random walk step per location update
+    final double routeRate;       // Optimal supply route queries per second over all clients
+    final boolean globalLocationTopic;
+    final String virtualUrl;      // Second server running in virtual-thread mode, or null
+    final String report;
+
+    // As given, so the same settings can be pointed at another server
+    private final Map<String, String> given;
+
+    private LoadTestOptions(Map<String, String> values) {
+        given = new HashMap<>(values);
+        url = get(values, "url", "http://localhost:21341");
+        endpoint = get(values, "endpoint", "/ws");
+        clients = Integer.parseInt(get(values, "clients", "100"));
+        durationSeconds = Integer.parseInt(get(values, "duration", "60"));
+        warmupSeconds = Integer.parseInt(get(values, "warmup", "10"));
+        connectRate = Integer.parseInt(get(values, "connect-rate", "50"));
+        locationRate = Double.parseDouble(get(values, "location-rate", "1"));
+        ratingRate = Double.parseDouble(get(values, "rating-rate", "0.1"));
+        stepMeters = Double.parseDouble(get(values, "step-meters", "25"));
+        routeRate = Double.parseDouble(get(values, "route-rate", "0"));
+        globalLocationTopic = Boolean.parseBoolean(get(values, "global-location-topic", "true"));
+        virtualUrl = get(values, "virtual-url", null);
+        report = get(values, "report", "load-report.json");
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + values.keySet());
+        }
+    }
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return new LoadTestOptions(values);
+    }
+
+    /**
+     * The same settings against another server
+     */
+    LoadTestOptions withUrl(String otherUrl) {
+        Map<String, String> values = new HashMap<>(given);
+        values.put("url", otherUrl);
+        return new LoadTestOptions(values);
+    }
+
+    boolean isNativeEndpoint() {
+        return endpoint.endsWith("-native");
+    }
+
+    /**
+     * SockJS connects with the http(s) url, a plain WebSocket client needs ws(s)
+     */
+    String endpointUrl() {
+        return (isNativeEndpoint() ? url.replaceFirst("^http", "ws") : url) + endpoint;
+    }
+
+    private static String get(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("url", url);
+        map.put("endpoint", endpoint);
+        map.put("clients", clients);
+        map.put("durationSeconds", durationSeconds);
+        map.put("warmupSeconds", warmupSeconds);
+        map.put("connectRate", connectRate);
+        map.put("locationRate", locationRate);
+        map.put("ratingRate", ratingRate);
+        map.put("stepMeters", stepMeters);
+        map.put("routeRate", routeRate);
+        map.put("globalLocationTopic", globalLocationTopic);
+        if (virtualUrl != null) {
+            map.put("virtualUrl", virtualUrl);
+        }
+        return map;
+    }
+}
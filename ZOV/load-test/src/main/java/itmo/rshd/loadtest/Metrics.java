@@ -0,0 +1,112 @@
+package itmo.rshd.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Message counts and latency histograms per destination, safe to record from any client thread
+ */
+public class Metrics {
+
+    // Latencies up to one minute are tracked with three significant digits
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<String, Stats> byName = new ConcurrentHashMap<>();
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * Count one received message of the given size
+     */
+    public void received(String name, int bytes) {
+        Stats stats = stats(name);
+        stats.messages.increment();
+        stats.bytes.add(bytes);
+    }
+
+    /**
+     * Count one sent message or request
+     */
+    public void sent(String name) {
+        stats(name).messages.increment();
+    }
+
+    public void latency(String name, long nanos) {
+        stats(name).recorder.recordValue(Math.min(Math.max(nanos, 0), MAX_LATENCY_NANOS));
+    }
+
+    public void error(String name) {
+        stats(name).errors.increment();
+    }
+
+    /**
+     * Drop everything recorded so far, e.g. at the end of the warm-up
+     */
+    public void reset() {
+        byName.values().forEach(Stats::reset);
+        startNanos = System.nanoTime();
+    }
+
+    public Map<String, Object> snapshot() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        Map<String, Object> result = new TreeMap<>();
+        byName.forEach((name, stats) -> {
+            Histogram histogram = stats.recorder.getIntervalHistogram();
+            long messages = stats.messages.sum();
+            if (messages == 0 && stats.errors.sum() == 0 && histogram.getTotalCount() == 0) {
+                return;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("messages", messages);
+            entry.put("perSecond", messages / seconds);
+            entry.put("bytes", stats.bytes.sum());
+            entry.put("errors", stats.errors.sum());
+            if (histogram.getTotalCount() > 0) {
+                entry.put("latencyMs", percentiles(histogram));
+            }
+            result.put(name, entry);
+        });
+        return result;
+    }
+
+    public double elapsedSeconds() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    private static Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", histogram.getTotalCount());
+        map.put("min", histogram.getMinValue() / 1e6);
+        map.put("mean", histogram.getMean() / 1e6);
+        map.put("p50", histogram.getValueAtPercentile(50) / 1e6);
+        map.put("p90", histogram.getValueAtPercentile(90) / 1e6);
+        map.put("p99", histogram.getValueAtPercentile(99) / 1e6);
+        map.put("p999", histogram.getValueAtPercentile(99.9) / 1e6);
+        map.put("max", histogram.getMaxValue() / 1e6);
+        return map;
+    }
+
+    private Stats stats(String name) {
+        return byName.computeIfAbsent(name, key -> new Stats());
+    }
+
+    private static final class Stats {
+        final Recorder recorder = new Recorder(MAX_LATENCY_NANOS, 3);
+        final LongAdder messages = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder errors = new LongAdder();
+
+        void reset() {
+            recorder.reset();
+            messages.reset();
+            bytes.reset();
+            errors.reset();
+        }
+    }
+}
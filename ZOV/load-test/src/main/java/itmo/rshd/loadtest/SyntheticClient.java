@@ -0,0 +1,209 @@
+package itmo.rshd.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One simulated user: a STOMP session that random-walks and rates other users,
+ * subscribed to the same destinations as the web client.
+ */
+public class SyntheticClient {
+
+    static final String LOCATION_TOPIC = "/topic/user-location-update";
+    static final String NEARBY_QUEUE = "/user/queue/users-nearby-update";
+    static final String RATING_QUEUE = "/user/queue/social-rating-update";
+
+    // Counted but without a send to measure latency against
+    private static final List<String> PASSIVE_DESTINATIONS = List.of(
+            "/topic/region-status-update", "/topic/region-status-delta", "/topic/missile-launch",
+            "/user/queue/region-change");
+
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    private final String userId;
+    private final LoadTestOptions options;
+    private final Metrics metrics;
+    private final Map<String, SentPosition> pendingPositions;
+    private final ObjectMapper objectMapper;
+
+    private double latitude;
+    private double longitude;
+    private volatile StompSession session;
+
+    // Send time of the last message whose reply on a user queue has not arrived yet, 0 if none
+    private final AtomicLong locationSentNanos = new AtomicLong();
+    private final AtomicLong ratingSentNanos = new AtomicLong();
+
+    /**
+     * Last position each client sent, matched against broadcast frames to measure delivery latency
+     */
+    record SentPosition(double latitude, double longitude, long nanos) {
+    }
+
+    SyntheticClient(String userId, double latitude, double longitude, LoadTestOptions options, Metrics metrics,
+                    Map<String, SentPosition> pendingPositions, ObjectMapper objectMapper) {
+        this.userId = userId;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.options = options;
+        this.metrics = metrics;
+        this.pendingPositions = pendingPositions;
+        this.objectMapper = objectMapper;
+    }
+
+    String getUserId() {
+        return userId;
+    }
+
+    CompletableFuture<StompSession> connect(WebSocketStompClient stompClient) {
+        long start = System.nanoTime();
+        // The server takes the session's user from this header, it addresses the /user/queue replies
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("userId", userId);
+        StompSessionHandlerAdapter handler = new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession connected, StompHeaders connectedHeaders) {
+                metrics.latency("CONNECT", System.nanoTime() - start);
+                session = connected;
+                subscribeAll(connected);
+                connected.send(textHeaders("/app/connect"), userId);
+            }
+
+            @Override
+            public void handleException(StompSession failed, StompCommand command, StompHeaders headers,
+                                        byte[] payload, Throwable exception) {
+                metrics.error("STOMP");
+            }
+
+            @Override
+            public void handleTransportError(StompSession failed, Throwable exception) {
+                metrics.error("TRANSPORT");
+            }
+        };
+        return stompClient.connectAsync(options.endpointUrl(), new WebSocketHttpHeaders(), connectHeaders, handler);
+    }
+
+    void disconnect() {
+        StompSession current = session;
+        if (current != null && current.isConnected()) {
+            current.disconnect();
+        }
+    }
+
+    /**
+     * Take one random-walk step and publish the new position
+     */
+    void sendLocation() {
+        StompSession current = session;
+        if (current == null || !current.isConnected()) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double bearing = random.nextDouble(2 * Math.PI);
+        double lat;
+        double lon;
+        synchronized (this) {
+            latitude = Math.max(-85, Math.min(85, latitude + options.stepMeters * Math.cos(bearing) / METERS_PER_DEGREE));
+            longitude += options.stepMeters * Math.sin(bearing)
+                    / (METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+            lat = latitude;
+            lon = longitude;
+        }
+        long now = System.nanoTime();
+        pendingPositions.put(userId, new SentPosition(lat, lon, now));
+        locationSentNanos.set(now);
+        current.send("/app/update-location",
+                Map.of("userId", userId, "location", Map.of("latitude", lat, "longitude", lon)));
+        metrics.sent("/app/update-location");
+    }
+
+    void sendRating(String targetUserId) {
+        StompSession current = session;
+        if (current == null || !current.isConnected()) {
+            return;
+        }
+        int change = ThreadLocalRandom.current().nextBoolean() ? 1 : -1;
+        ratingSentNanos.set(System.nanoTime());
+        current.send("/app/rate-person",
+                Map.of("userId", userId, "targetUserId", targetUserId, "ratingChange", change));
+        metrics.sent("/app/rate-person");
+    }
+
+    private void subscribeAll(StompSession connected) {
+        if (options.globalLocationTopic) {
+            connected.subscribe(LOCATION_TOPIC, handler(LOCATION_TOPIC, this::onLocationFrame));
+        }
+        connected.subscribe(NEARBY_QUEUE, handler(NEARBY_QUEUE, payload -> replyLatency(NEARBY_QUEUE, locationSentNanos)));
+        connected.subscribe(RATING_QUEUE, handler(RATING_QUEUE, payload -> replyLatency(RATING_QUEUE, ratingSentNanos)));
+        for (String destination : PASSIVE_DESTINATIONS) {
+            connected.subscribe(destination, handler(destination, payload -> { }));
+        }
+    }
+
+    private void onLocationFrame(byte[] payload) throws IOException {
+        long now = System.nanoTime();
+        for (JsonNode position : objectMapper.readTree(payload)) {
+            SentPosition sent = pendingPositions.get(position.path("id").asText());
+            if (sent != null && sent.latitude() == position.path("lat").asDouble()
+                    && sent.longitude() == position.path("lon").asDouble()) {
+                metrics.latency(LOCATION_TOPIC, now - sent.nanos());
+            }
+        }
+    }
+
+    // Attributed to this client's own most recent send that has not been answered yet
+    private void replyLatency(String destination, AtomicLong sentNanos) {
+        long sent = sentNanos.getAndSet(0);
+        if (sent != 0) {
+            metrics.latency(destination, System.nanoTime() - sent);
+        }
+    }
+
+    private StompFrameHandler handler(String destination, FrameConsumer consumer) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                byte[] body = (byte[]) payload;
+                metrics.received(destination, body.length);
+                try {
+                    consumer.accept(body);
+                } catch (IOException e) {
+                    metrics.error(destination);
+                }
+            }
+        };
+    }
+
+    private static StompHeaders textHeaders(String destination) {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        headers.setContentType(MimeTypeUtils.TEXT_PLAIN);
+        return headers;
+    }
+
+    @FunctionalInterface
+    private interface FrameConsumer {
+        void accept(byte[] payload) throws IOException;
+    }
+}
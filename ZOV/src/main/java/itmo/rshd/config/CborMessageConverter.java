@@ -0,0 +1,65 @@
+package itmo.rshd.config;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.core.GenericTypeResolver;
+import org.springframework.core.MethodParameter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+
+import java.io.IOException;
+
+/**
+ * Jackson CBOR payload converter for STOMP messages sent with content-type application/cbor.
+ * Only used when the content type asks for it, so JSON stays the default.
+ */
+public class CborMessageConverter extends AbstractMessageConverter {
+
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    private final ObjectMapper mapper = CBORMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    public CborMessageConverter() {
+        super(APPLICATION_CBOR);
+        setStrictContentTypeMatch(true);
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return mapper;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return true;
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        try {
+            // The method parameter carries the element type of list payloads such as /app/rate-people
+            JavaType type = conversionHint instanceof MethodParameter parameter
+                    ? mapper.constructType(GenericTypeResolver.resolveType(
+                            parameter.getNestedGenericParameterType(), parameter.getContainingClass()))
+                    : mapper.constructType(targetClass);
+            return mapper.readValue((byte[]) message.getPayload(), type);
+        } catch (IOException e) {
+            throw new MessageConversionException(message, "Could not read CBOR payload: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        try {
+            return mapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            throw new MessageConversionException("Could not write CBOR payload: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package itmo.rshd.config;
+
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * In-process ActiveMQ Artemis broker with a STOMP acceptor for the broker relay.
+ * Meant for single-box and test setups; production nodes relay to a shared external broker.
+ */
+@Configuration
+@ConditionalOnProperty(name = "zov.websocket.broker", havingValue = "embedded")
+public class EmbeddedBrokerConfig {
+
+    @Value("${zov.websocket.relay.host:localhost}")
+    private String host;
+
+    @Value("${zov.websocket.relay.port:61613}")
+    private int port;
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public EmbeddedActiveMQ embeddedBroker() throws Exception {
+        ConfigurationImpl configuration = new ConfigurationImpl();
+        configuration.setPersistenceEnabled(false);
+        configuration.setSecurityEnabled(false);
+        // Map STOMP /topic/* to multicast and /queue/* to anycast addresses, matching the simple broker semantics
+        configuration.addAcceptorConfiguration("stomp", "tcp://" + host + ":" + port
+                + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/");
+
+        EmbeddedActiveMQ broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        System.out.println("Starting embedded STOMP broker on " + host + ":" + port);
+        return broker;
+    }
+}
@@ -8,6 +8,9 @@ import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
 import org.springframework.data.mongodb.core.index.GeospatialIndex;
 import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 import jakarta.annotation.PostConstruct;
 
@@ -67,5 +70,9 @@ public class MongoConfig {
         GeospatialIndex missileGeoIndex = new GeospatialIndex("currentLocation");
         missileGeoIndex.typed(GeoSpatialIndexType.GEO_2DSPHERE);
         mongoTemplate.indexOps("missiles").ensureIndex(missileGeoIndex);
+
+        // Missiles saved before versioning would otherwise be treated as new and inserted again on save
+        mongoTemplate.updateMulti(Query.query(Criteria.where("version").exists(false)),
+                new Update().set("version", 0L), "missiles");
     }
 }
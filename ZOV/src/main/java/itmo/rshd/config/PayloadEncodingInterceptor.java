@@ -0,0 +1,213 @@
+package itmo.rshd.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-subscription payload encoding.
+ * A client on the native WebSocket endpoint can SUBSCRIBE with an
+ * "accept: application/cbor" (or "content-type") header. Frames for that
+ * subscription then go out as binary CBOR, everyone else keeps JSON.
+ * Broadcast JSON frames are transcoded once per payload no matter how many
+ * binary subscribers receive them; senders can skip JSON entirely for
+ * destinations where {@link #prefersCbor(String)} holds.
+ */
+@Component
+public class PayloadEncodingInterceptor implements ChannelInterceptor {
+
+    public static final String BINARY_CAPABLE_ATTRIBUTE = "binaryCapable";
+
+    // STOMP only sends octet-stream payloads as binary WebSocket frames; the parameter names the encoding
+    private static final MimeType CBOR_FRAME_TYPE = new MimeType("application", "octet-stream",
+            Map.of("encoding", "cbor"));
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper cborMapper = new CborMessageConverter().getObjectMapper();
+
+    // sessionId -> subscriptionId -> subscription
+    private final Map<String, Map<String, Subscription>> subscriptions = new ConcurrentHashMap<>();
+    // destination -> { all subscriptions, CBOR subscriptions }
+    private final Map<String, int[]> destinationCounts = new ConcurrentHashMap<>();
+    // Broadcast frames share one payload array across subscribers, so identity keys work as a cache
+    private final Map<byte[], byte[]> transcoded = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * True if every current subscriber of the destination asked for CBOR,
+     * so the payload can be encoded as CBOR directly instead of JSON
+     */
+    public boolean prefersCbor(String destination) {
+        int[] counts = destinationCounts.get(destination);
+        return counts != null && counts[0] > 0 && counts[0] == counts[1];
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (type == null || sessionId == null) {
+            return message;
+        }
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+        switch (type) {
+            case SUBSCRIBE -> {
+                String destination = userScoped(SimpMessageHeaderAccessor.getDestination(headers),
+                        SimpMessageHeaderAccessor.getUser(headers));
+                if (subscriptionId != null && destination != null) {
+                    Subscription subscription = new Subscription(destination, wantsCbor(headers));
+                    subscriptions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                            .put(subscriptionId, subscription);
+                    count(subscription, 1);
+                }
+            }
+            case UNSUBSCRIBE -> {
+                Map<String, Subscription> session = subscriptions.get(sessionId);
+                Subscription removed = session != null && subscriptionId != null ? session.remove(subscriptionId) : null;
+                if (removed != null) {
+                    count(removed, -1);
+                }
+            }
+            case DISCONNECT -> {
+                Map<String, Subscription> session = subscriptions.remove(sessionId);
+                if (session != null) {
+                    session.values().forEach(subscription -> count(subscription, -1));
+                }
+            }
+            case MESSAGE -> {
+                Map<String, Subscription> session = subscriptions.get(sessionId);
+                Subscription subscription = session != null && subscriptionId != null ? session.get(subscriptionId) : null;
+                return encodeFor(message, subscription != null && subscription.cbor);
+            }
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    /**
+     * The key under which a user's subscriptions to a queue are counted.
+     * Clients subscribe to /user/queue/x, senders address the user id and /queue/x,
+     * so both sides have to ask about /user/{userId}/queue/x.
+     */
+    public static String userDestination(String userId, String destination) {
+        return "/user/" + userId + destination;
+    }
+
+    private static String userScoped(String destination, Principal user) {
+        if (destination != null && user != null && destination.startsWith("/user/queue/")) {
+            return userDestination(user.getName(), destination.substring("/user".length()));
+        }
+        return destination;
+    }
+
+    private void count(Subscription subscription, int delta) {
+        destinationCounts.compute(subscription.destination, (destination, counts) -> {
+            int[] updated = counts != null ? counts : new int[2];
+            updated[0] += delta;
+            if (subscription.cbor) {
+                updated[1] += delta;
+            }
+            return updated[0] > 0 ? updated : null;
+        });
+    }
+
+    private boolean wantsCbor(MessageHeaders headers) {
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        // SockJS is text-only, so binary encodings are only honoured on the native endpoint
+        if (attributes == null || !Boolean.TRUE.equals(attributes.get(BINARY_CAPABLE_ATTRIBUTE))) {
+            return false;
+        }
+        String accept = firstNativeHeader(headers, "accept");
+        if (accept == null) {
+            accept = firstNativeHeader(headers, "content-type");
+        }
+        return accept != null && CborMessageConverter.APPLICATION_CBOR.isCompatibleWith(MimeTypeUtils.parseMimeType(accept));
+    }
+
+    private static String firstNativeHeader(MessageHeaders headers, String name) {
+        @SuppressWarnings("unchecked")
+        Map<String, List<String>> nativeHeaders =
+                (Map<String, List<String>>) headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+        List<String> values = nativeHeaders != null ? nativeHeaders.get(name) : null;
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    private Message<?> encodeFor(Message<?> message, boolean cbor) {
+        MimeType contentType = contentTypeOf(message.getHeaders());
+        if (!(message.getPayload() instanceof byte[] payload) || contentType == null) {
+            return message;
+        }
+        boolean isJson = MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType);
+        boolean isCbor = CborMessageConverter.APPLICATION_CBOR.isCompatibleWith(contentType);
+        try {
+            if (cbor && isJson) {
+                return withPayload(message, transcodeToCbor(payload), CBOR_FRAME_TYPE);
+            }
+            if (cbor && isCbor) {
+                return withPayload(message, payload, CBOR_FRAME_TYPE);
+            }
+            if (!cbor && isCbor) {
+                // A JSON subscriber joined after the sender chose CBOR
+                return withPayload(message, jsonMapper.writeValueAsBytes(cborMapper.readTree(payload)),
+                        MimeTypeUtils.APPLICATION_JSON);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not transcode frame: " + e.getMessage());
+        }
+        return message;
+    }
+
+    private byte[] transcodeToCbor(byte[] json) throws IOException {
+        byte[] cbor = transcoded.get(json);
+        if (cbor == null) {
+            JsonNode tree = jsonMapper.readTree(json);
+            cbor = cborMapper.writeValueAsBytes(tree);
+            transcoded.put(json, cbor);
+        }
+        return cbor;
+    }
+
+    private static MimeType contentTypeOf(MessageHeaders headers) {
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        if (contentType instanceof MimeType mimeType) {
+            return mimeType;
+        }
+        return contentType instanceof String text ? MimeTypeUtils.parseMimeType(text) : null;
+    }
+
+    private static Message<?> withPayload(Message<?> message, byte[] payload, MimeType contentType) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.setContentType(contentType);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private static final class Subscription {
+        final String destination;
+        final boolean cbor;
+
+        Subscription(String destination, boolean cbor) {
+            this.destination = destination;
+            this.cbor = cbor;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package itmo.rshd.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * Names the STOMP session after the user id sent in the CONNECT frame's "userId" header,
+ * so /user/queue/... subscriptions and convertAndSendToUser(userId, ...) meet.
+ * Like /app/connect this trusts the id the client presents.
+ */
+@Component
+public class UserPrincipalInterceptor implements ChannelInterceptor {
+
+    public static final String USER_ID_HEADER = "userId";
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
+            String userId = accessor.getFirstNativeHeader(USER_ID_HEADER);
+            if (userId != null && !userId.isBlank()) {
+                accessor.setUser(new UserPrincipal(userId));
+            }
+        }
+        return message;
+    }
+
+    private record UserPrincipal(String name) implements Principal {
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
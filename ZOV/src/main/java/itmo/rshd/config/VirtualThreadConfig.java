@@ -0,0 +1,38 @@
+package itmo.rshd.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Runs @Scheduled methods on virtual threads when spring.threads.virtual.enabled is set on Java 21+.
+ * Otherwise they share the STOMP broker's heartbeat scheduler, the only TaskScheduler in the app.
+ * Every scheduled method here is fixed-delay, so each needs a worker of its own: a blocking
+ * supply network check must not hold back the location broadcast tick.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig implements SchedulingConfigurer {
+
+    @Value("${zov.scheduling.virtual-pool-size:8}")
+    private int poolSize;
+
+    @Bean
+    public ThreadPoolTaskScheduler virtualScheduledTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadFactory(new VirtualThreadTaskExecutor("scheduled-").getVirtualThreadFactory());
+        return scheduler;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.setTaskScheduler(virtualScheduledTaskScheduler());
+    }
+}
@@ -1,38 +1,194 @@
 package itmo.rshd.config;
 
+import itmo.rshd.service.OutboundQueueService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // simple (in-memory, single node), relay (external STOMP broker) or embedded (in-process Artemis)
+    @Value("${zov.websocket.broker:simple}")
+    private String brokerMode;
+
+    @Value("${zov.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${zov.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${zov.websocket.relay.login:guest}")
+    private String relayLogin;
+
+    @Value("${zov.websocket.relay.passcode:guest}")
+    private String relayPasscode;
+
+    @Value("${zov.websocket.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+
+    @Value("${zov.websocket.inbound.max-pool-size:16}")
+    private int inboundMaxPoolSize;
+
+    @Value("${zov.websocket.inbound.queue-capacity:1000}")
+    private int inboundQueueCapacity;
+
+    // Upper bound on concurrently handled inbound messages when running on virtual threads
+    @Value("${zov.websocket.inbound.virtual-concurrency-limit:1000}")
+    private int inboundVirtualConcurrencyLimit;
+
+    @Value("${zov.websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${zov.websocket.outbound.max-pool-size:16}")
+    private int outboundMaxPoolSize;
+
+    @Value("${zov.websocket.outbound.channel-queue-capacity:1000}")
+    private int outboundQueueCapacity;
+
+    @Value("${zov.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimit;
+
+    @Value("${zov.websocket.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private OutboundQueueService outboundQueueService;
+
+    @Autowired
+    private PayloadEncodingInterceptor payloadEncodingInterceptor;
+
+    @Autowired
+    private UserPrincipalInterceptor userPrincipalInterceptor;
+
+    private static final String[] ALLOWED_ORIGINS = {
+        "http://localhost:5173", 
+        "http://192.168.0.183:5173", 
+        "http://172.18.80.1:5173",
+        "http://185.171.195.6:12348"
+    };
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable a simple in-memory message broker for broadcasting to clients
-        // Messages with these prefixes will be routed to the broker
-        config.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equals(brokerMode) || "embedded".equals(brokerMode)) {
+            // Relay /topic and /queue to a STOMP broker shared by every node
+            config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    // Messages for users connected to another node are rebroadcast through the broker
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    // Nodes share their connected users so /user destinations resolve cluster-wide
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            // Enable a simple in-memory message broker for broadcasting to clients
+            // Messages with these prefixes will be routed to the broker
+            config.enableSimpleBroker("/topic", "/queue");
+        }
         
         // Messages with this prefix will be routed to @MessageMapping methods
         config.setApplicationDestinationPrefixes("/app");
         
-        // Set prefix for user-specific messages (e.g., /user/{userId}/queue/location)
+        // Clients subscribe to /user/queue/...; convertAndSendToUser(userId, "/queue/...") targets the sessions of that user
         config.setUserDestinationPrefix("/user");
+
+        // Keep frames to one session in send order; nearby-user diffs carry sequence numbers
+        config.setPreservePublishOrder(true);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            // @MessageMapping handlers block on Mongo and Gremlin, so give each message its own virtual thread.
+            // The limit makes the WebSocket reader wait instead of queueing without bound.
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ws-inbound-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(inboundVirtualConcurrencyLimit);
+            registration.executor(executor);
+        } else {
+            registration.taskExecutor()
+                    .corePoolSize(inboundCorePoolSize)
+                    .maxPoolSize(inboundMaxPoolSize)
+                    .queueCapacity(inboundQueueCapacity);
+        }
+        // Names the session after its user, then records which subscriptions asked for a binary encoding
+        registration.interceptors(userPrincipalInterceptor, payloadEncodingInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+        registration.interceptors(payloadEncodingInterceptor);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Decodes application/cbor SEND frames; JSON stays the default for everything else
+        messageConverters.add(new CborMessageConverter());
+        return true;
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Per-session bounded queues keep one slow client from holding outbound channel threads.
+        // Spring's decorator wraps them and only times the enqueue; the queues enforce these limits on the socket.
+        registration.addDecoratorFactory(outboundQueueService)
+                .setSendTimeLimit(sendTimeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit);
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Handle a session's messages in arrival order, so location updates cannot overtake each other
+        registry.setPreserveReceiveOrder(true);
+
         // Register STOMP over WebSocket endpoint
         registry.addEndpoint("/ws")
-                .setAllowedOrigins(
-                    "http://localhost:5173", 
-                    "http://192.168.0.183:5173", 
-                    "http://172.18.80.1:5173",
-                    "http://185.171.195.6:12348"
-                )
+                .setAllowedOrigins(ALLOWED_ORIGINS)
                 .withSockJS(); // Enables SockJS fallback options
+
+        // Plain WebSocket endpoint for clients that negotiate binary payload encodings
+        registry.addEndpoint("/ws-native")
+                .setAllowedOrigins(ALLOWED_ORIGINS)
+                .addInterceptors(new HandshakeInterceptor() {
+                    @Override
+                    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+                        attributes.put(PayloadEncodingInterceptor.BINARY_CAPABLE_ATTRIBUTE, true);
+                        return true;
+                    }
+
+                    @Override
+                    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                               WebSocketHandler wsHandler, Exception exception) {
+                    }
+                });
     }
-} 
\ No newline at end of file
+}
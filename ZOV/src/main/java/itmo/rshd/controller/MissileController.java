@@ -3,13 +3,19 @@ package itmo.rshd.controller;
 import itmo.rshd.model.Missile;
 import itmo.rshd.model.Missile.MissileStatus;
 import itmo.rshd.model.Missile.MissileType;
+import itmo.rshd.model.MissileBulkRequest;
+import itmo.rshd.model.MissileBulkResult;
+import itmo.rshd.model.MissileInventory;
 import itmo.rshd.service.MissileService;
+import itmo.rshd.service.MissileService.CoverageMode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -47,8 +53,13 @@ public class MissileController {
         Optional<Missile> existingMissile = missileService.getMissileById(id);
         if (existingMissile.isPresent()) {
             missile.setId(id);
-            Missile updatedMissile = missileService.updateMissile(missile);
-            return new ResponseEntity<>(updatedMissile, HttpStatus.OK);
+            try {
+                Missile updatedMissile = missileService.updateMissile(missile);
+                return new ResponseEntity<>(updatedMissile, HttpStatus.OK);
+            } catch (OptimisticLockingFailureException e) {
+                // The missile changed since the client read it
+                return new ResponseEntity<>(HttpStatus.CONFLICT);
+            }
         } else {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
@@ -83,6 +94,28 @@ public class MissileController {
         return new ResponseEntity<>(missiles, HttpStatus.OK);
     }
 
+    @GetMapping("/ready/{type}/count")
+    public ResponseEntity<Long> countReadyMissilesByType(@PathVariable MissileType type) {
+        long count = missileService.countReadyMissilesByType(type);
+        return new ResponseEntity<>(count, HttpStatus.OK);
+    }
+
+    @GetMapping("/depot/{depotId}")
+    public ResponseEntity<List<Missile>> getMissilesByDepot(@PathVariable String depotId) {
+        List<Missile> missiles = missileService.findMissilesByDepot(depotId);
+        return new ResponseEntity<>(missiles, HttpStatus.OK);
+    }
+
+    @GetMapping("/inventory")
+    public ResponseEntity<MissileInventory> getInventory() {
+        return new ResponseEntity<>(missileService.getInventory(), HttpStatus.OK);
+    }
+
+    @GetMapping("/inventory/depot/{depotId}")
+    public ResponseEntity<MissileInventory> getDepotInventory(@PathVariable String depotId) {
+        return new ResponseEntity<>(missileService.getDepotInventory(depotId), HttpStatus.OK);
+    }
+
     @PutMapping("/{id}/maintenance")
     public ResponseEntity<String> performMaintenance(@PathVariable String id) {
         boolean success = missileService.performMaintenance(id);
@@ -105,6 +138,25 @@ public class MissileController {
         }
     }
 
+    @PostMapping("/maintenance:bulk")
+    public ResponseEntity<MissileBulkResult> performMaintenance(@RequestBody MissileBulkRequest selection) {
+        try {
+            return new ResponseEntity<>(missileService.performMaintenance(selection), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            // No missile ids and no criteria, or too many ids
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @PostMapping("/maintenance/complete:bulk")
+    public ResponseEntity<MissileBulkResult> completeMaintenance(@RequestBody MissileBulkRequest selection) {
+        try {
+            return new ResponseEntity<>(missileService.completeMaintenance(selection), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @PostMapping("/{id}/deploy")
     public ResponseEntity<String> deployMissile(
             @PathVariable String id,
@@ -127,4 +179,23 @@ public class MissileController {
         List<Missile> missiles = missileService.findMissilesForRegion(regionId, minRange);
         return new ResponseEntity<>(missiles, HttpStatus.OK);
     }
+
+    @GetMapping("/covering/{regionId}")
+    public ResponseEntity<List<Missile>> getMissilesCoveringRegion(
+            @PathVariable String regionId,
+            @RequestParam(defaultValue = "0") double minRange,
+            @RequestParam(defaultValue = "BOUNDARY") CoverageMode mode) {
+
+        List<Missile> missiles = missileService.findMissilesCoveringRegion(regionId, minRange, mode);
+        return new ResponseEntity<>(missiles, HttpStatus.OK);
+    }
+
+    @GetMapping("/coverage")
+    public ResponseEntity<Map<String, List<String>>> getCoverageMatrix(
+            @RequestParam(defaultValue = "0") double minRange,
+            @RequestParam(defaultValue = "BOUNDARY") CoverageMode mode) {
+
+        Map<String, List<String>> matrix = missileService.computeCoverageMatrix(minRange, mode);
+        return new ResponseEntity<>(matrix, HttpStatus.OK);
+    }
 } 
\ No newline at end of file
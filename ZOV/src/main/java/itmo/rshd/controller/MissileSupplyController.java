@@ -7,6 +7,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import itmo.rshd.graph.RouteSearch.Metric;
+import itmo.rshd.model.ReachableDepot;
+import itmo.rshd.model.SupplyRoutePlan;
 import itmo.rshd.service.MissileSupplyGraphService;
 
 import java.util.List;
@@ -40,10 +43,30 @@ public class MissileSupplyController {
         return new ResponseEntity<>(depot, HttpStatus.OK);
     }
     
+    /**
+     * All supply routes, or only those crossing a map viewport
+     * @param bbox optional minLon,minLat,maxLon,maxLat
+     */
     @GetMapping("/routes")
-    public ResponseEntity<List<Map<String, Object>>> getAllRoutes() {
-        List<Map<String, Object>> routes = missileSupplyGraphService.getAllSupplyRoutes();
-        return new ResponseEntity<>(routes, HttpStatus.OK);
+    public ResponseEntity<List<Map<String, Object>>> getAllRoutes(@RequestParam(required = false) String bbox) {
+        if (bbox == null) {
+            List<Map<String, Object>> routes = missileSupplyGraphService.getAllSupplyRoutes();
+            return new ResponseEntity<>(routes, HttpStatus.OK);
+        }
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            double minLon = Double.parseDouble(parts[0].trim());
+            double minLat = Double.parseDouble(parts[1].trim());
+            double maxLon = Double.parseDouble(parts[2].trim());
+            double maxLat = Double.parseDouble(parts[3].trim());
+            List<Map<String, Object>> routes = missileSupplyGraphService.getSupplyRoutesInBox(minLon, minLat, maxLon, maxLat);
+            return new ResponseEntity<>(routes, HttpStatus.OK);
+        } catch (NumberFormatException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
     }
     
     @PutMapping("/routes/{sourceDepotId}/{targetDepotId}")
@@ -136,9 +159,15 @@ public class MissileSupplyController {
     @GetMapping("/routes/optimal")
     public ResponseEntity<List<Map<String, Object>>> findOptimalRoute(
             @RequestParam String fromDepotId,
-            @RequestParam String toDepotId) {
+            @RequestParam String toDepotId,
+            @RequestParam(defaultValue = "WEIGHTED") Metric metric,
+            @RequestParam(defaultValue = "1") double riskWeight,
+            @RequestParam(defaultValue = "16") int maxHops,
+            @RequestParam(required = false) Double maxCost,
+            @RequestParam(defaultValue = "0") double minCapacity) {
         
-        List<Map<String, Object>> route = missileSupplyGraphService.findOptimalSupplyRoute(fromDepotId, toDepotId);
+        List<Map<String, Object>> route = missileSupplyGraphService.findOptimalSupplyRoute(fromDepotId, toDepotId,
+                metric, riskWeight, maxHops, maxCost != null ? maxCost : Double.POSITIVE_INFINITY, minCapacity);
         
         if (route.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -147,6 +176,46 @@ public class MissileSupplyController {
         return new ResponseEntity<>(route, HttpStatus.OK);
     }
 
+    /**
+     * The optimal route with its total cost, distance and risk, and whether the search was cut short
+     */
+    @GetMapping("/routes/plan")
+    public ResponseEntity<SupplyRoutePlan> planRoute(
+            @RequestParam String fromDepotId,
+            @RequestParam String toDepotId,
+            @RequestParam(defaultValue = "WEIGHTED") Metric metric,
+            @RequestParam(defaultValue = "1") double riskWeight,
+            @RequestParam(defaultValue = "16") int maxHops,
+            @RequestParam(required = false) Double maxCost,
+            @RequestParam(defaultValue = "0") double minCapacity) {
+
+        SupplyRoutePlan plan = missileSupplyGraphService.planSupplyRoute(fromDepotId, toDepotId,
+                metric, riskWeight, maxHops, maxCost != null ? maxCost : Double.POSITIVE_INFINITY, minCapacity);
+
+        if (plan == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        return new ResponseEntity<>(plan, HttpStatus.OK);
+    }
+
+    /**
+     * Depots that can be supplied from a depot over active routes, nearest first
+     */
+    @GetMapping("/depots/{depotId}/reachable")
+    public ResponseEntity<List<ReachableDepot>> getReachableDepots(
+            @PathVariable String depotId,
+            @RequestParam(defaultValue = "16") int maxHops) {
+
+        List<ReachableDepot> depots = missileSupplyGraphService.getReachableDepots(depotId, maxHops);
+
+        if (depots == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        return new ResponseEntity<>(depots, HttpStatus.OK);
+    }
+
     @GetMapping("/depots/missiles")
     public ResponseEntity<List<Map<String, Object>>> findDepotsWithMissileType(
             @RequestParam String missileTypeId,
@@ -1,8 +1,16 @@
 package itmo.rshd.controller;
 
+import itmo.rshd.model.CompactRegion;
 import itmo.rshd.model.GeoLocation;
+import itmo.rshd.model.HeatmapCell;
+import itmo.rshd.model.Leaderboard;
+import itmo.rshd.model.RatingDistribution;
 import itmo.rshd.model.Region;
 import itmo.rshd.model.Region.RegionType;
+import itmo.rshd.service.HeatmapService;
+import itmo.rshd.service.LeaderboardService;
+import itmo.rshd.service.RatingDistributionService;
+import itmo.rshd.service.RegionGeometryService;
 import itmo.rshd.service.RegionService;
 import itmo.rshd.service.WebSocketService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,11 +27,21 @@ public class RegionController {
 
     private final RegionService regionService;
     private final WebSocketService webSocketService;
+    private final HeatmapService heatmapService;
+    private final RegionGeometryService regionGeometryService;
+    private final LeaderboardService leaderboardService;
+    private final RatingDistributionService ratingDistributionService;
 
     @Autowired
-    public RegionController(RegionService regionService, WebSocketService webSocketService) {
+    public RegionController(RegionService regionService, WebSocketService webSocketService,
+            HeatmapService heatmapService, RegionGeometryService regionGeometryService,
+            LeaderboardService leaderboardService, RatingDistributionService ratingDistributionService) {
         this.regionService = regionService;
         this.webSocketService = webSocketService;
+        this.heatmapService = heatmapService;
+        this.regionGeometryService = regionGeometryService;
+        this.leaderboardService = leaderboardService;
+        this.ratingDistributionService = ratingDistributionService;
     }
 
     @PostMapping
@@ -45,6 +63,22 @@ public class RegionController {
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * All regions with boundaries simplified for the zoom level and encoded as polylines
+     */
+    @GetMapping("/compact")
+    public ResponseEntity<List<CompactRegion>> getAllRegionsCompact(@RequestParam int zoom) {
+        List<Region> regions = regionService.getAllRegions();
+        return new ResponseEntity<>(regionGeometryService.toCompact(regions, zoom), HttpStatus.OK);
+    }
+
+    @GetMapping("/{id}/compact")
+    public ResponseEntity<CompactRegion> getRegionByIdCompact(@PathVariable String id, @RequestParam int zoom) {
+        Optional<Region> region = regionService.getRegionById(id);
+        return region.map(value -> new ResponseEntity<>(regionGeometryService.toCompact(value, zoom), HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<Region> updateRegion(@PathVariable String id, @RequestBody Region region) {
         Optional<Region> existingRegion = regionService.getRegionById(id);
@@ -78,6 +112,13 @@ public class RegionController {
         return new ResponseEntity<>(regions, HttpStatus.OK);
     }
 
+    @GetMapping("/type/{type}/compact")
+    public ResponseEntity<List<CompactRegion>> getRegionsByTypeCompact(@PathVariable RegionType type,
+            @RequestParam int zoom) {
+        List<Region> regions = regionService.findRegionsByType(type);
+        return new ResponseEntity<>(regionGeometryService.toCompact(regions, zoom), HttpStatus.OK);
+    }
+
     @GetMapping("/parent/{parentId}")
     public ResponseEntity<List<Region>> getSubRegions(@PathVariable String parentId) {
         List<Region> regions = regionService.findSubRegions(parentId);
@@ -94,6 +135,50 @@ public class RegionController {
         return new ResponseEntity<>(regions, HttpStatus.OK);
     }
 
+    /**
+     * Population and rating density for a map viewport
+     * @param bbox minLon,minLat,maxLon,maxLat
+     */
+    @GetMapping("/heatmap")
+    public ResponseEntity<List<HeatmapCell>> getHeatmap(
+            @RequestParam String bbox,
+            @RequestParam int zoom) {
+        
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            double minLon = Double.parseDouble(parts[0].trim());
+            double minLat = Double.parseDouble(parts[1].trim());
+            double maxLon = Double.parseDouble(parts[2].trim());
+            double maxLat = Double.parseDouble(parts[3].trim());
+            List<HeatmapCell> cells = heatmapService.getCells(minLon, minLat, maxLon, maxLat, zoom);
+            return new ResponseEntity<>(cells, HttpStatus.OK);
+        } catch (NumberFormatException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Best and worst rated active users of the region and its sub-regions
+     */
+    @GetMapping("/{id}/leaderboard")
+    public ResponseEntity<Leaderboard> getLeaderboard(@PathVariable String id,
+            @RequestParam(defaultValue = "10") int k) {
+        return new ResponseEntity<>(leaderboardService.getLeaderboard(id, k), HttpStatus.OK);
+    }
+
+    /**
+     * Rating histogram and p10/p50/p90 of the region and its sub-regions
+     * @param margin rating points on either side of a status threshold counted as near it
+     */
+    @GetMapping("/{id}/rating-distribution")
+    public ResponseEntity<RatingDistribution> getRatingDistribution(@PathVariable String id,
+            @RequestParam(defaultValue = "2") int margin) {
+        return new ResponseEntity<>(ratingDistributionService.getDistribution(id, Math.max(0, margin)), HttpStatus.OK);
+    }
+
     @GetMapping("/low-rated")
     public ResponseEntity<List<Region>> getLowRatedRegionsWithoutImportantPersons(
             @RequestParam double threshold) {
@@ -118,13 +203,8 @@ public class RegionController {
 
     @PutMapping("/statistics/all")
     public ResponseEntity<Void> updateAllRegionsStatistics() {
-        regionService.updateAllRegionsStatistics();
-        
-        // Get all regions and notify about their updates
-        List<Region> regions = regionService.getAllRegions();
-        for (Region region : regions) {
-            webSocketService.notifyRegionStatusUpdate(region);
-        }
+        // Only regions whose statistics changed are pushed, in one batched frame
+        webSocketService.notifyRegionStatusDeltas(regionService.updateAllRegionsStatistics());
         
         return new ResponseEntity<>(HttpStatus.OK);
     }
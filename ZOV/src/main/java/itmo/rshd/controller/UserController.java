@@ -1,7 +1,13 @@
 package itmo.rshd.controller;
 
 import itmo.rshd.model.GeoLocation;
+import itmo.rshd.model.NearbyUser;
 import itmo.rshd.model.User;
+import itmo.rshd.model.websocket.RatingAck;
+import itmo.rshd.model.websocket.RatingPipelineStats;
+import itmo.rshd.model.websocket.RatingResult;
+import itmo.rshd.model.websocket.RatingUpdate;
+import itmo.rshd.service.RatingPipeline;
 import itmo.rshd.service.UserService;
 import itmo.rshd.service.WebSocketService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,7 +15,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -18,11 +26,13 @@ public class UserController {
 
     private final UserService userService;
     private final WebSocketService webSocketService;
+    private final RatingPipeline ratingPipeline;
 
     @Autowired
-    public UserController(UserService userService, WebSocketService webSocketService) {
+    public UserController(UserService userService, WebSocketService webSocketService, RatingPipeline ratingPipeline) {
         this.userService = userService;
         this.webSocketService = webSocketService;
+        this.ratingPipeline = ratingPipeline;
     }
 
     @PostMapping("/login")
@@ -86,30 +96,37 @@ public class UserController {
             @PathVariable String id,
             @RequestParam double latitude,
             @RequestParam double longitude,
-            @RequestParam String regionId,
-            @RequestParam String districtId,
-            @RequestParam String countryId) {
+            @RequestParam(required = false) String regionId,
+            @RequestParam(required = false) String districtId,
+            @RequestParam(required = false) String countryId) {
 
         GeoLocation location = new GeoLocation(latitude, longitude);
-        User updatedUser = userService.updateUserLocation(id, location, regionId, districtId, countryId);
+        User updatedUser;
+        if (regionId != null && districtId != null && countryId != null) {
+            updatedUser = userService.updateUserLocation(id, location, regionId, districtId, countryId);
+        } else {
+            // Resolve the region chain from the coordinates when it is not given explicitly
+            updatedUser = userService.moveUser(id, location);
+        }
 
         if (updatedUser != null) {
             // Notify via WebSocket about user location change
             webSocketService.notifyUserLocationUpdate(updatedUser);
 
             // Find nearby users and notify this user
-            List<User> nearbyUsers = userService.findUsersNearLocation(location, 50.0);
+            List<User> nearbyUsers = userService.findUsersNearLocation(
+                    location, UserService.NEARBY_RADIUS_KM, UserService.NEARBY_USERS_LIMIT);
             webSocketService.notifyNearbyUsersUpdate(id, nearbyUsers);
 
-            // Also notify nearby users about this user
+            // Also notify nearby users about this user; all their lists come out of one query
+            Map<String, GeoLocation> neighbours = new LinkedHashMap<>();
             for (User nearbyUser : nearbyUsers) {
                 if (!nearbyUser.getId().equals(id)) {
-                    List<User> usersNearOtherUser = userService.findUsersNearLocation(
-                            nearbyUser.getCurrentLocation(),
-                            50.0);
-                    webSocketService.notifyNearbyUsersUpdate(nearbyUser.getId(), usersNearOtherUser);
+                    neighbours.put(nearbyUser.getId(), nearbyUser.getCurrentLocation());
                 }
             }
+            userService.findUsersNearLocations(neighbours, UserService.NEARBY_RADIUS_KM, UserService.NEARBY_USERS_LIMIT)
+                    .forEach(webSocketService::notifyNearbyUsersUpdate);
 
             return new ResponseEntity<>(updatedUser, HttpStatus.OK);
         } else {
@@ -117,28 +134,46 @@ public class UserController {
         }
     }
 
+    /**
+     * Queue a rating change and answer at once; the change is applied and broadcast by the rating pipeline
+     */
     @PutMapping("/{id}/social-rating")
-    public ResponseEntity<User> updateSocialRating(
+    public ResponseEntity<RatingAck> updateSocialRating(
             @PathVariable String id,
             @RequestParam double rating,
             @RequestParam(required = false) String raterId) {
 
-        User updatedUser = userService.updateSocialRating(id, rating);
+        RatingAck ack = ratingPipeline.assignRating(id, rating);
+        if (!ack.isAccepted()) {
+            return new ResponseEntity<>(ack, HttpStatus.SERVICE_UNAVAILABLE);
+        }
 
         // If this rating was given by another user, update their rating too
         if (raterId != null && !raterId.isEmpty()) {
-            userService.updateRaterSocialRating(raterId, id, rating > 0 ? 1.0 : -1.0);
+            RatingAck raterAck = ratingPipeline.rate(raterId, id, rating > 0 ? 1.0 : -1.0);
+            if (!raterAck.isAccepted()) {
+                // The assignment is queued and safe to repeat, so the client retries the whole request
+                return new ResponseEntity<>(raterAck, HttpStatus.SERVICE_UNAVAILABLE);
+            }
         }
 
-        if (updatedUser != null) {
-            // Notify via WebSocket about user rating change
-            webSocketService.notifyUserLocationUpdate(updatedUser);
-            webSocketService.notifySocialRatingChange(id, updatedUser);
+        return new ResponseEntity<>(ack, HttpStatus.ACCEPTED);
+    }
 
-            return new ResponseEntity<>(updatedUser, HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    /**
+     * Queue many ratings at once; each item gets its own ack or error, in submission order
+     */
+    @PostMapping("/ratings:batch")
+    public ResponseEntity<List<RatingResult>> rateBatch(@RequestBody List<RatingUpdate> ratings) {
+        return new ResponseEntity<>(ratingPipeline.rateAll(ratings), HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Queue depth and lag of each rating pipeline partition
+     */
+    @GetMapping("/ratings/stats")
+    public ResponseEntity<RatingPipelineStats> getRatingPipelineStats() {
+        return new ResponseEntity<>(ratingPipeline.getStats(), HttpStatus.OK);
     }
 
     @GetMapping("/region/{regionId}")
@@ -164,6 +199,18 @@ public class UserController {
         return new ResponseEntity<>(users, HttpStatus.OK);
     }
 
+    @GetMapping("/nearest")
+    public ResponseEntity<List<NearbyUser>> getNearestUsers(
+            @RequestParam double latitude,
+            @RequestParam double longitude,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) Double maxDistanceKm) {
+
+        GeoLocation location = new GeoLocation(latitude, longitude);
+        List<NearbyUser> users = userService.findNearestUsers(location, limit, maxDistanceKm);
+        return new ResponseEntity<>(users, HttpStatus.OK);
+    }
+
     @GetMapping("/below-rating/{threshold}")
     public ResponseEntity<List<User>> getUsersBelowRating(@PathVariable double threshold) {
         List<User> users = userService.findUsersBelowRating(threshold);
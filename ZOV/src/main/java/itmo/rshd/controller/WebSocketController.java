@@ -3,28 +3,38 @@ package itmo.rshd.controller;
 import itmo.rshd.model.GeoLocation;
 import itmo.rshd.model.User;
 import itmo.rshd.model.websocket.LocationUpdate;
+import itmo.rshd.model.websocket.RatingAck;
+import itmo.rshd.model.websocket.RatingResult;
 import itmo.rshd.model.websocket.RatingUpdate;
+import itmo.rshd.service.RatingPipeline;
 import itmo.rshd.service.UserService;
 import itmo.rshd.service.WebSocketService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
 
 @Controller
 public class WebSocketController {
 
     private final UserService userService;
     private final WebSocketService webSocketService;
+    private final RatingPipeline ratingPipeline;
     
     @Autowired
-    public WebSocketController(UserService userService, WebSocketService webSocketService) {
+    public WebSocketController(UserService userService, WebSocketService webSocketService,
+                               RatingPipeline ratingPipeline) {
         this.userService = userService;
         this.webSocketService = webSocketService;
+        this.ratingPipeline = ratingPipeline;
     }
     
     /**
@@ -35,15 +45,11 @@ public class WebSocketController {
         // Store the user ID in the session for future use
         headerAccessor.getSessionAttributes().put("userId", userId);
         
-        // Get user information
-        Optional<User> user = userService.getUserById(userId);
+        // Update last activity timestamp; only that field is written, so concurrent rating changes are kept
+        User updatedUser = userService.touchUser(userId);
         
         // If the user exists, notify about their successful connection
-        if (user.isPresent()) {
-            // Update last activity timestamp
-            User updatedUser = user.get();
-            updatedUser.setLastLocationUpdateTimestamp(System.currentTimeMillis());
-            userService.updateUser(updatedUser);
+        if (updatedUser != null) {
             
             // Broadcast user's connection
             webSocketService.notifyUserLocationUpdate(updatedUser);
@@ -51,7 +57,8 @@ public class WebSocketController {
             // Send nearby users to the connected user
             List<User> nearbyUsers = userService.findUsersNearLocation(
                     updatedUser.getCurrentLocation(),
-                    50.0 // Default 50km radius
+                    UserService.NEARBY_RADIUS_KM,
+                    UserService.NEARBY_USERS_LIMIT
             );
             webSocketService.notifyNearbyUsersUpdate(userId, nearbyUsers);
         }
@@ -65,70 +72,87 @@ public class WebSocketController {
         String userId = locationUpdate.getUserId();
         GeoLocation location = locationUpdate.getLocation();
         
-        Optional<User> userOpt = userService.getUserById(userId);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            
-            // Assuming these IDs are known (in a real app, you'd determine them based on the location)
-            String regionId = user.getRegionId();
-            String districtId = user.getDistrictId();
-            String countryId = user.getCountryId();
-            
-            // Update user's location
-            User updatedUser = userService.updateUserLocation(
-                    userId, 
-                    location, 
-                    regionId, 
-                    districtId, 
-                    countryId
-            );
-            
+        // Update user's location; district, region and country are resolved from the new position
+        User updatedUser = userService.moveUser(userId, location);
+        if (updatedUser != null) {
             // Broadcast the updated user information
             webSocketService.notifyUserLocationUpdate(updatedUser);
             
             // Find nearby users and notify the user
-            List<User> nearbyUsers = userService.findUsersNearLocation(location, 50.0);
+            List<User> nearbyUsers = userService.findUsersNearLocation(
+                    location, UserService.NEARBY_RADIUS_KM, UserService.NEARBY_USERS_LIMIT);
             webSocketService.notifyNearbyUsersUpdate(userId, nearbyUsers);
             
-            // Also notify nearby users about this user
+            // Refresh the lists this user may have entered, moved in or left:
+            // its new neighbours plus everyone whose list still shows it
+            Map<String, GeoLocation> affected = new LinkedHashMap<>();
             for (User nearbyUser : nearbyUsers) {
-                if (!nearbyUser.getId().equals(userId)) {
-                    List<User> usersNearNearbyUser = userService.findUsersNearLocation(
-                            nearbyUser.getCurrentLocation(), 
-                            50.0
-                    );
-                    webSocketService.notifyNearbyUsersUpdate(nearbyUser.getId(), usersNearNearbyUser);
+                affected.put(nearbyUser.getId(), nearbyUser.getCurrentLocation());
+            }
+            for (String watcherId : webSocketService.getNearbyWatchers(userId)) {
+                affected.putIfAbsent(watcherId, null);
+            }
+            affected.remove(userId);
+            // Users without a live nearby list need no query at all
+            affected.keySet().removeIf(id -> !webSocketService.isWatchingNearbyUsers(id));
+            List<String> unlocated = new ArrayList<>();
+            affected.forEach((id, watcherLocation) -> {
+                if (watcherLocation == null) {
+                    unlocated.add(id);
+                }
+            });
+            if (!unlocated.isEmpty()) {
+                for (User watcher : userService.getUsersByIds(unlocated)) {
+                    affected.put(watcher.getId(), watcher.getCurrentLocation());
                 }
             }
+            affected.values().removeIf(Objects::isNull);
+
+            // All their lists come out of one query
+            userService.findUsersNearLocations(affected, UserService.NEARBY_RADIUS_KM, UserService.NEARBY_USERS_LIMIT)
+                    .forEach(webSocketService::notifyNearbyUsersUpdate);
         }
     }
     
     /**
-     * Handle rating updates
+     * Resend the full nearby-user list to a session that detected a gap in the update sequence
+     */
+    @MessageMapping("/nearby-resync")
+    public void handleNearbyResync(SimpMessageHeaderAccessor headerAccessor) {
+        webSocketService.resyncNearbyUsers(headerAccessor.getSessionId());
+    }
+    
+    /**
+     * Handle rating updates.
+     * The changes are queued for the rating pipeline and the sender gets the ack on /user/queue/rating-ack;
+     * the updated users follow on the usual rating and location destinations once applied.
      */
     @MessageMapping("/rate-person")
-    public void handleRating(@Payload RatingUpdate ratingUpdate) {
+    @SendToUser(destinations = "/queue/rating-ack", broadcast = false)
+    public RatingAck handleRating(@Payload RatingUpdate ratingUpdate) {
         String userId = ratingUpdate.getUserId();           // Who is rating
         String targetUserId = ratingUpdate.getTargetUserId(); // Who is being rated
         double ratingChange = ratingUpdate.getRatingChange();  // The rating change
         
         // Update the target user's social rating
-        User updatedTargetUser = userService.updateSocialRating(targetUserId, 
-            ratingChange);
-        
-        // Update the rater's social rating based on their action
-        User updatedRaterUser = userService.updateRaterSocialRating(userId, 
-            targetUserId, ratingChange);
-        
-        // Notify all users about both updates
-        if (updatedTargetUser != null) {
-            webSocketService.notifyUserLocationUpdate(updatedTargetUser);
-            webSocketService.notifySocialRatingChange(targetUserId, updatedTargetUser);
-        }
+        RatingAck ack = ratingPipeline.assignRating(targetUserId, ratingChange);
         
-        if (updatedRaterUser != null) {
-            webSocketService.notifyUserLocationUpdate(updatedRaterUser);
-            webSocketService.notifySocialRatingChange(userId, updatedRaterUser);
+        // Update the rater's social rating based on their action; a refused change is acked instead
+        if (ack.isAccepted()) {
+            RatingAck raterAck = ratingPipeline.rate(userId, targetUserId, ratingChange);
+            if (!raterAck.isAccepted()) {
+                return raterAck;
+            }
         }
+        return ack;
+    }
+    
+    /**
+     * Handle many ratings in one frame; the per-item results go to /user/queue/rating-results
+     */
+    @MessageMapping("/rate-people")
+    @SendToUser(destinations = "/queue/rating-results", broadcast = false)
+    public List<RatingResult> handleRatings(@Payload List<RatingUpdate> ratingUpdates) {
+        return ratingPipeline.rateAll(ratingUpdates);
     }
-} 
\ No newline at end of file
+}
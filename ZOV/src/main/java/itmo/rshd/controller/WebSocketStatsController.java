@@ -0,0 +1,30 @@
+package itmo.rshd.controller;
+
+import itmo.rshd.model.websocket.OutboundQueueStats;
+import itmo.rshd.service.OutboundQueueService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/websocket")
+public class WebSocketStatsController {
+
+    private final OutboundQueueService outboundQueueService;
+
+    @Autowired
+    public WebSocketStatsController(OutboundQueueService outboundQueueService) {
+        this.outboundQueueService = outboundQueueService;
+    }
+
+    /**
+     * Outbound queue depths and slow-consumer counters
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<OutboundQueueStats> getOutboundQueueStats() {
+        return new ResponseEntity<>(outboundQueueService.getStats(), HttpStatus.OK);
+    }
+}
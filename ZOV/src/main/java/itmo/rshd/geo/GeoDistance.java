@@ -0,0 +1,294 @@
+package itmo.rshd.geo;
+
+import java.util.Arrays;
+
+/**
+ * Great-circle distance kernels over primitive coordinate columns.
+ * Coordinates are converted to radians and their cosines are computed once per
+ * point set, so each pairwise distance is a single haversine without
+ * repeated Math.toRadians/Math.cos calls. Loops work on plain double[]
+ * columns without allocation so the JIT can unroll and vectorize them.
+ */
+public final class GeoDistance {
+
+    public static final double EARTH_RADIUS_KM = 6371;
+
+    // The equirectangular prefilter is only trusted for short radii whose circle stays away from
+    // the poles, where its error stays well below PREFILTER_SLACK
+    private static final double PREFILTER_MAX_RADIUS_KM = 1000;
+    private static final double PREFILTER_MAX_ABS_LAT = Math.toRadians(80);
+    private static final double PREFILTER_SLACK = 1.1;
+
+    private GeoDistance() {
+    }
+
+    /**
+     * Haversine distance in kilometers between two points given in degrees
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        return haversineRad(phi1, Math.toRadians(lon1), Math.cos(phi1), phi2, Math.toRadians(lon2), Math.cos(phi2));
+    }
+
+    private static double haversineRad(double phi1, double lambda1, double cosPhi1,
+                                       double phi2, double lambda2, double cosPhi2) {
+        double sinDPhi = Math.sin((phi2 - phi1) / 2);
+        double sinDLambda = Math.sin((lambda2 - lambda1) / 2);
+        double a = sinDPhi * sinDPhi + cosPhi1 * cosPhi2 * sinDLambda * sinDLambda;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(Math.min(1, a)));
+    }
+
+    /**
+     * Distance in kilometers from a point to the great-circle segment A-B.
+     * Uses the cross-track distance when the point projects onto the segment
+     * and the distance to the nearer endpoint otherwise.
+     */
+    public static double segmentDistanceKm(double lat, double lon,
+                                           double latA, double lonA, double latB, double lonB) {
+        double dAP = haversineKm(latA, lonA, lat, lon) / EARTH_RADIUS_KM;
+        double dAB = haversineKm(latA, lonA, latB, lonB) / EARTH_RADIUS_KM;
+        if (dAB == 0) {
+            return dAP * EARTH_RADIUS_KM;
+        }
+        double bearingDiff = bearing(latA, lonA, lat, lon) - bearing(latA, lonA, latB, lonB);
+        if (Math.cos(bearingDiff) < 0) {
+            // The point lies behind A
+            return dAP * EARTH_RADIUS_KM;
+        }
+        double crossTrack = Math.asin(Math.sin(dAP) * Math.sin(bearingDiff));
+        double alongTrack = Math.acos(Math.max(-1, Math.min(1, Math.cos(dAP) / Math.cos(crossTrack))));
+        if (alongTrack > dAB) {
+            return haversineKm(latB, lonB, lat, lon);
+        }
+        return Math.abs(crossTrack) * EARTH_RADIUS_KM;
+    }
+
+    private static double bearing(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dLambda = Math.toRadians(lon2 - lon1);
+        double y = Math.sin(dLambda) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(dLambda);
+        return Math.atan2(y, x);
+    }
+
+    /**
+     * Smallest longitude/latitude box that contains every point within the radius.
+     * Falls back to the full longitude range near the poles and across the antimeridian.
+     * @return minLon, minLat, maxLon, maxLat in degrees
+     */
+    public static double[] boundingBox(double latitude, double longitude, double radiusKm) {
+        double angular = radiusKm / EARTH_RADIUS_KM;
+        double minLat = latitude - Math.toDegrees(angular);
+        double maxLat = latitude + Math.toDegrees(angular);
+        if (angular >= Math.PI || minLat <= -90 || maxLat >= 90) {
+            return new double[] { -180, Math.max(minLat, -90), 180, Math.min(maxLat, 90) };
+        }
+        double ratio = Math.sin(angular) / Math.cos(Math.toRadians(latitude));
+        if (ratio >= 1) {
+            return new double[] { -180, minLat, 180, maxLat };
+        }
+        double dLon = Math.toDegrees(Math.asin(ratio));
+        double minLon = longitude - dLon;
+        double maxLon = longitude + dLon;
+        if (minLon < -180 || maxLon > 180) {
+            return new double[] { -180, minLat, 180, maxLat };
+        }
+        return new double[] { minLon, minLat, maxLon, maxLat };
+    }
+
+    /**
+     * Columnar point set with precomputed radians and latitude cosines
+     */
+    public static final class Points {
+        private final double[] phi;
+        private final double[] lambda;
+        private final double[] cosPhi;
+
+        private Points(double[] phi, double[] lambda, double[] cosPhi) {
+            this.phi = phi;
+            this.lambda = lambda;
+            this.cosPhi = cosPhi;
+        }
+
+        /**
+         * @param latitudes latitudes in degrees
+         * @param longitudes longitudes in degrees, same length as latitudes
+         */
+        public static Points of(double[] latitudes, double[] longitudes) {
+            if (latitudes.length != longitudes.length) {
+                throw new IllegalArgumentException("Latitude and longitude columns differ in length");
+            }
+            int n = latitudes.length;
+            double[] phi = new double[n];
+            double[] lambda = new double[n];
+            double[] cosPhi = new double[n];
+            for (int i = 0; i < n; i++) {
+                phi[i] = Math.toRadians(latitudes[i]);
+                lambda[i] = Math.toRadians(longitudes[i]);
+            }
+            for (int i = 0; i < n; i++) {
+                cosPhi[i] = Math.cos(phi[i]);
+            }
+            return new Points(phi, lambda, cosPhi);
+        }
+
+        public int size() {
+            return phi.length;
+        }
+
+        public double latitude(int i) {
+            return Math.toDegrees(phi[i]);
+        }
+
+        public double longitude(int i) {
+            return Math.toDegrees(lambda[i]);
+        }
+    }
+
+    /**
+     * Exact distances from one origin to every point of the set
+     * @param out receives the distance in kilometers for each point; must be at least points.size() long
+     */
+    public static void distancesKm(double originLat, double originLon, Points points, double[] out) {
+        double phi0 = Math.toRadians(originLat);
+        double lambda0 = Math.toRadians(originLon);
+        double cosPhi0 = Math.cos(phi0);
+        double[] phi = points.phi;
+        double[] lambda = points.lambda;
+        double[] cosPhi = points.cosPhi;
+        for (int i = 0; i < phi.length; i++) {
+            out[i] = haversineRad(phi0, lambda0, cosPhi0, phi[i], lambda[i], cosPhi[i]);
+        }
+    }
+
+    /**
+     * Finds all points within the radius of the origin.
+     * A latitude-band check and an equirectangular approximation reject far
+     * points before the exact haversine is evaluated.
+     * @param outIndices receives the indices of matching points
+     * @param outDistances receives their exact distances in kilometers, may be null
+     * @return the number of matches written to the output arrays
+     */
+    public static int withinRadius(double originLat, double originLon, double radiusKm, Points points,
+                                   int[] outIndices, double[] outDistances) {
+        double phi0 = Math.toRadians(originLat);
+        double lambda0 = Math.toRadians(originLon);
+        double cosPhi0 = Math.cos(phi0);
+        double maxDPhi = radiusKm / EARTH_RADIUS_KM;
+        // Judged by the highest latitude the circle reaches: near a pole the approximation overestimates
+        boolean prefilter = radiusKm <= PREFILTER_MAX_RADIUS_KM && Math.abs(phi0) + maxDPhi < PREFILTER_MAX_ABS_LAT;
+        double maxApproxSq = (maxDPhi * PREFILTER_SLACK) * (maxDPhi * PREFILTER_SLACK);
+
+        double[] phi = points.phi;
+        double[] lambda = points.lambda;
+        double[] cosPhi = points.cosPhi;
+        int count = 0;
+        for (int i = 0; i < phi.length; i++) {
+            double dPhi = phi[i] - phi0;
+            // Distance along a meridian never exceeds the great-circle distance
+            if (Math.abs(dPhi) > maxDPhi) {
+                continue;
+            }
+            if (prefilter) {
+                double dLambda = Math.abs(lambda[i] - lambda0);
+                if (dLambda > Math.PI) {
+                    dLambda = 2 * Math.PI - dLambda;
+                }
+                double x = dLambda * (cosPhi0 + cosPhi[i]) / 2;
+                if (x * x + dPhi * dPhi > maxApproxSq) {
+                    continue;
+                }
+            }
+            double distance = haversineRad(phi0, lambda0, cosPhi0, phi[i], lambda[i], cosPhi[i]);
+            if (distance <= radiusKm) {
+                outIndices[count] = i;
+                if (outDistances != null) {
+                    outDistances[count] = distance;
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Ranks the points by distance and returns the indices of the k closest ones
+     * that are within maxDistanceKm, nearest first.
+     * @param distancesOut receives the distances of the returned points, may be null
+     */
+    public static int[] nearest(double originLat, double originLon, Points points, int k, double maxDistanceKm,
+                                double[] distancesOut) {
+        int n = points.size();
+        int[] indices = new int[n];
+        double[] distances = new double[n];
+        int count = withinRadius(originLat, originLon, maxDistanceKm, points, indices, distances);
+        int limit = Math.min(k, count);
+
+        // Keep a bounded max-heap of the k best candidates instead of sorting everything
+        int[] heap = new int[limit];
+        int heapSize = 0;
+        for (int c = 0; c < count && limit > 0; c++) {
+            if (heapSize < limit) {
+                heap[heapSize] = c;
+                siftUp(heap, heapSize++, distances);
+            } else if (distances[c] < distances[heap[0]]) {
+                heap[0] = c;
+                siftDown(heap, heapSize, distances);
+            }
+        }
+
+        Integer[] order = new Integer[heapSize];
+        for (int i = 0; i < heapSize; i++) {
+            order[i] = heap[i];
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+
+        int[] result = new int[heapSize];
+        for (int i = 0; i < heapSize; i++) {
+            result[i] = indices[order[i]];
+            if (distancesOut != null) {
+                distancesOut[i] = distances[order[i]];
+            }
+        }
+        return result;
+    }
+
+    private static void siftUp(int[] heap, int pos, double[] keys) {
+        while (pos > 0) {
+            int parent = (pos - 1) / 2;
+            if (keys[heap[parent]] >= keys[heap[pos]]) {
+                return;
+            }
+            swap(heap, parent, pos);
+            pos = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, double[] keys) {
+        int pos = 0;
+        while (true) {
+            int left = pos * 2 + 1;
+            int right = left + 1;
+            int largest = pos;
+            if (left < size && keys[heap[left]] > keys[heap[largest]]) {
+                largest = left;
+            }
+            if (right < size && keys[heap[right]] > keys[heap[largest]]) {
+                largest = right;
+            }
+            if (largest == pos) {
+                return;
+            }
+            swap(heap, pos, largest);
+            pos = largest;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+}
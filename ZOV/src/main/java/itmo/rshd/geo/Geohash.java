@@ -0,0 +1,140 @@
+package itmo.rshd.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Standard base32 geohash encoding.
+ */
+public final class Geohash {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final int[] DECODE = new int[128];
+
+    static {
+        java.util.Arrays.fill(DECODE, -1);
+        for (int i = 0; i < BASE32.length; i++) {
+            DECODE[BASE32[i]] = i;
+        }
+    }
+
+    private Geohash() {
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        char[] hash = new char[precision];
+        boolean evenBit = true;
+        int bit = 0;
+        int value = 0;
+        int length = 0;
+        while (length < precision) {
+            if (evenBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLon = mid;
+                } else {
+                    value <<= 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLat = mid;
+                } else {
+                    value <<= 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                hash[length++] = BASE32[value];
+                bit = 0;
+                value = 0;
+            }
+        }
+        return new String(hash);
+    }
+
+    /**
+     * Cells that together cover a box, at the finest precision up to maxPrecision that needs
+     * at most maxCells of them. A map keyed by geohash holds every finer cell inside the box
+     * under one of these prefixes.
+     * @return no cells for an empty box or one that crosses the antimeridian
+     */
+    public static List<String> cover(double minLat, double minLon, double maxLat, double maxLon,
+                                     int maxPrecision, int maxCells) {
+        minLat = Math.max(-90, minLat);
+        maxLat = Math.min(90, maxLat);
+        minLon = Math.max(-180, minLon);
+        maxLon = Math.min(180, maxLon);
+        if (minLat > maxLat || minLon > maxLon) {
+            return List.of();
+        }
+        for (int precision = maxPrecision; ; precision--) {
+            // Bits alternate starting with longitude, so longitude gets the odd one out
+            int lonBits = (5 * precision + 1) / 2;
+            int latBits = 5 * precision / 2;
+            double cellLat = 180.0 / (1L << latBits);
+            double cellLon = 360.0 / (1L << lonBits);
+            long firstRow = cellIndex(minLat + 90, cellLat, latBits);
+            long lastRow = cellIndex(maxLat + 90, cellLat, latBits);
+            long firstColumn = cellIndex(minLon + 180, cellLon, lonBits);
+            long lastColumn = cellIndex(maxLon + 180, cellLon, lonBits);
+            if ((lastRow - firstRow + 1) * (lastColumn - firstColumn + 1) > maxCells && precision > 1) {
+                continue;
+            }
+            List<String> cells = new ArrayList<>();
+            for (long row = firstRow; row <= lastRow; row++) {
+                for (long column = firstColumn; column <= lastColumn; column++) {
+                    // Encoding the cell center avoids any doubt at cell edges
+                    cells.add(encode(-90 + (row + 0.5) * cellLat, -180 + (column + 0.5) * cellLon, precision));
+                }
+            }
+            return cells;
+        }
+    }
+
+    private static long cellIndex(double offset, double cellSize, int bits) {
+        return Math.min((1L << bits) - 1, (long) Math.floor(offset / cellSize));
+    }
+
+    /**
+     * @return the cell bounds as minLat, minLon, maxLat, maxLon
+     */
+    public static double[] bounds(String hash) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        boolean evenBit = true;
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            int value = c < 128 ? DECODE[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid geohash: " + hash);
+            }
+            for (int shift = 4; shift >= 0; shift--) {
+                boolean set = ((value >> shift) & 1) == 1;
+                if (evenBit) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (set) {
+                        minLon = mid;
+                    } else {
+                        maxLon = mid;
+                    }
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (set) {
+                        minLat = mid;
+                    } else {
+                        maxLat = mid;
+                    }
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new double[] { minLat, minLon, maxLat, maxLon };
+    }
+}
@@ -0,0 +1,74 @@
+package itmo.rshd.geo;
+
+import java.util.Arrays;
+
+/**
+ * Encoded polyline format (zig-zag delta varints in base64-like ASCII) with
+ * five decimal digits of precision, as understood by most web map libraries.
+ */
+public final class PolylineCodec {
+
+    private static final double SCALE = 1e5;
+
+    private PolylineCodec() {
+    }
+
+    /**
+     * @param coordinates interleaved longitude, latitude pairs
+     * @return the encoded string with latitude before longitude per point
+     */
+    public static String encode(double[] coordinates) {
+        StringBuilder out = new StringBuilder(coordinates.length * 3);
+        long prevLat = 0, prevLon = 0;
+        for (int i = 0; i < coordinates.length; i += 2) {
+            long lat = Math.round(coordinates[i + 1] * SCALE);
+            long lon = Math.round(coordinates[i] * SCALE);
+            writeValue(out, lat - prevLat);
+            writeValue(out, lon - prevLon);
+            prevLat = lat;
+            prevLon = lon;
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return interleaved longitude, latitude pairs
+     */
+    public static double[] decode(String encoded) {
+        double[] buffer = new double[16];
+        int size = 0;
+        long lat = 0, lon = 0;
+        int[] pos = { 0 };
+        while (pos[0] < encoded.length()) {
+            lat += readValue(encoded, pos);
+            lon += readValue(encoded, pos);
+            if (size + 2 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[size++] = lon / SCALE;
+            buffer[size++] = lat / SCALE;
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private static void writeValue(StringBuilder out, long value) {
+        long v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+
+    private static long readValue(String encoded, int[] pos) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = encoded.charAt(pos[0]++) - 63;
+            result |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+    }
+}
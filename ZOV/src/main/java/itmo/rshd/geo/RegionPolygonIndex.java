@@ -0,0 +1,316 @@
+package itmo.rshd.geo;
+
+import itmo.rshd.model.Region;
+import itmo.rshd.model.RegionMembership;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory point-in-polygon index over region boundaries.
+ * Bounding boxes are packed into an {@link StrTree} for the prefilter and
+ * candidates are confirmed with an exact even-odd ring test.
+ */
+public final class RegionPolygonIndex {
+
+    private final List<Shape> shapes;
+    private final Map<String, Shape> shapesById;
+    private final StrTree tree;
+
+    private RegionPolygonIndex(List<Shape> shapes) {
+        this.shapes = shapes;
+        this.shapesById = new HashMap<>();
+        double[] bounds = new double[shapes.size() * 4];
+        for (int i = 0; i < shapes.size(); i++) {
+            Shape shape = shapes.get(i);
+            shapesById.put(shape.id, shape);
+            bounds[i * 4] = shape.minX;
+            bounds[i * 4 + 1] = shape.minY;
+            bounds[i * 4 + 2] = shape.maxX;
+            bounds[i * 4 + 3] = shape.maxY;
+        }
+        this.tree = StrTree.build(bounds);
+    }
+
+    public static RegionPolygonIndex build(List<Region> regions) {
+        List<Shape> shapes = new ArrayList<>(regions.size());
+        for (Region region : regions) {
+            Shape shape = Shape.of(region);
+            if (shape != null) {
+                shapes.add(shape);
+            }
+        }
+        return new RegionPolygonIndex(shapes);
+    }
+
+    public static RegionPolygonIndex empty() {
+        return new RegionPolygonIndex(List.of());
+    }
+
+    public int size() {
+        return shapes.size();
+    }
+
+    public boolean containsRegion(String regionId) {
+        return shapesById.containsKey(regionId);
+    }
+
+    public Region.RegionType typeOf(String regionId) {
+        Shape shape = shapesById.get(regionId);
+        return shape != null ? shape.type : null;
+    }
+
+    public String parentOf(String regionId) {
+        Shape shape = shapesById.get(regionId);
+        return shape != null ? shape.parentId : null;
+    }
+
+    public List<String> regionIds() {
+        List<String> ids = new ArrayList<>(shapes.size());
+        for (Shape shape : shapes) {
+            ids.add(shape.id);
+        }
+        return ids;
+    }
+
+    /**
+     * @return minLon, minLat, maxLon, maxLat of the region, or null if unknown
+     */
+    public double[] bounds(String regionId) {
+        Shape shape = shapesById.get(regionId);
+        return shape != null ? new double[] { shape.minX, shape.minY, shape.maxX, shape.maxY } : null;
+    }
+
+    /**
+     * @return latitude and longitude of the area centroid of the outer ring, or null if unknown
+     */
+    public double[] centroid(String regionId) {
+        Shape shape = shapesById.get(regionId);
+        return shape != null ? new double[] { shape.centroidY, shape.centroidX } : null;
+    }
+
+    /**
+     * Great-circle distance in kilometers from a point to the region boundary,
+     * zero if the point is inside the region.
+     */
+    public double distanceKm(String regionId, double latitude, double longitude) {
+        Shape shape = shapesById.get(regionId);
+        if (shape == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (shape.contains(longitude, latitude)) {
+            return 0;
+        }
+        double min = Double.POSITIVE_INFINITY;
+        for (double[] ring : shape.rings) {
+            int n = ring.length / 2;
+            for (int i = 0, j = n - 1; i < n; j = i++) {
+                double d = GeoDistance.segmentDistanceKm(latitude, longitude,
+                        ring[j * 2 + 1], ring[j * 2], ring[i * 2 + 1], ring[i * 2]);
+                min = Math.min(min, d);
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Returns the ids of all regions whose boundaries contain the point.
+     */
+    public List<String> regionsContaining(double longitude, double latitude) {
+        List<String> result = new ArrayList<>();
+        tree.queryPoint(longitude, latitude, i -> {
+            Shape shape = shapes.get(i);
+            if (shape.contains(longitude, latitude)) {
+                result.add(shape.id);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Resolves the district -> city -> region -> country chain for a point.
+     * The innermost containing region wins and the rest of the chain follows
+     * its parent links; levels the chain does not reach are filled from the
+     * smallest directly containing region of that type.
+     * @return the membership, or null if the point is outside every known region
+     */
+    public RegionMembership locate(double longitude, double latitude) {
+        Map<Region.RegionType, Shape> smallest = new EnumMap<>(Region.RegionType.class);
+        tree.queryPoint(longitude, latitude, i -> {
+            Shape shape = shapes.get(i);
+            if (shape.type == null || !shape.contains(longitude, latitude)) {
+                return;
+            }
+            Shape current = smallest.get(shape.type);
+            if (current == null || shape.area < current.area) {
+                smallest.put(shape.type, shape);
+            }
+        });
+        if (smallest.isEmpty()) {
+            return null;
+        }
+
+        Shape innermost = null;
+        for (Region.RegionType type : Region.RegionType.values()) {
+            innermost = smallest.get(type);
+            if (innermost != null) {
+                break;
+            }
+        }
+
+        RegionMembership membership = new RegionMembership();
+        // Walk up the parent links; stop once a level repeats so bad data cannot loop forever
+        for (Shape shape = innermost; shape != null && shape.type != null; shape = shapesById.get(shape.parentId)) {
+            if (!assign(membership, shape) || shape.parentId == null) {
+                break;
+            }
+        }
+        for (Shape shape : smallest.values()) {
+            if (RegionMembership.NONE.equals(get(membership, shape.type))) {
+                assign(membership, shape);
+            }
+        }
+        return membership;
+    }
+
+    private static boolean assign(RegionMembership membership, Shape shape) {
+        if (!RegionMembership.NONE.equals(get(membership, shape.type))) {
+            return false;
+        }
+        switch (shape.type) {
+            case DISTRICT -> membership.setDistrictId(shape.id);
+            case CITY -> membership.setCityId(shape.id);
+            case REGION -> membership.setRegionId(shape.id);
+            case COUNTRY -> membership.setCountryId(shape.id);
+        }
+        return true;
+    }
+
+    private static String get(RegionMembership membership, Region.RegionType type) {
+        return switch (type) {
+            case DISTRICT -> membership.getDistrictId();
+            case CITY -> membership.getCityId();
+            case REGION -> membership.getRegionId();
+            case COUNTRY -> membership.getCountryId();
+        };
+    }
+
+    private static final class Shape {
+        final String id;
+        final Region.RegionType type;
+        final String parentId;
+        // rings[0] is the outer ring, the rest are holes; each ring is x0, y0, x1, y1, ...
+        final double[][] rings;
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+        final double area;
+        final double centroidX;
+        final double centroidY;
+
+        private Shape(String id, Region.RegionType type, String parentId, double[][] rings) {
+            this.id = id;
+            this.type = type;
+            this.parentId = parentId;
+            this.rings = rings;
+
+            double[] outer = rings[0];
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < outer.length; i += 2) {
+                minX = Math.min(minX, outer[i]);
+                maxX = Math.max(maxX, outer[i]);
+                minY = Math.min(minY, outer[i + 1]);
+                maxY = Math.max(maxY, outer[i + 1]);
+            }
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            double signedArea = signedArea(outer);
+            this.area = Math.abs(signedArea);
+
+            double cx = 0, cy = 0;
+            int n = outer.length / 2;
+            for (int i = 0, j = n - 1; i < n; j = i++) {
+                double cross = (outer[j * 2] * outer[i * 2 + 1]) - (outer[i * 2] * outer[j * 2 + 1]);
+                cx += (outer[j * 2] + outer[i * 2]) * cross;
+                cy += (outer[j * 2 + 1] + outer[i * 2 + 1]) * cross;
+            }
+            if (signedArea != 0) {
+                this.centroidX = cx / (6 * signedArea);
+                this.centroidY = cy / (6 * signedArea);
+            } else {
+                this.centroidX = (minX + maxX) / 2;
+                this.centroidY = (minY + maxY) / 2;
+            }
+        }
+
+        static Shape of(Region region) {
+            GeoJsonPolygon polygon = region.getBoundaries();
+            if (region.getId() == null || polygon == null) {
+                return null;
+            }
+            List<GeoJsonLineString> lineStrings = polygon.getCoordinates();
+            double[][] rings = new double[lineStrings.size()][];
+            for (int r = 0; r < lineStrings.size(); r++) {
+                List<Point> points = lineStrings.get(r).getCoordinates();
+                double[] ring = new double[points.size() * 2];
+                for (int i = 0; i < points.size(); i++) {
+                    ring[i * 2] = points.get(i).getX();
+                    ring[i * 2 + 1] = points.get(i).getY();
+                }
+                rings[r] = ring;
+            }
+            if (rings.length == 0 || rings[0].length < 8) {
+                return null;
+            }
+            return new Shape(region.getId(), region.getType(), region.getParentRegionId(), rings);
+        }
+
+        boolean contains(double x, double y) {
+            if (x < minX || x > maxX || y < minY || y > maxY) {
+                return false;
+            }
+            if (!ringContains(rings[0], x, y)) {
+                return false;
+            }
+            for (int r = 1; r < rings.length; r++) {
+                if (ringContains(rings[r], x, y)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Even-odd crossing test
+        private static boolean ringContains(double[] ring, double x, double y) {
+            boolean inside = false;
+            int n = ring.length / 2;
+            for (int i = 0, j = n - 1; i < n; j = i++) {
+                double xi = ring[i * 2], yi = ring[i * 2 + 1];
+                double xj = ring[j * 2], yj = ring[j * 2 + 1];
+                if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                    inside = !inside;
+                }
+            }
+            return inside;
+        }
+
+        private static double signedArea(double[] ring) {
+            double sum = 0;
+            int n = ring.length / 2;
+            for (int i = 0, j = n - 1; i < n; j = i++) {
+                sum += (ring[j * 2] * ring[i * 2 + 1]) - (ring[i * 2] * ring[j * 2 + 1]);
+            }
+            return sum / 2;
+        }
+    }
+}
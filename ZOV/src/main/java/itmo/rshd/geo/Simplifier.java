@@ -0,0 +1,86 @@
+package itmo.rshd.geo;
+
+/**
+ * Douglas-Peucker line simplification over interleaved x, y coordinates.
+ */
+public final class Simplifier {
+
+    private Simplifier() {
+    }
+
+    /**
+     * Simplify a closed ring so that no dropped vertex lies further than
+     * tolerance from the kept outline. Rings that would collapse below a
+     * triangle are returned unchanged.
+     * @param ring x0, y0, x1, y1, ... with the first point repeated at the end
+     * @param tolerance maximum deviation in coordinate units
+     */
+    public static double[] simplifyRing(double[] ring, double tolerance) {
+        int n = ring.length / 2;
+        if (n <= 4 || tolerance <= 0) {
+            return ring;
+        }
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        double toleranceSq = tolerance * tolerance;
+
+        // Explicit stack of [first, last] ranges instead of recursion
+        int[] stack = new int[n * 2];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double maxSq = -1;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistanceSq(ring, i, first, last);
+                if (d > maxSq) {
+                    maxSq = d;
+                    index = i;
+                }
+            }
+            if (index >= 0 && maxSq > toleranceSq) {
+                keep[index] = true;
+                stack[top++] = first;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = last;
+            }
+        }
+
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k) {
+                kept++;
+            }
+        }
+        if (kept < 4) {
+            return ring;
+        }
+        double[] result = new double[kept * 2];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                result[j++] = ring[i * 2];
+                result[j++] = ring[i * 2 + 1];
+            }
+        }
+        return result;
+    }
+
+    // Squared planar distance from point p to segment a-b
+    private static double segmentDistanceSq(double[] c, int p, int a, int b) {
+        double px = c[p * 2], py = c[p * 2 + 1];
+        double ax = c[a * 2], ay = c[a * 2 + 1];
+        double dx = c[b * 2] - ax, dy = c[b * 2 + 1] - ay;
+        double lengthSq = dx * dx + dy * dy;
+        double t = lengthSq == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        double ex = ax + t * dx - px;
+        double ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+}
@@ -0,0 +1,194 @@
+package itmo.rshd.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Static R-tree packed with the Sort-Tile-Recursive algorithm.
+ * Items are given as bounding boxes (minX, minY, maxX, maxY) and are identified
+ * by their insertion index. The tree is immutable once built.
+ */
+public final class StrTree {
+
+    private static final int NODE_CAPACITY = 16;
+
+    private final double[] itemBounds;
+    private final Node root;
+
+    private StrTree(double[] itemBounds, Node root) {
+        this.itemBounds = itemBounds;
+        this.root = root;
+    }
+
+    /**
+     * Packs the given boxes into a tree.
+     * @param bounds flat array with four entries per item: minX, minY, maxX, maxY
+     */
+    public static StrTree build(double[] bounds) {
+        int count = bounds.length / 4;
+        if (count == 0) {
+            return new StrTree(bounds, null);
+        }
+
+        List<Node> level = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            level.add(Node.leaf(i, bounds[i * 4], bounds[i * 4 + 1], bounds[i * 4 + 2], bounds[i * 4 + 3]));
+        }
+
+        // Pack levels bottom-up until a single root remains
+        while (level.size() > 1) {
+            level = packLevel(level);
+        }
+        return new StrTree(bounds, level.get(0));
+    }
+
+    public int size() {
+        return itemBounds.length / 4;
+    }
+
+    /**
+     * Visits every item whose bounding box contains the point.
+     */
+    public void queryPoint(double x, double y, IntConsumer visitor) {
+        query(x, y, x, y, visitor);
+    }
+
+    /**
+     * Visits every item whose bounding box intersects the given box.
+     */
+    public void query(double minX, double minY, double maxX, double maxY, IntConsumer visitor) {
+        if (root == null) {
+            return;
+        }
+        Node[] stack = new Node[64];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            Node node = stack[--top];
+            if (!node.intersects(minX, minY, maxX, maxY)) {
+                continue;
+            }
+            if (node.children == null) {
+                visitor.accept(node.item);
+                continue;
+            }
+            for (Node child : node.children) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = child;
+            }
+        }
+    }
+
+    /**
+     * Returns the indices of items whose bounding box contains the point.
+     */
+    public int[] queryPoint(double x, double y) {
+        IntList hits = new IntList();
+        queryPoint(x, y, hits::add);
+        return hits.toArray();
+    }
+
+    public double minX(int item) {
+        return itemBounds[item * 4];
+    }
+
+    public double minY(int item) {
+        return itemBounds[item * 4 + 1];
+    }
+
+    public double maxX(int item) {
+        return itemBounds[item * 4 + 2];
+    }
+
+    public double maxY(int item) {
+        return itemBounds[item * 4 + 3];
+    }
+
+    private static List<Node> packLevel(List<Node> nodes) {
+        int parentCount = (nodes.size() + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(parentCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+
+        List<Node> sorted = new ArrayList<>(nodes);
+        sorted.sort(Comparator.comparingDouble(Node::centerX));
+
+        List<Node> parents = new ArrayList<>(parentCount);
+        for (int sliceStart = 0; sliceStart < sorted.size(); sliceStart += sliceSize) {
+            List<Node> slice = new ArrayList<>(sorted.subList(sliceStart, Math.min(sliceStart + sliceSize, sorted.size())));
+            slice.sort(Comparator.comparingDouble(Node::centerY));
+            for (int start = 0; start < slice.size(); start += NODE_CAPACITY) {
+                parents.add(Node.branch(slice.subList(start, Math.min(start + NODE_CAPACITY, slice.size()))));
+            }
+        }
+        return parents;
+    }
+
+    private static final class Node {
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+        final Node[] children;
+        final int item;
+
+        private Node(double minX, double minY, double maxX, double maxY, Node[] children, int item) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.children = children;
+            this.item = item;
+        }
+
+        static Node leaf(int item, double minX, double minY, double maxX, double maxY) {
+            return new Node(minX, minY, maxX, maxY, null, item);
+        }
+
+        static Node branch(List<Node> children) {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                minX = Math.min(minX, child.minX);
+                minY = Math.min(minY, child.minY);
+                maxX = Math.max(maxX, child.maxX);
+                maxY = Math.max(maxY, child.maxY);
+            }
+            return new Node(minX, minY, maxX, maxY, children.toArray(new Node[0]), -1);
+        }
+
+        double centerX() {
+            return (minX + maxX) / 2;
+        }
+
+        double centerY() {
+            return (minY + maxY) / 2;
+        }
+
+        boolean intersects(double qMinX, double qMinY, double qMaxX, double qMaxY) {
+            return minX <= qMaxX && maxX >= qMinX && minY <= qMaxY && maxY >= qMinY;
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package itmo.rshd.geo;
+
+/**
+ * Web Mercator (slippy map) tile addressing, the scheme used by Leaflet and OSM tiles.
+ */
+public final class Tiles {
+
+    // Latitude limit of the square Web Mercator projection
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private Tiles() {
+    }
+
+    public static int tileX(double longitude, int zoom) {
+        int n = 1 << zoom;
+        int x = (int) Math.floor((longitude + 180) / 360 * n);
+        return Math.max(0, Math.min(n - 1, x));
+    }
+
+    public static int tileY(double latitude, int zoom) {
+        int n = 1 << zoom;
+        double lat = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)));
+        int y = (int) Math.floor((1 - Math.log(Math.tan(lat) + 1 / Math.cos(lat)) / Math.PI) / 2 * n);
+        return Math.max(0, Math.min(n - 1, y));
+    }
+
+    /**
+     * @return the tile path z/x/y containing the point
+     */
+    public static String tileOf(double latitude, double longitude, int zoom) {
+        return zoom + "/" + tileX(longitude, zoom) + "/" + tileY(latitude, zoom);
+    }
+}
@@ -0,0 +1,173 @@
+package itmo.rshd.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Cheapest route between two depots over active routes, with A* when a distance
+ * bound applies and Dijkstra otherwise.
+ * The search runs over (depot, hops) states so a hop limit never hides a cheaper
+ * route, and it stops after a fixed number of route relaxations, which caps its
+ * cost however large the network is.
+ */
+public final class RouteSearch {
+
+    /**
+     * What a route costs
+     */
+    public enum Metric {
+        DISTANCE, // Sum of route distances
+        RISK,     // Chance that at least one leg fails, taking legs as independent
+        WEIGHTED  // Distance with each leg stretched by riskWeight * riskFactor
+    }
+
+    /**
+     * The route found, if any. Depots and routes are empty when none was found.
+     * @param cost in kilometers, or for RISK the chance of failure from 0 to 1
+     * @param routes indexes of the routes taken, in the network's route numbering
+     * @param truncated the relaxation budget ran out: a route found is the best one seen so far
+     *                  and may not be the cheapest, and without one a route may still exist
+     */
+    public record Result(boolean found, double cost, List<Integer> depots, List<Integer> routes,
+                         int relaxations, boolean truncated) {
+    }
+
+    // One way of reaching a depot; the chain of previous labels is the route so far
+    private record Label(int depot, int hops, double cost, double estimate, Label previous, int route) {
+    }
+
+    // Highest risk a single leg is treated as having, so its cost stays finite
+    private static final double MAX_LEG_RISK = 0.999999;
+
+    private RouteSearch() {
+    }
+
+    /**
+     * @param maxHops most routes the result may use
+     * @param maxCost most the result may cost in the units of {@link Result#cost}, or infinity
+     * @param minCapacity routes with a lower capacity are skipped; routes without one are not
+     * @param maxRelaxations routes the search may examine before giving up
+     */
+    public static Result find(SupplyNetwork network, int from, int to, Metric metric, double riskWeight,
+                              int maxHops, double maxCost, double minCapacity, int maxRelaxations) {
+        if (from == to) {
+            return new Result(true, 0, List.of(from), List.of(), 0, false);
+        }
+        boolean useBound = metric != Metric.RISK;
+        // A risk limit of 1 or more allows any route; below that it becomes a limit on -ln(survival)
+        double costLimit = metric != Metric.RISK ? maxCost
+                : maxCost >= 1 ? Double.POSITIVE_INFINITY : -Math.log1p(-Math.max(0, maxCost));
+
+        // Labels leave the queue in order of estimate. With a consistent bound a later label for the
+        // same depot never costs less, so it is only worth expanding if it used fewer hops.
+        int[] fewestHops = new int[network.size()];
+        Arrays.fill(fewestHops, Integer.MAX_VALUE);
+        PriorityQueue<Label> queue = new PriorityQueue<>((a, b) -> Double.compare(a.estimate, b.estimate));
+        queue.add(new Label(from, 0, 0, useBound ? network.distanceLowerBound(from, to) : 0, null, -1));
+
+        // Cheapest label for the destination queued so far, returned if the budget runs out
+        Label bestToTarget = null;
+        int relaxations = 0;
+        while (!queue.isEmpty()) {
+            Label label = queue.poll();
+            if (label.hops >= fewestHops[label.depot]) {
+                continue;
+            }
+            fewestHops[label.depot] = label.hops;
+            if (label.depot == to) {
+                return found(label, metric, relaxations, false);
+            }
+            if (label.hops == maxHops) {
+                continue;
+            }
+            for (int route = network.firstRoute(label.depot); route < network.endRoute(label.depot); route++) {
+                // A NaN capacity compares false, so routes without one are kept
+                if (!network.isActive(route) || network.capacity(route) < minCapacity) {
+                    continue;
+                }
+                if (relaxations == maxRelaxations) {
+                    if (bestToTarget != null) {
+                        return found(bestToTarget, metric, relaxations, true);
+                    }
+                    return new Result(false, 0, List.of(), List.of(), relaxations, true);
+                }
+                relaxations++;
+                int target = network.target(route);
+                if (label.hops + 1 >= fewestHops[target]) {
+                    continue;
+                }
+                double cost = label.cost + cost(network, route, metric, riskWeight);
+                double estimate = cost + (useBound ? network.distanceLowerBound(target, to) : 0);
+                if (estimate > costLimit) {
+                    continue;
+                }
+                Label next = new Label(target, label.hops + 1, cost, estimate, label, route);
+                queue.add(next);
+                if (target == to && (bestToTarget == null || cost < bestToTarget.cost)) {
+                    bestToTarget = next;
+                }
+            }
+        }
+        return new Result(false, 0, List.of(), List.of(), relaxations, false);
+    }
+
+    /**
+     * Fewest hops from a depot to every depot over active routes, -1 where it cannot be reached
+     * within maxHops. A breadth-first walk that touches each route at most once.
+     */
+    public static int[] hopsFrom(SupplyNetwork network, int from, int maxHops) {
+        int[] hops = new int[network.size()];
+        Arrays.fill(hops, -1);
+        int[] frontier = new int[network.size()];
+        int head = 0;
+        int tail = 0;
+        hops[from] = 0;
+        frontier[tail++] = from;
+        while (head < tail) {
+            int depot = frontier[head++];
+            if (hops[depot] == maxHops) {
+                continue;
+            }
+            for (int route = network.firstRoute(depot); route < network.endRoute(depot); route++) {
+                int target = network.target(route);
+                if (network.isActive(route) && hops[target] < 0) {
+                    hops[target] = hops[depot] + 1;
+                    frontier[tail++] = target;
+                }
+            }
+        }
+        return hops;
+    }
+
+    /**
+     * Cost of a single route under the metric; never negative
+     */
+    public static double cost(SupplyNetwork network, int route, Metric metric, double riskWeight) {
+        double distance = Math.max(0, network.distance(route));
+        double risk = Math.min(MAX_LEG_RISK, Math.max(0, network.riskFactor(route)));
+        return switch (metric) {
+            case DISTANCE -> distance;
+            // -ln(1 - p) adds up along a route to -ln of the chance that every leg succeeds
+            case RISK -> -Math.log1p(-risk);
+            case WEIGHTED -> distance * (1 + Math.max(0, riskWeight) * risk);
+        };
+    }
+
+    private static Result found(Label last, Metric metric, int relaxations, boolean truncated) {
+        List<Integer> depots = new ArrayList<>();
+        List<Integer> routes = new ArrayList<>();
+        for (Label label = last; label != null; label = label.previous) {
+            depots.add(label.depot);
+            if (label.route >= 0) {
+                routes.add(label.route);
+            }
+        }
+        Collections.reverse(depots);
+        Collections.reverse(routes);
+        double cost = metric == Metric.RISK ? -Math.expm1(-last.cost) : last.cost;
+        return new Result(true, cost, depots, routes, relaxations, truncated);
+    }
+}
@@ -0,0 +1,246 @@
+package itmo.rshd.graph;
+
+import itmo.rshd.geo.GeoDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only snapshot of the supply depots and the routes between them.
+ * Depots are numbered 0..n-1 in load order and routes are stored in compressed
+ * sparse row form: the routes out of depot d are the indexes from offsets[d] to
+ * offsets[d + 1] into flat target, distance, risk and capacity columns, with a
+ * bitset marking the active ones. Searches walk plain arrays without touching
+ * the graph database or allocating per route.
+ */
+public final class SupplyNetwork {
+
+    private final String[] depotIds;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final List<Map<String, Object>> depotProperties;
+    private final Map<String, Integer> ordinals;
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] distances;
+    private final double[] riskFactors;
+    private final double[] capacities; // NaN where the route has no capacity
+    private final BitSet active;
+
+    private final double minDistancePerKm;
+    private final Object fingerprint;
+
+    private SupplyNetwork(Builder builder, int[] offsets, int[] targets, double[] distances, double[] riskFactors,
+                          double[] capacities, BitSet active, double minDistancePerKm) {
+        int n = builder.depotIds.size();
+        this.depotIds = builder.depotIds.toArray(new String[0]);
+        this.latitudes = new double[n];
+        this.longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = builder.latitudes.get(i);
+            longitudes[i] = builder.longitudes.get(i);
+        }
+        this.depotProperties = List.copyOf(builder.depotProperties);
+        this.ordinals = Map.copyOf(builder.ordinals);
+        this.offsets = offsets;
+        this.targets = targets;
+        this.distances = distances;
+        this.riskFactors = riskFactors;
+        this.capacities = capacities;
+        this.active = active;
+        this.minDistancePerKm = minDistancePerKm;
+        this.fingerprint = builder.fingerprint;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return depotIds.length;
+    }
+
+    public int routeCount() {
+        return targets.length;
+    }
+
+    /**
+     * The depot's number, or -1 if it is not part of the network
+     */
+    public int ordinal(String depotId) {
+        Integer ordinal = depotId == null ? null : ordinals.get(depotId);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    public String depotId(int depot) {
+        return depotIds[depot];
+    }
+
+    /**
+     * The depot's stored properties, as the graph holds them
+     */
+    public Map<String, Object> depotProperties(int depot) {
+        return depotProperties.get(depot);
+    }
+
+    public String name(int depot) {
+        Object name = depotProperties.get(depot).get("name");
+        return name != null ? name.toString() : null;
+    }
+
+    // Routes out of a depot are the indexes firstRoute(d) up to but excluding endRoute(d)
+
+    public int firstRoute(int depot) {
+        return offsets[depot];
+    }
+
+    public int endRoute(int depot) {
+        return offsets[depot + 1];
+    }
+
+    public int target(int route) {
+        return targets[route];
+    }
+
+    public double distance(int route) {
+        return distances[route];
+    }
+
+    public double riskFactor(int route) {
+        return riskFactors[route];
+    }
+
+    public double capacity(int route) {
+        return capacities[route];
+    }
+
+    public boolean isActive(int route) {
+        return active.get(route);
+    }
+
+    /**
+     * A lower bound on the route distance between two depots, from their great-circle distance.
+     * Zero when some depot has no coordinates.
+     */
+    public double distanceLowerBound(int from, int to) {
+        if (minDistancePerKm == 0) {
+            return 0;
+        }
+        return minDistancePerKm * GeoDistance.haversineKm(latitudes[from], longitudes[from], latitudes[to], longitudes[to]);
+    }
+
+    /**
+     * Identifies the graph state the snapshot was loaded from; compared to spot changes
+     */
+    public Object fingerprint() {
+        return fingerprint;
+    }
+
+    public static final class Builder {
+        private final List<String> depotIds = new ArrayList<>();
+        private final List<Double> latitudes = new ArrayList<>();
+        private final List<Double> longitudes = new ArrayList<>();
+        private final List<Map<String, Object>> depotProperties = new ArrayList<>();
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private boolean located = true;
+
+        private final List<int[]> routeEnds = new ArrayList<>();
+        private final List<double[]> routeValues = new ArrayList<>();
+        private final List<Boolean> routeActive = new ArrayList<>();
+        private Object fingerprint;
+
+        /**
+         * Add a depot with its properties; coordinates are taken from latitude and longitude.
+         * A repeated id keeps the first depot.
+         */
+        public Builder addDepot(String depotId, Map<String, Object> properties) {
+            if (depotId != null && !ordinals.containsKey(depotId)) {
+                ordinals.put(depotId, depotIds.size());
+                depotIds.add(depotId);
+                depotProperties.add(Collections.unmodifiableMap(new HashMap<>(properties)));
+                Object latitude = properties.get("latitude");
+                Object longitude = properties.get("longitude");
+                boolean hasPoint = latitude instanceof Number && longitude instanceof Number;
+                located &= hasPoint;
+                latitudes.add(hasPoint ? ((Number) latitude).doubleValue() : 0);
+                longitudes.add(hasPoint ? ((Number) longitude).doubleValue() : 0);
+            }
+            return this;
+        }
+
+        /**
+         * Add a directed route; routes touching unknown depots are ignored
+         * @param capacity NaN if the route has none
+         */
+        public Builder addRoute(String sourceDepotId, String targetDepotId, double distance, double riskFactor,
+                                double capacity, boolean active) {
+            Integer source = ordinals.get(sourceDepotId);
+            Integer target = ordinals.get(targetDepotId);
+            if (source != null && target != null) {
+                routeEnds.add(new int[] { source, target });
+                routeValues.add(new double[] { distance, riskFactor, capacity });
+                routeActive.add(active);
+            }
+            return this;
+        }
+
+        public Builder fingerprint(Object fingerprint) {
+            this.fingerprint = fingerprint;
+            return this;
+        }
+
+        public SupplyNetwork build() {
+            int n = depotIds.size();
+            int m = routeEnds.size();
+
+            // Counting sort by source depot; routes keep their load order within a depot
+            int[] offsets = new int[n + 1];
+            for (int[] ends : routeEnds) {
+                offsets[ends[0] + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] next = Arrays.copyOf(offsets, n);
+            int[] targets = new int[m];
+            double[] distances = new double[m];
+            double[] riskFactors = new double[m];
+            double[] capacities = new double[m];
+            BitSet active = new BitSet(m);
+            for (int r = 0; r < m; r++) {
+                int slot = next[routeEnds.get(r)[0]]++;
+                double[] values = routeValues.get(r);
+                targets[slot] = routeEnds.get(r)[1];
+                distances[slot] = values[0];
+                riskFactors[slot] = values[1];
+                capacities[slot] = values[2];
+                active.set(slot, routeActive.get(r));
+            }
+
+            // Route distances are entered by hand and need not follow geography, so the bound is
+            // scaled by the smallest distance per great-circle km over all routes. That keeps it
+            // below every route's distance and makes it a consistent A* heuristic.
+            double minDistancePerKm = located ? Double.POSITIVE_INFINITY : 0;
+            for (int d = 0; d < n && minDistancePerKm > 0; d++) {
+                for (int r = offsets[d]; r < offsets[d + 1]; r++) {
+                    double km = GeoDistance.haversineKm(latitudes.get(d), longitudes.get(d),
+                            latitudes.get(targets[r]), longitudes.get(targets[r]));
+                    if (km > 0) {
+                        minDistancePerKm = Math.min(minDistancePerKm, Math.max(0, distances[r]) / km);
+                    }
+                }
+            }
+            if (Double.isInfinite(minDistancePerKm)) {
+                minDistancePerKm = 0;
+            }
+            return new SupplyNetwork(this, offsets, targets, distances, riskFactors, capacities, active,
+                    minDistancePerKm);
+        }
+    }
+}
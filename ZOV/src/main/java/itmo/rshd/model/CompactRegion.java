@@ -0,0 +1,19 @@
+package itmo.rshd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Region statistics with a boundary simplified for a zoom level and stored as encoded polylines
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CompactRegion {
+    private RegionStatus status;
+    private int zoom;
+    private List<String> rings; // Outer ring first, then holes
+}
@@ -1,5 +1,6 @@
 package itmo.rshd.model;
 
+import itmo.rshd.geo.GeoDistance;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
@@ -25,18 +26,8 @@ public class GeoLocation {
     }
     
     // Calculate distance between two points in kilometers using the Haversine formula
+    // For many points at once use the batch kernels in GeoDistance
     public double distanceFrom(GeoLocation other) {
-        double earthRadius = 6371; // Radius of the Earth in kilometers
-        
-        double latDistance = Math.toRadians(other.latitude - this.latitude);
-        double lonDistance = Math.toRadians(other.longitude - this.longitude);
-        
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(this.latitude)) * Math.cos(Math.toRadians(other.latitude))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        
-        return earthRadius * c;
+        return GeoDistance.haversineKm(this.latitude, this.longitude, other.latitude, other.longitude);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,20 @@
+package itmo.rshd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Aggregated population and social rating of one geohash cell
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HeatmapCell {
+    private String geohash;
+    private double latitude;  // Cell center
+    private double longitude; // Cell center
+    private long count;
+    private double ratingSum;
+    private double averageRating;
+}
@@ -0,0 +1,20 @@
+package itmo.rshd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Best and worst rated active users of a region, including its sub-regions
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Leaderboard {
+    private String regionId;
+    private int userCount;
+    private List<LeaderboardEntry> top;    // Highest rating first
+    private List<LeaderboardEntry> bottom; // Lowest rating first
+}
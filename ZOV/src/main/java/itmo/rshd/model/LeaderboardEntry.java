@@ -0,0 +1,18 @@
+package itmo.rshd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One user on a region leaderboard
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LeaderboardEntry {
+    private String userId;
+    private String fullName;
+    private double socialRating;
+    private User.SocialStatus status;
+}
@@ -2,6 +2,7 @@ package itmo.rshd.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 
@@ -18,6 +19,8 @@ public class Missile {
     private LocalDateTime lastMaintenanceDate;
     private String supplyDepotId; // Reference to where this missile is stored
     private GeoLocation currentLocation;
+    @Version
+    private Long version; // Bumped by every write; a save based on an older read fails
     
     public enum MissileType {
         ORESHNIK,
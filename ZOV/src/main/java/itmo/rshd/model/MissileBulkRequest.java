@@ -0,0 +1,23 @@
+package itmo.rshd.model;
+
+import itmo.rshd.model.Missile.MissileType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Selects the missiles of a bulk lifecycle operation; every criterion that is set must match.
+ * At least missileIds or one criterion has to be set.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MissileBulkRequest {
+    private List<String> missileIds;         // Null to select by the other criteria only
+    private MissileType type;
+    private String supplyDepotId;
+    private LocalDateTime maintainedBefore;  // Last maintenance earlier than this, or never
+}
@@ -0,0 +1,29 @@
+package itmo.rshd.model;
+
+import itmo.rshd.model.Missile.MissileStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk lifecycle operation
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MissileBulkResult {
+    private int matched;               // Selected missiles that were in a status the operation applies to
+    private long modified;
+    private List<String> updatedIds;
+    private List<Conflict> conflicts;  // Listed missiles left unchanged, and any changed by someone else meanwhile
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Conflict {
+        private String missileId;
+        private MissileStatus currentStatus; // Null if the missile does not exist
+    }
+}
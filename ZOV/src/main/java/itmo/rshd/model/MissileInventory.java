@@ -0,0 +1,21 @@
+package itmo.rshd.model;
+
+import itmo.rshd.model.Missile.MissileStatus;
+import itmo.rshd.model.Missile.MissileType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Missile counts by type and status, for all missiles or for one supply depot
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MissileInventory {
+    private String supplyDepotId; // Null for the whole arsenal
+    private long total;
+    private Map<MissileType, Map<MissileStatus, Long>> counts; // Only non-zero counts are listed
+}
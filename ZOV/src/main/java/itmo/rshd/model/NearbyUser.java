@@ -0,0 +1,21 @@
+package itmo.rshd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lightweight view of a user returned by nearest-neighbour queries
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NearbyUser {
+    private String id;
+    private String fullName;
+    private double socialRating;
+    private User.SocialStatus status;
+    private double latitude;
+    private double longitude;
+    private double distanceKm; // Distance from the query point
+}
@@ -0,0 +1,25 @@
+package itmo.rshd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Social rating distribution of the active users of a region, including its sub-regions
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RatingDistribution {
+    private String regionId;
+    private long userCount;
+    private Double mean;  // Null for an empty region, as are the percentiles
+    private Double p10;
+    private Double p50;
+    private Double p90;
+    private double bucketWidth;
+    private long[] histogram;                  // Users per bucket from 0 up; ratings outside 0-100 fall in the end buckets
+    private Map<String, Long> nearThresholds; // Status -> users within the margin of its lowest rating
+}
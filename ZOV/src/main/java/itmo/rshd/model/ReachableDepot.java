@@ -0,0 +1,17 @@
+package itmo.rshd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A depot that can be supplied from another over active routes
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReachableDepot {
+    private String depotId;
+    private String name;
+    private int hops; // Fewest routes needed to get there
+}
@@ -0,0 +1,21 @@
+package itmo.rshd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The chain of regions a point belongs to, from the innermost district up to the country.
+ * Missing levels are reported as "none", matching how users store them.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RegionMembership {
+    public static final String NONE = "none";
+
+    private String districtId = NONE;
+    private String cityId = NONE;
+    private String regionId = NONE;
+    private String countryId = NONE;
+}
@@ -0,0 +1,29 @@
+package itmo.rshd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Region statistics without the boundary, which is referenced by its geometry version
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RegionStatus {
+    private String id;
+    private String name;
+    private Region.RegionType type;
+    private String parentRegionId;
+    private double averageSocialRating;
+    private int populationCount;
+    private int importantPersonsCount;
+    private boolean underThreat;
+    private int geometryVersion; // Changes whenever the boundary changes
+
+    public static RegionStatus of(Region region, int geometryVersion) {
+        return new RegionStatus(region.getId(), region.getName(), region.getType(), region.getParentRegionId(),
+                region.getAverageSocialRating(), region.getPopulationCount(), region.getImportantPersonsCount(),
+                region.isUnderThreat(), geometryVersion);
+    }
+}
@@ -0,0 +1,19 @@
+package itmo.rshd.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One supply route taken by a planned route
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SupplyRouteLeg {
+    private String sourceDepotId;
+    private String targetDepotId;
+    private double distance;
+    private double riskFactor;
+    private Double capacity; // Null when the route has none
+}
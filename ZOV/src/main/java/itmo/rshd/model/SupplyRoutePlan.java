@@ -0,0 +1,28 @@
+package itmo.rshd.model;
+
+import itmo.rshd.graph.RouteSearch.Metric;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Cheapest route between two depots under a metric and search limits
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SupplyRoutePlan {
+    private String fromDepotId;
+    private String toDepotId;
+    private Metric metric;
+    private boolean found;
+    private double totalCost;       // In the metric's units; for RISK the chance of failure
+    private double totalDistance;   // Kilometers
+    private double combinedRisk;    // Chance that at least one leg fails, taking legs as independent
+    private List<String> depotIds;  // From first to last depot; empty when not found
+    private List<SupplyRouteLeg> legs;
+    private int relaxations;        // Routes examined by the search
+    private boolean truncated;      // Search budget ran out: the route is the best seen so far, or one was missed
+}
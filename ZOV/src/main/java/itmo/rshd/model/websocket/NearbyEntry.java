@@ -0,0 +1,27 @@
+package itmo.rshd.model.websocket;
+
+import itmo.rshd.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A user entering someone's nearby list: the compact position plus what the list displays
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NearbyEntry {
+    private String id;
+    private String username;
+    private String fullName;
+    private double lat;
+    private double lon;
+    private double rating;
+    private User.SocialStatus status;
+
+    public static NearbyEntry of(User user, UserPosition position) {
+        return new NearbyEntry(user.getId(), user.getUsername(), user.getFullName(), position.getLat(),
+                position.getLon(), position.getRating(), position.getStatus());
+    }
+}
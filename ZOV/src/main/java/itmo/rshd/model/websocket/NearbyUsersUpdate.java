@@ -0,0 +1,27 @@
+package itmo.rshd.model.websocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Change of one session's nearby-user list.
+ * A full update lists every neighbour in entered and replaces the client's list;
+ * otherwise it only carries users that entered, moved or left since the previous update.
+ * Sequence numbers increase by one per update of the session, so a client that
+ * sees a gap can ask for a full resync.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class NearbyUsersUpdate {
+    private long seq;
+    private boolean full;
+    private List<NearbyEntry> entered;
+    private List<UserPosition> moved;
+    private List<String> left;
+}
@@ -0,0 +1,24 @@
+package itmo.rshd.model.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the per-session outbound queues
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboundQueueStats {
+    private int sessions;
+    private long queuedFrames;
+    private int maxQueueDepth;
+    private int slowSessions; // Sessions with their queue more than half full
+    private int queueCapacity;
+    private String overflowPolicy;
+    private long sentFrames;
+    private long droppedFrames;
+    private long conflatedFrames;
+    private long disconnectedSessions;
+}
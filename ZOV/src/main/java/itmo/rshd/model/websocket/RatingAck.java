@@ -0,0 +1,18 @@
+package itmo.rshd.model.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Answer to a submitted rating change, sent before the change is applied
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RatingAck {
+    private long sequence;    // Order of the change within its partition
+    private int partition;    // Writer the change was queued for
+    private boolean accepted; // False when the partition queue was full or the pipeline is stopping
+    private int queueDepth;   // Changes ahead of this one, including it
+}
@@ -0,0 +1,35 @@
+package itmo.rshd.model.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Snapshot of the rating pipeline queues
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RatingPipelineStats {
+    private int queueCapacity;
+    private int maxBatchSize;
+    private long maxLagMs;
+    private List<Partition> partitions;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Partition {
+        private int partition;
+        private int queueDepth;
+        private long lagMs;        // Age of the oldest change still waiting
+        private long submitted;
+        private long rejected;
+        private long applied;      // Changes written to a user
+        private long skipped;      // Changes dropped because the user or the rated user does not exist
+        private long batches;
+        private long failedBatches;
+    }
+}
@@ -0,0 +1,18 @@
+package itmo.rshd.model.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one item of a batch rating submission
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RatingResult {
+    private int index;           // Position of the item in the submitted batch
+    private String targetUserId;
+    private RatingAck ack;       // Null when the item was invalid
+    private String error;        // Why the item was not queued, null if it was
+}
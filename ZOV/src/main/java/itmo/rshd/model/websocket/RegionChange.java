@@ -0,0 +1,15 @@
+package itmo.rshd.model.websocket;
+
+import itmo.rshd.model.RegionMembership;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RegionChange {
+    private String userId;
+    private RegionMembership previous; // Membership before the move
+    private RegionMembership current;  // Membership resolved from the new location
+}
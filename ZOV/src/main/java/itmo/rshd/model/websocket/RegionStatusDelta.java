@@ -0,0 +1,55 @@
+package itmo.rshd.model.websocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import itmo.rshd.model.Region;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Objects;
+
+/**
+ * Changed statistics of one region; fields that did not change are null and left out of the frame
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RegionStatusDelta {
+    private String id;
+    private Double averageSocialRating;
+    private Integer populationCount;
+    private Integer importantPersonsCount;
+    private Boolean underThreat;
+
+    public static RegionStatusDelta of(Region region) {
+        return new RegionStatusDelta(region.getId(), region.getAverageSocialRating(), region.getPopulationCount(),
+                region.getImportantPersonsCount(), region.isUnderThreat());
+    }
+
+    /**
+     * @return the fields of {@code after} that differ from this snapshot, or null if nothing changed
+     */
+    public RegionStatusDelta diff(RegionStatusDelta after) {
+        RegionStatusDelta delta = new RegionStatusDelta();
+        delta.setId(after.getId());
+        boolean changed = false;
+        if (!Objects.equals(averageSocialRating, after.getAverageSocialRating())) {
+            delta.setAverageSocialRating(after.getAverageSocialRating());
+            changed = true;
+        }
+        if (!Objects.equals(populationCount, after.getPopulationCount())) {
+            delta.setPopulationCount(after.getPopulationCount());
+            changed = true;
+        }
+        if (!Objects.equals(importantPersonsCount, after.getImportantPersonsCount())) {
+            delta.setImportantPersonsCount(after.getImportantPersonsCount());
+            changed = true;
+        }
+        if (!Objects.equals(underThreat, after.getUnderThreat())) {
+            delta.setUnderThreat(after.getUnderThreat());
+            changed = true;
+        }
+        return changed ? delta : null;
+    }
+}
@@ -0,0 +1,22 @@
+package itmo.rshd.model.websocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One tick of location changes within a map tile: users that moved in or within
+ * the tile, and users that left it for another tile or were removed.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class TileUpdate {
+    private List<UserPosition> moved = new ArrayList<>();
+    private List<String> left = new ArrayList<>();
+}
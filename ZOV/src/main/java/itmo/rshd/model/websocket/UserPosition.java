@@ -0,0 +1,25 @@
+package itmo.rshd.model.websocket;
+
+import itmo.rshd.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Compact user position entry of a batched location frame
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPosition {
+    private String id;
+    private double lat;
+    private double lon;
+    private double rating;
+    private User.SocialStatus status;
+
+    public static UserPosition of(User user) {
+        return new UserPosition(user.getId(), user.getCurrentLocation().getLatitude(),
+                user.getCurrentLocation().getLongitude(), user.getSocialRating(), user.getStatus());
+    }
+}
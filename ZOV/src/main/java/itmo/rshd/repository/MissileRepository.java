@@ -10,7 +10,7 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface MissileRepository extends MongoRepository<Missile, String> {
+public interface MissileRepository extends MongoRepository<Missile, String>, MissileRepositoryCustom {
     
     List<Missile> findByType(MissileType type);
     
@@ -18,6 +18,8 @@ public interface MissileRepository extends MongoRepository<Missile, String> {
     
     List<Missile> findBySupplyDepotId(String supplyDepotId);
     
+    long countByTypeAndStatus(MissileType type, MissileStatus status);
+    
     @Query("{'type': ?0, 'status': 'READY'}")
     List<Missile> findReadyMissilesByType(MissileType type);
     
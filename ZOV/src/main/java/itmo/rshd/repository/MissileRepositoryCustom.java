@@ -0,0 +1,39 @@
+package itmo.rshd.repository;
+
+import itmo.rshd.model.Missile;
+import itmo.rshd.model.Missile.MissileStatus;
+import itmo.rshd.model.Missile.MissileType;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Missile status changes done as single conditional updates rather than read-modify-write
+ */
+public interface MissileRepositoryCustom {
+
+    /**
+     * Atomically move the missile to the target status if it is currently in one of the expected ones.
+     * The version is bumped, so a full-document save based on an earlier read fails.
+     * @param expected statuses the missile may be in, empty to accept any
+     * @param stampMaintenance also set lastMaintenanceDate to now
+     * @return the missile after the change, or null if it does not exist or is in another status
+     */
+    Missile transitionStatus(String missileId, Collection<MissileStatus> expected, MissileStatus target,
+                             boolean stampMaintenance);
+
+    /**
+     * Move every listed missile that is in one of the expected statuses to the target status
+     * with a single updateMulti. Missiles in other statuses are left alone.
+     * @return the number of missiles changed
+     */
+    long transitionStatusAll(Collection<String> missileIds, Collection<MissileStatus> expected, MissileStatus target,
+                             boolean stampMaintenance);
+
+    /**
+     * Missiles matching every criterion that is not null
+     * @param maintainedBefore last maintenance earlier than this, or never maintained
+     */
+    List<Missile> findSelected(MissileType type, String supplyDepotId, LocalDateTime maintainedBefore);
+}
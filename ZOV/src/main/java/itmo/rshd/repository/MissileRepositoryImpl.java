@@ -0,0 +1,74 @@
+package itmo.rshd.repository;
+
+import itmo.rshd.model.Missile;
+import itmo.rshd.model.Missile.MissileStatus;
+import itmo.rshd.model.Missile.MissileType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public class MissileRepositoryImpl implements MissileRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public MissileRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Missile transitionStatus(String missileId, Collection<MissileStatus> expected, MissileStatus target,
+                                    boolean stampMaintenance) {
+        // The status check and the write are one findAndModify, so two concurrent callers cannot both succeed
+        Criteria criteria = Criteria.where("_id").is(missileId);
+        if (!expected.isEmpty()) {
+            criteria.and("status").in(expected);
+        }
+        return mongoTemplate.findAndModify(Query.query(criteria), transition(target, stampMaintenance),
+                FindAndModifyOptions.options().returnNew(true), Missile.class);
+    }
+
+    @Override
+    public long transitionStatusAll(Collection<String> missileIds, Collection<MissileStatus> expected,
+                                    MissileStatus target, boolean stampMaintenance) {
+        if (missileIds.isEmpty()) {
+            return 0;
+        }
+        // The status condition is checked per document by the server, so a missile changed meanwhile is skipped
+        Criteria criteria = Criteria.where("_id").in(missileIds).and("status").in(expected);
+        return mongoTemplate.updateMulti(Query.query(criteria), transition(target, stampMaintenance), Missile.class)
+                .getModifiedCount();
+    }
+
+    @Override
+    public List<Missile> findSelected(MissileType type, String supplyDepotId, LocalDateTime maintainedBefore) {
+        Criteria criteria = new Criteria();
+        if (type != null) {
+            criteria.and("type").is(type);
+        }
+        if (supplyDepotId != null) {
+            criteria.and("supplyDepotId").is(supplyDepotId);
+        }
+        if (maintainedBefore != null) {
+            // A null match also covers missiles without the field
+            criteria.orOperator(Criteria.where("lastMaintenanceDate").lt(maintainedBefore),
+                    Criteria.where("lastMaintenanceDate").is(null));
+        }
+        return mongoTemplate.find(Query.query(criteria), Missile.class);
+    }
+
+    private static Update transition(MissileStatus target, boolean stampMaintenance) {
+        Update update = new Update().set("status", target).inc("version", 1);
+        if (stampMaintenance) {
+            update.set("lastMaintenanceDate", LocalDateTime.now());
+        }
+        return update;
+    }
+}
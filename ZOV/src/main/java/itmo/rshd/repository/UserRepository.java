@@ -2,14 +2,16 @@ package itmo.rshd.repository;
 
 import itmo.rshd.model.User;
 import itmo.rshd.model.User.SocialStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface UserRepository extends MongoRepository<User, String> {
+public interface UserRepository extends MongoRepository<User, String>, UserRepositoryCustom {
     
     User findByUsername(String username);
     
@@ -34,6 +36,10 @@ public interface UserRepository extends MongoRepository<User, String> {
     @Query("{'currentLocation.position': {$near: {$geometry: {type: 'Point', coordinates: [?1, ?0]}, $maxDistance: ?2}}, 'active': true}")
     List<User> findByCurrentLocationNear(double latitude, double longitude, double maxDistance);
     
+    // Same as above but capped; $near already sorts by distance so this keeps the closest users
+    @Query("{'currentLocation.position': {$near: {$geometry: {type: 'Point', coordinates: [?1, ?0]}, $maxDistance: ?2}}, 'active': true}")
+    List<User> findByCurrentLocationNear(double latitude, double longitude, double maxDistance, Limit limit);
+    
     // For compatibility with existing service methods
     @Query("{'currentLocation.position': {$near: {$geometry: {type: 'Point', coordinates: [?0, ?1]}, $maxDistance: ?2}}, 'active': true}")
     List<User> findUsersNearLocation(double longitude, double latitude, double maxDistanceMeters);
@@ -43,4 +49,13 @@ public interface UserRepository extends MongoRepository<User, String> {
     
     @Query("{'socialRating': {$lt: ?0}, 'active': true}")
     List<User> findUsersBelowRating(double rating);
+    
+    // Streams only the fields needed to seed in-memory aggregates
+    @Query(value = "{'active': true}", fields = "{'currentLocation.latitude': 1, 'currentLocation.longitude': 1, 'socialRating': 1}")
+    Stream<User> streamActiveUserPositions();
+    
+    // Streams the fields the region leaderboards need, best rated first
+    @Query(value = "{'active': true}", fields = "{'fullName': 1, 'socialRating': 1, 'status': 1, 'regionId': 1, 'districtId': 1, 'countryId': 1}",
+            sort = "{'socialRating': -1}")
+    Stream<User> streamActiveUsersByRating();
 }
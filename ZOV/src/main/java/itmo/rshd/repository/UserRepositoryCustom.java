@@ -0,0 +1,44 @@
+package itmo.rshd.repository;
+
+import itmo.rshd.model.GeoLocation;
+import itmo.rshd.model.NearbyUser;
+import itmo.rshd.model.User;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * User queries that need the aggregation framework rather than derived or annotated queries
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Find the closest active users to a point, nearest first.
+     * @param limit maximum number of users to return
+     * @param maxDistanceKm optional search radius, null for unbounded
+     */
+    List<NearbyUser> findNearestUsers(double latitude, double longitude, int limit, Double maxDistanceKm);
+
+    /**
+     * Write the rating and status of each user in one unordered bulk request.
+     * Other fields are left alone, so concurrent location updates are not overwritten.
+     * @return the users as stored after the write, with any location written in the meantime;
+     * users deleted since they were read are missing
+     */
+    List<User> updateRatings(Collection<User> users);
+
+    /**
+     * Write the location, membership and location timestamp of one user in a single atomic update.
+     * Other fields are left alone, so concurrent rating changes are not overwritten.
+     * A null membership id keeps the stored one.
+     * @return the user as stored after the update, or null if there is no such user
+     */
+    User updateLocation(String userId, GeoLocation location, String regionId, String districtId, String countryId,
+                        long timestamp);
+
+    /**
+     * Set only the location timestamp of one user, leaving the rating and location as stored
+     * @return the user as stored after the update, or null if there is no such user
+     */
+    User touchLocationTimestamp(String userId, long timestamp);
+}
@@ -0,0 +1,93 @@
+package itmo.rshd.repository;
+
+import itmo.rshd.model.GeoLocation;
+import itmo.rshd.model.NearbyUser;
+import itmo.rshd.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.NearQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public UserRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<NearbyUser> findNearestUsers(double latitude, double longitude, int limit, Double maxDistanceKm) {
+        // $geoNear returns documents sorted by distance, so the limit keeps the cost fixed
+        NearQuery nearQuery = NearQuery.near(new GeoJsonPoint(longitude, latitude))
+                .spherical(true)
+                .in(Metrics.KILOMETERS)
+                .query(Query.query(Criteria.where("active").is(true)));
+        if (maxDistanceKm != null) {
+            nearQuery.maxDistance(new Distance(maxDistanceKm, Metrics.KILOMETERS));
+        }
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.geoNear(nearQuery, "distanceKm").useIndex("currentLocation.position"),
+                Aggregation.limit(limit),
+                Aggregation.project("fullName", "socialRating", "status", "distanceKm")
+                        .and("currentLocation.latitude").as("latitude")
+                        .and("currentLocation.longitude").as("longitude"));
+
+        return mongoTemplate.aggregate(aggregation, "users", NearbyUser.class).getMappedResults();
+    }
+
+    @Override
+    public List<User> updateRatings(Collection<User> users) {
+        if (users.isEmpty()) {
+            return List.of();
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+        List<String> ids = new ArrayList<>(users.size());
+        for (User user : users) {
+            bulk.updateOne(Query.query(Criteria.where("_id").is(user.getId())),
+                    new Update().set("socialRating", user.getSocialRating()).set("status", user.getStatus()));
+            ids.add(user.getId());
+        }
+        bulk.execute();
+        // Read back in one query, so locations written since the batch was read are not reported as stale
+        return mongoTemplate.find(Query.query(Criteria.where("_id").in(ids)), User.class);
+    }
+
+    @Override
+    public User updateLocation(String userId, GeoLocation location, String regionId, String districtId,
+                               String countryId, long timestamp) {
+        Update update = new Update().set("currentLocation", location).set("lastLocationUpdateTimestamp", timestamp);
+        if (regionId != null) {
+            update.set("regionId", regionId);
+        }
+        if (districtId != null) {
+            update.set("districtId", districtId);
+        }
+        if (countryId != null) {
+            update.set("countryId", countryId);
+        }
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(userId)), update,
+                FindAndModifyOptions.options().returnNew(true), User.class);
+    }
+
+    @Override
+    public User touchLocationTimestamp(String userId, long timestamp) {
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(userId)),
+                new Update().set("lastLocationUpdateTimestamp", timestamp),
+                FindAndModifyOptions.options().returnNew(true), User.class);
+    }
+}
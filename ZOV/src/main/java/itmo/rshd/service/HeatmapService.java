@@ -0,0 +1,210 @@
+package itmo.rshd.service;
+
+import itmo.rshd.geo.Geohash;
+import itmo.rshd.model.HeatmapCell;
+import itmo.rshd.model.User;
+import itmo.rshd.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Population and rating density per geohash cell at several precisions.
+ * Seeded from MongoDB once at startup and then maintained incrementally on
+ * every location and rating change, so map views never load raw users.
+ * Cells are kept sorted by geohash, so a viewport reads only the cells under
+ * the few geohash prefixes that cover it.
+ */
+@Service
+public class HeatmapService {
+
+    // Geohash precisions kept in memory, from country-wide to street level
+    private static final int[] PRECISIONS = { 2, 3, 4, 5, 6 };
+
+    // Most geohash prefixes a viewport is split into; wider viewports use shorter prefixes
+    private static final int MAX_COVER_CELLS = 64;
+
+    private final UserRepository userRepository;
+    private final IndexRebuildGuard<User> guard = new IndexRebuildGuard<>();
+
+    private volatile List<NavigableMap<String, Cell>> levels = emptyLevels();
+    // userId -> the cell and rating the user is counted with
+    private volatile Map<String, Placement> placements = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HeatmapService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Seed the aggregate once all startup data generators have finished
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        guard.startRebuild();
+        List<NavigableMap<String, Cell>> freshLevels = emptyLevels();
+        Map<String, Placement> freshPlacements = new ConcurrentHashMap<>();
+        try (Stream<User> stream = userRepository.streamActiveUserPositions()) {
+            for (User user : (Iterable<User>) stream::iterator) {
+                if (user.getCurrentLocation() != null) {
+                    Placement placement = Placement.of(user);
+                    apply(freshLevels, placement, 1);
+                    freshPlacements.put(user.getId(), placement);
+                }
+            }
+        } catch (RuntimeException e) {
+            guard.finishRebuild(null, this::place);
+            throw e;
+        }
+        int replayed = guard.finishRebuild(() -> {
+            levels = freshLevels;
+            placements = freshPlacements;
+        }, this::place);
+        System.out.println("Heatmap seeded with " + freshPlacements.size() + " active users, "
+                + replayed + " changes replayed");
+    }
+
+    /**
+     * Count the user at their current location and rating, or nowhere if inactive or unplaced
+     */
+    public void onUserChanged(User user) {
+        if (user.getId() != null) {
+            guard.change(user.getId(), user, this::place);
+        }
+    }
+
+    public void onUserRemoved(String userId) {
+        guard.change(userId, null, this::place);
+    }
+
+    private void place(String userId, User user) {
+        Placement placement = user != null && user.isActive() && user.getCurrentLocation() != null
+                ? Placement.of(user) : null;
+        // compute() serializes changes to one user, so nobody is counted twice
+        placements.compute(userId, (id, previous) -> {
+            if (placement != null && placement.equals(previous)) {
+                return previous;
+            }
+            if (previous != null) {
+                apply(levels, previous, -1);
+            }
+            if (placement != null) {
+                apply(levels, placement, 1);
+            }
+            return placement;
+        });
+    }
+
+    /**
+     * Map a web map zoom level (0-18) to one of the maintained geohash precisions
+     */
+    public static int precisionForZoom(int zoom) {
+        int index = Math.max(0, Math.min(PRECISIONS.length - 1, (zoom - 1) / 3));
+        return PRECISIONS[index];
+    }
+
+    /**
+     * Return the non-empty cells whose centers fall inside the bounding box
+     */
+    public List<HeatmapCell> getCells(double minLon, double minLat, double maxLon, double maxLat, int zoom) {
+        int precision = precisionForZoom(zoom);
+        NavigableMap<String, Cell> level = levels.get(indexOf(precision));
+        List<HeatmapCell> result = new ArrayList<>();
+        for (String prefix : Geohash.cover(minLat, minLon, maxLat, maxLon, precision, MAX_COVER_CELLS)) {
+            // Every cell of the level that starts with the prefix, in one range of the sorted map
+            for (Map.Entry<String, Cell> entry : level.subMap(prefix, true, prefix + Character.MAX_VALUE, false).entrySet()) {
+                Cell cell = entry.getValue();
+                if (cell.lat < minLat || cell.lat > maxLat || cell.lon < minLon || cell.lon > maxLon) {
+                    continue;
+                }
+                long count;
+                double ratingSum;
+                synchronized (cell) {
+                    count = cell.count;
+                    ratingSum = cell.ratingSum;
+                }
+                if (count > 0) {
+                    result.add(new HeatmapCell(entry.getKey(), cell.lat, cell.lon, count, ratingSum, ratingSum / count));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void apply(List<NavigableMap<String, Cell>> levels, Placement placement, int sign) {
+        for (int i = 0; i < PRECISIONS.length; i++) {
+            String hash = placement.hash().substring(0, PRECISIONS[i]);
+            NavigableMap<String, Cell> level = levels.get(i);
+            // The skip list may run compute() functions more than once, so cells are updated under their own lock
+            // and an emptied cell is marked before it is dropped, sending late arrivals to a fresh one
+            while (true) {
+                Cell cell = level.computeIfAbsent(hash, Cell::new);
+                synchronized (cell) {
+                    if (cell.removed) {
+                        continue;
+                    }
+                    cell.count += sign;
+                    cell.ratingSum += sign * placement.rating();
+                    if (cell.count <= 0) {
+                        cell.removed = true;
+                        level.remove(hash, cell);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int indexOf(int precision) {
+        for (int i = 0; i < PRECISIONS.length; i++) {
+            if (PRECISIONS[i] == precision) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported geohash precision: " + precision);
+    }
+
+    private static List<NavigableMap<String, Cell>> emptyLevels() {
+        List<NavigableMap<String, Cell>> result = new ArrayList<>(PRECISIONS.length);
+        for (int i = 0; i < PRECISIONS.length; i++) {
+            result.add(new ConcurrentSkipListMap<>());
+        }
+        return result;
+    }
+
+    // The user's cell at the finest precision; coarser cells are its prefixes
+    private record Placement(String hash, double rating) {
+        static Placement of(User user) {
+            return new Placement(Geohash.encode(user.getCurrentLocation().getLatitude(),
+                    user.getCurrentLocation().getLongitude(), PRECISIONS[PRECISIONS.length - 1]), user.getSocialRating());
+        }
+    }
+
+    private static final class Cell {
+        // Center of the cell, worked out once when it is created
+        final double lat;
+        final double lon;
+        long count;
+        double ratingSum;
+        boolean removed;
+
+        Cell(String hash) {
+            double[] bounds = Geohash.bounds(hash);
+            this.lat = (bounds[0] + bounds[2]) / 2;
+            this.lon = (bounds[1] + bounds[3]) / 2;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package itmo.rshd.service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps the changes made while an in-memory index of documents is rebuilt from MongoDB.
+ * Outside a rebuild a change is applied to the current index at once. During one, only the
+ * latest state of each changed document is recorded, and that state is applied to the new index
+ * right after it is installed, before any later change can reach it. This works because the
+ * indexes apply a document's whole state rather than a delta, so applying a state the rebuild
+ * already read changes nothing.
+ * @param <T> the indexed document, such as a user or a missile
+ */
+final class IndexRebuildGuard<T> {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Latest state by document id while a rebuild runs, empty for a removed document; null otherwise
+    private Map<String, Optional<T>> pending;
+    private volatile boolean seeded = false;
+
+    boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * Apply the document's new state, or record it while a rebuild runs.
+     * Before the first rebuild starts nothing is applied: that rebuild reads the change from MongoDB.
+     * @param document the document's state, or null if it was removed
+     */
+    void change(String id, T document, BiConsumer<String, T> apply) {
+        lock.readLock().lock();
+        try {
+            if (pending != null) {
+                pending.put(id, Optional.ofNullable(document));
+            } else if (seeded) {
+                apply.accept(id, document);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void startRebuild() {
+        lock.writeLock().lock();
+        try {
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Install the new index and apply the changes recorded during the rebuild to it
+     * @param install swaps in the new index, or null if the rebuild failed and the old one stays
+     * @return the number of changes applied
+     */
+    int finishRebuild(Runnable install, BiConsumer<String, T> apply) {
+        lock.writeLock().lock();
+        try {
+            if (install != null) {
+                install.run();
+                seeded = true;
+            }
+            Map<String, Optional<T>> changes = pending;
+            pending = null;
+            if (seeded) {
+                changes.forEach((id, document) -> apply.accept(id, document.orElse(null)));
+            }
+            return changes.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package itmo.rshd.service;
+
+import itmo.rshd.model.Leaderboard;
+import itmo.rshd.model.LeaderboardEntry;
+import itmo.rshd.model.RegionMembership;
+import itmo.rshd.model.User;
+import itmo.rshd.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Active users of every region ordered by social rating.
+ * Each region keeps a concurrent skip list, so the top and bottom k are read
+ * from its two ends without touching the rest of the region. Seeded from a
+ * rating-sorted MongoDB stream at startup and then maintained incrementally
+ * on every rating, membership and user change. Changes made while the stream
+ * is read are applied to the new boards once they are installed.
+ */
+@Service
+public class LeaderboardService {
+
+    public static final int MAX_K = 100;
+
+    // Highest rating first; the id breaks ties so every user is a distinct element
+    private static final Comparator<LeaderboardEntry> ORDER = Comparator
+            .comparingDouble(LeaderboardEntry::getSocialRating).reversed()
+            .thenComparing(LeaderboardEntry::getUserId);
+
+    private final UserRepository userRepository;
+    private final RegionHierarchyService regionHierarchyService;
+    private final IndexRebuildGuard<User> guard = new IndexRebuildGuard<>();
+
+    private volatile Map<String, Board> boards = new ConcurrentHashMap<>();
+    private volatile Map<String, Membership> members = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LeaderboardService(UserRepository userRepository, RegionHierarchyService regionHierarchyService) {
+        this.userRepository = userRepository;
+        this.regionHierarchyService = regionHierarchyService;
+    }
+
+    /**
+     * Seed the leaderboards once all startup data generators have finished
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        // Regions may have been generated after the hierarchy was first read
+        regionHierarchyService.invalidate();
+        guard.startRebuild();
+        Map<String, Board> freshBoards = new ConcurrentHashMap<>();
+        Map<String, Membership> freshMembers = new ConcurrentHashMap<>();
+        try (Stream<User> stream = userRepository.streamActiveUsersByRating()) {
+            for (User user : (Iterable<User>) stream::iterator) {
+                Membership membership = new Membership(entryOf(user), regionsOf(user));
+                for (String regionId : membership.regionIds) {
+                    freshBoards.computeIfAbsent(regionId, id -> new Board()).add(membership.entry);
+                }
+                freshMembers.put(user.getId(), membership);
+            }
+        } catch (RuntimeException e) {
+            guard.finishRebuild(null, this::place);
+            throw e;
+        }
+        int replayed = guard.finishRebuild(() -> {
+            boards = freshBoards;
+            members = freshMembers;
+        }, this::place);
+        System.out.println("Leaderboards seeded with " + freshMembers.size() + " active users in "
+                + freshBoards.size() + " regions, " + replayed + " changes replayed");
+    }
+
+    /**
+     * Move the user to their current rating and regions, or off every board if inactive
+     */
+    public void onUserChanged(User user) {
+        if (user.getId() != null) {
+            guard.change(user.getId(), user, this::place);
+        }
+    }
+
+    public void onUserRemoved(String userId) {
+        guard.change(userId, null, this::place);
+    }
+
+    private void place(String userId, User user) {
+        if (user == null || !user.isActive()) {
+            remove(userId);
+            return;
+        }
+        LeaderboardEntry entry = entryOf(user);
+        Set<String> regionIds = regionsOf(user);
+        // compute() serializes changes to one user, so a board never keeps a stale entry
+        members.compute(userId, (id, previous) -> {
+            if (previous != null && previous.entry.equals(entry) && previous.regionIds.equals(regionIds)) {
+                return previous;
+            }
+            for (String regionId : regionIds) {
+                Board board = boards.computeIfAbsent(regionId, key -> new Board());
+                if (previous != null && previous.regionIds.contains(regionId)
+                        && ORDER.compare(previous.entry, entry) == 0) {
+                    // Same position with other details; the set would treat them as one element
+                    board.remove(previous.entry);
+                }
+                board.add(entry);
+            }
+            if (previous != null) {
+                for (String regionId : previous.regionIds) {
+                    Board board = boards.get(regionId);
+                    if (board != null && !(regionIds.contains(regionId) && ORDER.compare(previous.entry, entry) == 0)) {
+                        board.remove(previous.entry);
+                    }
+                }
+            }
+            return new Membership(entry, regionIds);
+        });
+    }
+
+    private void remove(String userId) {
+        members.computeIfPresent(userId, (id, previous) -> {
+            for (String regionId : previous.regionIds) {
+                Board board = boards.get(regionId);
+                if (board != null) {
+                    board.remove(previous.entry);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * The k best and k worst rated users of the region, read from the ends of its skip list
+     */
+    public Leaderboard getLeaderboard(String regionId, int k) {
+        int limit = Math.max(1, Math.min(k, MAX_K));
+        Board board = boards.get(regionId);
+        if (board == null) {
+            return new Leaderboard(regionId, 0, List.of(), List.of());
+        }
+        return new Leaderboard(regionId, board.size.get(),
+                take(board.entries.iterator(), limit), take(board.entries.descendingIterator(), limit));
+    }
+
+    // While a user is being moved they can briefly appear twice, so duplicates are skipped
+    private static List<LeaderboardEntry> take(Iterator<LeaderboardEntry> it, int limit) {
+        List<LeaderboardEntry> result = new ArrayList<>(limit);
+        Set<String> seen = new HashSet<>();
+        while (it.hasNext() && result.size() < limit) {
+            LeaderboardEntry entry = it.next();
+            if (seen.add(entry.getUserId())) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    private static LeaderboardEntry entryOf(User user) {
+        return new LeaderboardEntry(user.getId(), user.getFullName(), user.getSocialRating(), user.getStatus());
+    }
+
+    // The user's district or directly assigned region with all its ancestors, plus the country
+    private Set<String> regionsOf(User user) {
+        Set<String> regionIds = new LinkedHashSet<>();
+        String regionId = isAssigned(user.getDistrictId()) ? user.getDistrictId()
+                : isAssigned(user.getRegionId()) ? user.getRegionId() : null;
+        if (regionId != null) {
+            regionIds.addAll(regionHierarchyService.selfAndAncestors(regionId));
+        }
+        if (isAssigned(user.getCountryId())) {
+            regionIds.add(user.getCountryId());
+        }
+        return regionIds;
+    }
+
+    private static boolean isAssigned(String regionId) {
+        return regionId != null && !regionId.equals(RegionMembership.NONE);
+    }
+
+    private record Membership(LeaderboardEntry entry, Set<String> regionIds) {
+    }
+
+    private static final class Board {
+        final ConcurrentSkipListSet<LeaderboardEntry> entries = new ConcurrentSkipListSet<>(ORDER);
+        // The skip list counts its size by walking it, so the count is kept separately
+        final AtomicInteger size = new AtomicInteger();
+
+        void add(LeaderboardEntry entry) {
+            if (entries.add(entry)) {
+                size.incrementAndGet();
+            }
+        }
+
+        void remove(LeaderboardEntry entry) {
+            if (entries.remove(entry)) {
+                size.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package itmo.rshd.service;
+
+import itmo.rshd.geo.Tiles;
+import itmo.rshd.model.User;
+import itmo.rshd.model.websocket.TileUpdate;
+import itmo.rshd.model.websocket.UserPosition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces user location changes into one broadcast frame per tick.
+ * Only the latest position of each user within a tick is kept, so the
+ * outbound channel carries at most one small entry per moving user per tick
+ * instead of one full User message per ping.
+ * Each frame is also split by map tile and published to /topic/tiles/{z}/{x}/{y}
+ * for every configured zoom, so clients that subscribe to the tiles of their
+ * viewport only receive the users they can see. A user that crosses into another
+ * tile, or is removed, is listed as left in the tile they were last published to.
+ */
+@Service
+public class LocationBroadcaster {
+
+    public static final String LOCATION_TOPIC = "/topic/user-location-update";
+    public static final String TILE_TOPIC_PREFIX = "/topic/tiles/";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final Map<String, UserPosition> pending = new ConcurrentHashMap<>();
+    private final Set<String> removed = ConcurrentHashMap.newKeySet();
+    // Tile each user was last published to, one per configured zoom; only touched by flush()
+    private final Map<String, String[]> lastTiles = new HashMap<>();
+
+    // Zoom levels updates are routed to; clients pick the one that covers their viewport with few tiles
+    @Value("${zov.websocket.tile-zooms:6,9,12}")
+    private int[] tileZooms;
+
+    // Whether the nationwide topic still receives every frame
+    @Value("${zov.websocket.global-location-topic:true}")
+    private boolean globalTopic;
+
+    @Autowired
+    public LocationBroadcaster(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    /**
+     * Queue the user's current position for the next frame, replacing any earlier one
+     */
+    public void enqueue(User user) {
+        if (user.getId() != null && user.getCurrentLocation() != null) {
+            pending.put(user.getId(), UserPosition.of(user));
+        }
+    }
+
+    /**
+     * Take the user off the tiles they were last published to in the next frame
+     */
+    public void remove(String userId) {
+        removed.add(userId);
+        pending.remove(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${zov.websocket.location-tick-ms:100}")
+    public void flush() {
+        if (pending.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        // Remove key by key so updates racing with the flush land in the next frame instead of being lost
+        List<UserPosition> frame = new ArrayList<>(pending.size());
+        for (String userId : pending.keySet()) {
+            UserPosition position = pending.remove(userId);
+            if (position != null) {
+                frame.add(position);
+            }
+        }
+        if (globalTopic && !frame.isEmpty()) {
+            messagingTemplate.convertAndSend(LOCATION_TOPIC, frame);
+        }
+        for (Map.Entry<String, TileUpdate> tile : groupByTile(frame).entrySet()) {
+            messagingTemplate.convertAndSend(TILE_TOPIC_PREFIX + tile.getKey(), tile.getValue());
+        }
+    }
+
+    private Map<String, TileUpdate> groupByTile(List<UserPosition> frame) {
+        Map<String, TileUpdate> tiles = new HashMap<>();
+        for (UserPosition position : frame) {
+            String[] previous = lastTiles.get(position.getId());
+            String[] current = new String[tileZooms.length];
+            for (int i = 0; i < tileZooms.length; i++) {
+                current[i] = Tiles.tileOf(position.getLat(), position.getLon(), tileZooms[i]);
+                tiles.computeIfAbsent(current[i], key -> new TileUpdate()).getMoved().add(position);
+                if (previous != null && i < previous.length && !current[i].equals(previous[i])) {
+                    tiles.computeIfAbsent(previous[i], key -> new TileUpdate()).getLeft().add(position.getId());
+                }
+            }
+            lastTiles.put(position.getId(), current);
+        }
+        // Remove one by one so a removal racing with the flush is handled in the next frame
+        for (String userId : removed) {
+            removed.remove(userId);
+            String[] previous = lastTiles.remove(userId);
+            if (previous != null) {
+                for (String tile : previous) {
+                    tiles.computeIfAbsent(tile, key -> new TileUpdate()).getLeft().add(userId);
+                }
+            }
+        }
+        return tiles;
+    }
+}
@@ -0,0 +1,229 @@
+package itmo.rshd.service;
+
+import itmo.rshd.model.Missile;
+import itmo.rshd.model.Missile.MissileStatus;
+import itmo.rshd.model.Missile.MissileType;
+import itmo.rshd.model.MissileInventory;
+import itmo.rshd.repository.MissileRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every missile indexed by type and status and by supply depot.
+ * Seeded from MongoDB once at startup and then updated by MissileService on
+ * every create, update, delete and status transition, so inventory counts and
+ * availability lists are served without querying the missiles collection.
+ * Changes made while the collection is read are applied to the new index once it is installed.
+ */
+@Service
+public class MissileInventoryService {
+
+    private final MissileRepository missileRepository;
+
+    private volatile Map<String, Missile> missiles = new ConcurrentHashMap<>();
+    private volatile Map<Key, Set<String>> byTypeAndStatus = new ConcurrentHashMap<>();
+    private volatile Map<String, Set<String>> byDepot = new ConcurrentHashMap<>();
+    private final IndexRebuildGuard<Missile> guard = new IndexRebuildGuard<>();
+
+    @Autowired
+    public MissileInventoryService(MissileRepository missileRepository) {
+        this.missileRepository = missileRepository;
+    }
+
+    /**
+     * Seed the index once all startup data generators have finished
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        guard.startRebuild();
+        Map<String, Missile> freshMissiles = new ConcurrentHashMap<>();
+        Map<Key, Set<String>> freshByTypeAndStatus = new ConcurrentHashMap<>();
+        Map<String, Set<String>> freshByDepot = new ConcurrentHashMap<>();
+        try {
+            for (Missile missile : missileRepository.findAll()) {
+                freshMissiles.put(missile.getId(), missile);
+                add(freshByTypeAndStatus, freshByDepot, missile);
+            }
+        } catch (RuntimeException e) {
+            guard.finishRebuild(null, this::place);
+            throw e;
+        }
+        int replayed = guard.finishRebuild(() -> {
+            missiles = freshMissiles;
+            byTypeAndStatus = freshByTypeAndStatus;
+            byDepot = freshByDepot;
+        }, this::place);
+        System.out.println("Missile inventory seeded with " + freshMissiles.size() + " missiles, "
+                + replayed + " changes replayed");
+    }
+
+    public boolean isSeeded() {
+        return guard.isSeeded();
+    }
+
+    /**
+     * Record the missile as it was just written to MongoDB
+     */
+    public void onMissileSaved(Missile missile) {
+        if (missile != null && missile.getId() != null) {
+            guard.change(missile.getId(), missile, this::place);
+        }
+    }
+
+    public void onMissileRemoved(String missileId) {
+        if (missileId != null) {
+            guard.change(missileId, null, this::place);
+        }
+    }
+
+    private void place(String missileId, Missile missile) {
+        if (missile == null) {
+            missiles.computeIfPresent(missileId, (id, previous) -> {
+                remove(byTypeAndStatus, byDepot, previous);
+                return null;
+            });
+            return;
+        }
+        // compute() serializes changes to one missile, so a missile never ends up in two index sets
+        missiles.compute(missileId, (id, previous) -> {
+            if (previous != null) {
+                remove(byTypeAndStatus, byDepot, previous);
+            }
+            add(byTypeAndStatus, byDepot, missile);
+            return missile;
+        });
+    }
+
+    public Missile getMissile(String missileId) {
+        return missiles.get(missileId);
+    }
+
+    public List<Missile> getAllMissiles() {
+        return new ArrayList<>(missiles.values());
+    }
+
+    public long count(MissileType type, MissileStatus status) {
+        Set<String> ids = byTypeAndStatus.get(new Key(type, status));
+        return ids == null ? 0 : ids.size();
+    }
+
+    public List<Missile> getMissiles(MissileType type, MissileStatus status) {
+        return resolve(byTypeAndStatus.get(new Key(type, status)), type, status);
+    }
+
+    public List<Missile> getMissilesByStatus(MissileStatus status) {
+        List<Missile> result = new ArrayList<>();
+        for (Map.Entry<Key, Set<String>> entry : byTypeAndStatus.entrySet()) {
+            if (entry.getKey().status() == status) {
+                result.addAll(resolve(entry.getValue(), entry.getKey().type(), status));
+            }
+        }
+        return result;
+    }
+
+    public List<Missile> getMissilesByType(MissileType type) {
+        List<Missile> result = new ArrayList<>();
+        for (Map.Entry<Key, Set<String>> entry : byTypeAndStatus.entrySet()) {
+            if (entry.getKey().type() == type) {
+                result.addAll(resolve(entry.getValue(), type, entry.getKey().status()));
+            }
+        }
+        return result;
+    }
+
+    public List<Missile> getMissilesByDepot(String supplyDepotId) {
+        Set<String> ids = byDepot.get(supplyDepotId);
+        List<Missile> result = new ArrayList<>();
+        if (ids != null) {
+            for (String id : ids) {
+                Missile missile = missiles.get(id);
+                if (missile != null && supplyDepotId.equals(missile.getSupplyDepotId())) {
+                    result.add(missile);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts by type and status across all missiles
+     */
+    public MissileInventory getInventory() {
+        return summarize(null, missiles.values());
+    }
+
+    /**
+     * Counts by type and status of the missiles stored at one supply depot
+     */
+    public MissileInventory getDepotInventory(String supplyDepotId) {
+        return summarize(supplyDepotId, getMissilesByDepot(supplyDepotId));
+    }
+
+    static MissileInventory summarize(String supplyDepotId, Collection<Missile> missiles) {
+        Map<MissileType, Map<MissileStatus, Long>> counts = new EnumMap<>(MissileType.class);
+        long total = 0;
+        for (Missile missile : missiles) {
+            total++;
+            // Missiles without a type or status only show in the total
+            if (missile.getType() != null && missile.getStatus() != null) {
+                counts.computeIfAbsent(missile.getType(), type -> new EnumMap<>(MissileStatus.class))
+                        .merge(missile.getStatus(), 1L, Long::sum);
+            }
+        }
+        return new MissileInventory(supplyDepotId, total, counts);
+    }
+
+    // A missile being moved can briefly sit in its old and new set, so each is checked against its current state
+    private List<Missile> resolve(Set<String> ids, MissileType type, MissileStatus status) {
+        List<Missile> result = new ArrayList<>();
+        if (ids != null) {
+            for (String id : ids) {
+                Missile missile = missiles.get(id);
+                if (missile != null && missile.getType() == type && missile.getStatus() == status) {
+                    result.add(missile);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void add(Map<Key, Set<String>> byTypeAndStatus, Map<String, Set<String>> byDepot, Missile missile) {
+        byTypeAndStatus.computeIfAbsent(Key.of(missile), key -> ConcurrentHashMap.newKeySet()).add(missile.getId());
+        if (missile.getSupplyDepotId() != null) {
+            byDepot.computeIfAbsent(missile.getSupplyDepotId(), key -> ConcurrentHashMap.newKeySet()).add(missile.getId());
+        }
+    }
+
+    private static void remove(Map<Key, Set<String>> byTypeAndStatus, Map<String, Set<String>> byDepot, Missile missile) {
+        Set<String> ids = byTypeAndStatus.get(Key.of(missile));
+        if (ids != null) {
+            ids.remove(missile.getId());
+        }
+        if (missile.getSupplyDepotId() != null) {
+            Set<String> depotIds = byDepot.get(missile.getSupplyDepotId());
+            if (depotIds != null) {
+                depotIds.remove(missile.getId());
+            }
+        }
+    }
+
+    private record Key(MissileType type, MissileStatus status) {
+        static Key of(Missile missile) {
+            return new Key(missile.getType(), missile.getStatus());
+        }
+    }
+}
@@ -1,32 +1,63 @@
 package itmo.rshd.service;
 
+import itmo.rshd.geo.GeoDistance;
+import itmo.rshd.geo.RegionPolygonIndex;
+import itmo.rshd.geo.StrTree;
 import itmo.rshd.model.Missile;
 import itmo.rshd.model.Missile.MissileStatus;
 import itmo.rshd.model.Missile.MissileType;
+import itmo.rshd.model.MissileBulkRequest;
+import itmo.rshd.model.MissileBulkResult;
+import itmo.rshd.model.MissileInventory;
 import itmo.rshd.model.Region;
 import itmo.rshd.repository.MissileRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.geo.Point;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class MissileService {
 
+    // Most missile ids a bulk request may list, and most candidates written by one update
+    public static final int MAX_BULK_MISSILES = 1000;
+
     private final MissileRepository missileRepository;
     private final RegionService regionService;
+    private final RegionLocatorService regionLocatorService;
+    private final MissileInventoryService missileInventoryService;
+
+    /**
+     * How a missile is considered to cover a region
+     */
+    public enum CoverageMode {
+        CENTROID, // the region centroid is within range
+        BOUNDARY  // any part of the region is within range
+    }
+
     @Autowired
     public MissileService(MissileRepository missileRepository, 
                           RegionService regionService,
-                          MissileSupplyGraphService missileSupplyGraphService) {
+                          MissileSupplyGraphService missileSupplyGraphService,
+                          RegionLocatorService regionLocatorService,
+                          MissileInventoryService missileInventoryService) {
         this.missileRepository = missileRepository;
         this.regionService = regionService;
+        this.regionLocatorService = regionLocatorService;
+        this.missileInventoryService = missileInventoryService;
     }
 
     public Missile createMissile(Missile missile) {
-        return missileRepository.save(missile);
+        Missile created = missileRepository.save(missile);
+        missileInventoryService.onMissileSaved(created);
+        return created;
     }
 
     public List<Missile> getAllMissiles() {
@@ -37,86 +68,356 @@ public class MissileService {
         return missileRepository.findById(id);
     }
 
+    /**
+     * Save the whole document. A missile carrying a version is only written if nothing
+     * changed it since it was read; one without a version overwrites the stored document.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the version is outdated
+     */
     public Missile updateMissile(Missile missile) {
-        return missileRepository.save(missile);
+        if (missile.getVersion() == null) {
+            missileRepository.findById(missile.getId()).ifPresent(current -> missile.setVersion(current.getVersion()));
+        }
+        Missile updated = missileRepository.save(missile);
+        missileInventoryService.onMissileSaved(updated);
+        return updated;
     }
 
     public void deleteMissile(String id) {
         missileRepository.deleteById(id);
+        missileInventoryService.onMissileRemoved(id);
     }
 
+    // The lookups below are served from the inventory index once it has been seeded
+
     public List<Missile> findMissilesByType(MissileType type) {
+        if (missileInventoryService.isSeeded()) {
+            return missileInventoryService.getMissilesByType(type);
+        }
         return missileRepository.findByType(type);
     }
 
     public List<Missile> findMissilesByStatus(MissileStatus status) {
+        if (missileInventoryService.isSeeded()) {
+            return missileInventoryService.getMissilesByStatus(status);
+        }
         return missileRepository.findByStatus(status);
     }
 
     public List<Missile> findReadyMissilesByType(MissileType type) {
+        if (missileInventoryService.isSeeded()) {
+            return missileInventoryService.getMissiles(type, MissileStatus.READY);
+        }
         return missileRepository.findReadyMissilesByType(type);
     }
 
-    public boolean performMaintenance(String missileId) {
-        Optional<Missile> missileOpt = missileRepository.findById(missileId);
-        if (missileOpt.isPresent()) {
-            Missile missile = missileOpt.get();
-            missile.setStatus(MissileStatus.IN_MAINTENANCE);
-            missile.setLastMaintenanceDate(LocalDateTime.now());
-            missileRepository.save(missile);
-            return true;
+    public List<Missile> findMissilesByDepot(String supplyDepotId) {
+        if (missileInventoryService.isSeeded()) {
+            return missileInventoryService.getMissilesByDepot(supplyDepotId);
         }
-        return false;
+        return missileRepository.findBySupplyDepotId(supplyDepotId);
+    }
+
+    public long countReadyMissilesByType(MissileType type) {
+        if (missileInventoryService.isSeeded()) {
+            return missileInventoryService.count(type, MissileStatus.READY);
+        }
+        return missileRepository.countByTypeAndStatus(type, MissileStatus.READY);
+    }
+
+    public MissileInventory getInventory() {
+        if (missileInventoryService.isSeeded()) {
+            return missileInventoryService.getInventory();
+        }
+        return MissileInventoryService.summarize(null, missileRepository.findAll());
+    }
+
+    public MissileInventory getDepotInventory(String supplyDepotId) {
+        if (missileInventoryService.isSeeded()) {
+            return missileInventoryService.getDepotInventory(supplyDepotId);
+        }
+        return MissileInventoryService.summarize(supplyDepotId, missileRepository.findBySupplyDepotId(supplyDepotId));
+    }
+
+    public boolean performMaintenance(String missileId) {
+        // Any status may go into maintenance, as before
+        return transition(missileId, List.of(), MissileStatus.IN_MAINTENANCE, true);
     }
 
     public boolean deployMissile(String missileId, String targetRegionId) {
-        Optional<Missile> missileOpt = missileRepository.findById(missileId);
         Optional<Region> regionOpt = regionService.getRegionById(targetRegionId);
         
-        if (missileOpt.isPresent() && regionOpt.isPresent()) {
-            Missile missile = missileOpt.get();
-            Region targetRegion = regionOpt.get();
-            
-            // Check if missile is ready
-            if (missile.getStatus() != MissileStatus.READY) {
-                return false;
-            }
-            
-            // Check if region is eligible for targeting (low rating, no important persons)
-            if (!targetRegion.isUnderThreat()) {
-                return false;
-            }
-            
-            // Update missile status
-            missile.setStatus(MissileStatus.DEPLOYED);
-            missileRepository.save(missile);
-            
-            // In a real system, we would have additional logic for the actual "targeting" operation
-            // This is just a placeholder for the missile deployment logic
-            
-            return true;
+        // Check if region is eligible for targeting (low rating, no important persons)
+        if (regionOpt.isEmpty() || !regionOpt.get().isUnderThreat()) {
+            return false;
         }
-        return false;
+        
+        // In a real system, we would have additional logic for the actual "targeting" operation
+        // This is just a placeholder for the missile deployment logic
+        
+        // Only a missile that is still ready is deployed, so concurrent requests cannot both launch it
+        return transition(missileId, List.of(MissileStatus.READY), MissileStatus.DEPLOYED, false);
     }
 
     public List<Missile> findMissilesForRegion(String regionId, double minRange) {
+        return findMissilesCoveringRegion(regionId, minRange, CoverageMode.BOUNDARY);
+    }
+
+    /**
+     * Ready missiles with at least minRange whose range reaches the region.
+     * A region the polygon index does not hold is judged by its own coordinates.
+     */
+    public List<Missile> findMissilesCoveringRegion(String regionId, double minRange, CoverageMode mode) {
+        RegionPolygonIndex regions = regionLocatorService.getIndex();
+        double[] bounds = regions.bounds(regionId);
+        if (bounds == null) {
+            return findMissilesReachingRegionPoint(regionId, minRange);
+        }
+        // One region needs one pass, so the reach boxes are compared directly rather than packed into a tree
+        List<Missile> result = new ArrayList<>();
+        for (Missile missile : locatedReadyMissiles(minRange)) {
+            double[] box = reachBox(missile);
+            if (box[0] <= bounds[2] && box[2] >= bounds[0] && box[1] <= bounds[3] && box[3] >= bounds[1]
+                    && covers(regions, regionId, missile, mode)) {
+                result.add(missile);
+            }
+        }
+        return result;
+    }
+
+    // For regions without a usable boundary: the mean of whatever boundary points they have,
+    // or every ready missile with the range if they have none, as before the coverage check
+    private List<Missile> findMissilesReachingRegionPoint(String regionId, double minRange) {
         Optional<Region> regionOpt = regionService.getRegionById(regionId);
-        if (regionOpt.isPresent()) {
+        if (regionOpt.isEmpty()) {
+            return List.of();
+        }
+        double[] point = meanBoundaryPoint(regionOpt.get());
+        if (point == null) {
             return missileRepository.findReadyMissilesWithRangeAtLeast(minRange);
         }
-        return List.of();
+        List<Missile> result = new ArrayList<>();
+        for (Missile missile : locatedReadyMissiles(minRange)) {
+            if (GeoDistance.haversineKm(missile.getCurrentLocation().getLatitude(),
+                    missile.getCurrentLocation().getLongitude(), point[0], point[1]) <= missile.getRange()) {
+                result.add(missile);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return latitude and longitude of the mean boundary point, or null if the region has none
+     */
+    private static double[] meanBoundaryPoint(Region region) {
+        if (region.getBoundaries() == null || region.getBoundaries().getPoints().isEmpty()) {
+            return null;
+        }
+        double lat = 0;
+        double lon = 0;
+        List<Point> points = region.getBoundaries().getPoints();
+        for (Point point : points) {
+            lat += point.getY();
+            lon += point.getX();
+        }
+        return new double[] { lat / points.size(), lon / points.size() };
+    }
+
+    /**
+     * Missile ids covering each region, computed in a single pass over all regions.
+     * Regions no missile reaches map to an empty list.
+     */
+    public Map<String, List<String>> computeCoverageMatrix(double minRange, CoverageMode mode) {
+        RegionPolygonIndex regions = regionLocatorService.getIndex();
+        List<Missile> missiles = locatedReadyMissiles(minRange);
+        StrTree reach = buildReachTree(missiles);
+        Map<String, List<String>> matrix = new HashMap<>();
+        for (String regionId : regions.regionIds()) {
+            double[] bounds = regions.bounds(regionId);
+            List<String> covering = new ArrayList<>();
+            reach.query(bounds[0], bounds[1], bounds[2], bounds[3], i -> {
+                if (covers(regions, regionId, missiles.get(i), mode)) {
+                    covering.add(missiles.get(i).getId());
+                }
+            });
+            matrix.put(regionId, covering);
+        }
+        return matrix;
+    }
+
+    private List<Missile> locatedReadyMissiles(double minRange) {
+        List<Missile> located = new ArrayList<>();
+        for (Missile missile : missileRepository.findReadyMissilesWithRangeAtLeast(minRange)) {
+            if (missile.getCurrentLocation() != null) {
+                located.add(missile);
+            }
+        }
+        return located;
+    }
+
+    // Index every missile by the bounding box of the area it can reach
+    private static StrTree buildReachTree(List<Missile> missiles) {
+        double[] bounds = new double[missiles.size() * 4];
+        for (int i = 0; i < missiles.size(); i++) {
+            System.arraycopy(reachBox(missiles.get(i)), 0, bounds, i * 4, 4);
+        }
+        return StrTree.build(bounds);
+    }
+
+    private static double[] reachBox(Missile missile) {
+        return GeoDistance.boundingBox(missile.getCurrentLocation().getLatitude(),
+                missile.getCurrentLocation().getLongitude(), missile.getRange());
+    }
+
+    private static boolean covers(RegionPolygonIndex regions, String regionId, Missile missile, CoverageMode mode) {
+        double lat = missile.getCurrentLocation().getLatitude();
+        double lon = missile.getCurrentLocation().getLongitude();
+        if (mode == CoverageMode.CENTROID) {
+            double[] centroid = regions.centroid(regionId);
+            return GeoDistance.haversineKm(lat, lon, centroid[0], centroid[1]) <= missile.getRange();
+        }
+        return regions.distanceKm(regionId, lat, lon) <= missile.getRange();
     }
 
     public boolean completeMaintenance(String missileId) {
-        Optional<Missile> missileOpt = missileRepository.findById(missileId);
-        if (missileOpt.isPresent()) {
-            Missile missile = missileOpt.get();
-            if (missile.getStatus() == MissileStatus.IN_MAINTENANCE) {
-                missile.setStatus(MissileStatus.READY);
-                missileRepository.save(missile);
-                return true;
+        return transition(missileId, List.of(MissileStatus.IN_MAINTENANCE), MissileStatus.READY, false);
+    }
+
+    /**
+     * Put every selected READY missile into maintenance. Unlike the single-missile call,
+     * missiles in any other status are reported as conflicts rather than changed.
+     * @throws IllegalArgumentException if the request selects nothing specific, see {@link #validate}
+     */
+    public MissileBulkResult performMaintenance(MissileBulkRequest selection) {
+        return transitionAll(selection, List.of(MissileStatus.READY), MissileStatus.IN_MAINTENANCE, true);
+    }
+
+    /**
+     * Return every selected missile that is in maintenance to READY
+     * @throws IllegalArgumentException if the request selects nothing specific, see {@link #validate}
+     */
+    public MissileBulkResult completeMaintenance(MissileBulkRequest selection) {
+        return transitionAll(selection, List.of(MissileStatus.IN_MAINTENANCE), MissileStatus.READY, false);
+    }
+
+    /**
+     * A bulk request must list missile ids or set at least one criterion, so an empty body
+     * cannot select the whole arsenal, and it may list at most {@link #MAX_BULK_MISSILES} ids
+     */
+    private static void validate(MissileBulkRequest selection) {
+        if (selection.getMissileIds() == null && selection.getType() == null
+                && selection.getSupplyDepotId() == null && selection.getMaintainedBefore() == null) {
+            throw new IllegalArgumentException("Set missileIds or at least one of type, supplyDepotId, maintainedBefore");
+        }
+        if (selection.getMissileIds() != null && selection.getMissileIds().size() > MAX_BULK_MISSILES) {
+            throw new IllegalArgumentException("At most " + MAX_BULK_MISSILES + " missileIds may be listed");
+        }
+    }
+
+    private MissileBulkResult transitionAll(MissileBulkRequest selection, List<MissileStatus> expected,
+                                            MissileStatus target, boolean stampMaintenance) {
+        validate(selection);
+        Map<String, Missile> selected = new LinkedHashMap<>();
+        for (Missile missile : select(selection)) {
+            selected.put(missile.getId(), missile);
+        }
+        List<String> candidateIds = new ArrayList<>();
+        for (Missile missile : selected.values()) {
+            if (expected.contains(missile.getStatus())) {
+                candidateIds.add(missile.getId());
             }
         }
-        return false;
+
+        // Criteria alone can select thousands of missiles, so the $in lists are kept to one chunk each.
+        // updateMulti only returns a count, so each chunk is read back to tell which ones changed.
+        // One moved to the target status by a concurrent call in between is counted as updated here.
+        long modified = 0;
+        Map<String, Missile> current = new HashMap<>();
+        for (int from = 0; from < candidateIds.size(); from += MAX_BULK_MISSILES) {
+            List<String> chunk = candidateIds.subList(from, Math.min(from + MAX_BULK_MISSILES, candidateIds.size()));
+            modified += missileRepository.transitionStatusAll(chunk, expected, target, stampMaintenance);
+            for (Missile missile : missileRepository.findAllById(chunk)) {
+                current.put(missile.getId(), missile);
+            }
+        }
+
+        List<String> updatedIds = new ArrayList<>();
+        List<MissileBulkResult.Conflict> conflicts = new ArrayList<>();
+        for (String id : candidateIds) {
+            Missile missile = current.get(id);
+            if (missile != null && missile.getStatus() == target) {
+                missileInventoryService.onMissileSaved(missile);
+                updatedIds.add(id);
+            } else {
+                // Changed by someone else between the selection and the update, or removed
+                conflicts.add(new MissileBulkResult.Conflict(id, missile != null ? missile.getStatus() : null));
+            }
+        }
+        // Missiles picked by the criteria alone are simply skipped when in another status; listed ones are reported
+        if (selection.getMissileIds() != null) {
+            for (String id : new LinkedHashSet<>(selection.getMissileIds())) {
+                Missile missile = selected.containsKey(id) ? selected.get(id) : lookup(id);
+                if (missile == null || !selected.containsKey(id) || !expected.contains(missile.getStatus())) {
+                    conflicts.add(new MissileBulkResult.Conflict(id, missile != null ? missile.getStatus() : null));
+                }
+            }
+        }
+        return new MissileBulkResult(candidateIds.size(), modified, updatedIds, conflicts);
+    }
+
+    // The selected missiles in any status, from the inventory index once it has been seeded
+    private List<Missile> select(MissileBulkRequest selection) {
+        List<Missile> found;
+        if (selection.getMissileIds() != null) {
+            found = new ArrayList<>();
+            for (String id : new LinkedHashSet<>(selection.getMissileIds())) {
+                Missile missile = lookup(id);
+                if (missile != null) {
+                    found.add(missile);
+                }
+            }
+        } else if (missileInventoryService.isSeeded()) {
+            found = selection.getType() != null
+                    ? missileInventoryService.getMissilesByType(selection.getType())
+                    : missileInventoryService.getAllMissiles();
+        } else {
+            return missileRepository.findSelected(selection.getType(), selection.getSupplyDepotId(),
+                    selection.getMaintainedBefore());
+        }
+        List<Missile> result = new ArrayList<>();
+        for (Missile missile : found) {
+            if (matches(selection, missile)) {
+                result.add(missile);
+            }
+        }
+        return result;
+    }
+
+    private Missile lookup(String missileId) {
+        if (missileInventoryService.isSeeded()) {
+            return missileInventoryService.getMissile(missileId);
+        }
+        return missileRepository.findById(missileId).orElse(null);
+    }
+
+    private static boolean matches(MissileBulkRequest selection, Missile missile) {
+        if (selection.getType() != null && missile.getType() != selection.getType()) {
+            return false;
+        }
+        if (selection.getSupplyDepotId() != null && !selection.getSupplyDepotId().equals(missile.getSupplyDepotId())) {
+            return false;
+        }
+        return selection.getMaintainedBefore() == null || missile.getLastMaintenanceDate() == null
+                || missile.getLastMaintenanceDate().isBefore(selection.getMaintainedBefore());
+    }
+
+    // One conditional findAndModify; false if the missile is missing or not in an expected status
+    private boolean transition(String missileId, List<MissileStatus> expected, MissileStatus target,
+                               boolean stampMaintenance) {
+        Missile updated = missileRepository.transitionStatus(missileId, expected, target, stampMaintenance);
+        if (updated == null) {
+            return false;
+        }
+        missileInventoryService.onMissileSaved(updated);
+        return true;
     }
 } 
\ No newline at end of file
@@ -1,27 +1,62 @@
 package itmo.rshd.service;
 
+import itmo.rshd.graph.RouteSearch;
+import itmo.rshd.graph.RouteSearch.Metric;
+import itmo.rshd.graph.SupplyNetwork;
+import itmo.rshd.model.ReachableDepot;
+import itmo.rshd.model.SupplyRouteLeg;
+import itmo.rshd.model.SupplyRoutePlan;
+import org.apache.tinkerpop.gremlin.process.traversal.P;
+import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversal;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.GraphTraversalSource;
 import org.apache.tinkerpop.gremlin.process.traversal.dsl.graph.__;
 import org.apache.tinkerpop.gremlin.structure.Edge;
 import org.apache.tinkerpop.gremlin.structure.Vertex;
+import org.apache.tinkerpop.gremlin.util.Tokens;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import jakarta.annotation.PostConstruct;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
 public class MissileSupplyGraphService {
 
+    // Upper bound on the hop limit a caller may ask for
+    public static final int MAX_ROUTE_HOPS = 64;
+
+    private static final String[] DEPOT_PROPERTIES = {
+            "depotId", "name", "latitude", "longitude", "capacity", "currentStock", "type", "securityLevel" };
+
     private final GraphTraversalSource g;
+    private final int maxRelaxations;
+    private final int routeBatchSize;
+
+    // Loaded on first use, reloaded after any change made through this service
+    // and when checkNetworkVersion sees the graph was changed from elsewhere
+    private volatile SupplyNetwork network;
+    private volatile boolean networkStale = true;
 
     @Autowired
-    public MissileSupplyGraphService(GraphTraversalSource g) {
+    public MissileSupplyGraphService(GraphTraversalSource g,
+                                     @Value("${zov.supply.route.max-relaxations:100000}") int maxRelaxations,
+                                     @Value("${zov.supply.routes.batch-size:500}") int routeBatchSize) {
         this.g = g;
+        this.maxRelaxations = maxRelaxations;
+        this.routeBatchSize = routeBatchSize;
     }
 
     @PostConstruct
@@ -37,6 +72,55 @@ public class MissileSupplyGraphService {
         // No transaction needed for remote graph
     }
 
+    /**
+     * The startup generator writes to the graph directly, so anything loaded before it finished is dropped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        invalidateNetwork();
+    }
+
+    /**
+     * Mark the route network as outdated; it is reloaded on the next read
+     */
+    public void invalidateNetwork() {
+        networkStale = true;
+    }
+
+    /**
+     * Compare the graph's revision and element counts with those the network was loaded from,
+     * and reload it at once if they differ. Catches changes made by other instances or tools.
+     */
+    @Scheduled(fixedDelayString = "${zov.supply.network.check-ms:30000}")
+    public void checkNetworkVersion() {
+        SupplyNetwork current = network;
+        if (current == null || networkStale) {
+            return;
+        }
+        try {
+            if (!Objects.equals(current.fingerprint(), loadFingerprint())) {
+                invalidateNetwork();
+                getNetwork();
+            }
+        } catch (Exception e) {
+            System.err.println("Error checking the supply network version: " + e.getMessage());
+        }
+    }
+
+    // Records a change in the graph's revision so other instances reload too, then drops our own copy
+    private void networkChanged() {
+        try {
+            // coalesce() takes generic varargs and cannot be @SafeVarargs; the two traversals are only read
+            @SuppressWarnings("unchecked")
+            GraphTraversal<Vertex, Vertex> revisionUpsert = g.V().hasLabel("SupplyNetwork").fold()
+                    .coalesce(__.<Vertex>unfold(), __.<Vertex>addV("SupplyNetwork"));
+            revisionUpsert.property("revision", UUID.randomUUID().toString()).iterate();
+        } catch (Exception e) {
+            System.err.println("Error updating the supply network revision: " + e.getMessage());
+        }
+        invalidateNetwork();
+    }
+
     public Vertex addSupplyDepot(String depotId, String name, double latitude, double longitude, int capacity) {
         Vertex depot = g.addV("SupplyDepot")
                 .property("depotId", depotId)
@@ -46,6 +130,7 @@ public class MissileSupplyGraphService {
                 .property("capacity", capacity)
                 .property("currentStock", 0)
                 .next();
+        networkChanged();
         return depot;
     }
 
@@ -70,6 +155,7 @@ public class MissileSupplyGraphService {
                 .property("riskFactor", riskFactor)
                 .property("isActive", true)
                 .next();
+        networkChanged();
         return route;
     }
 
@@ -104,42 +190,195 @@ public class MissileSupplyGraphService {
         Object stockObj = g.V(depot).values("currentStock").next();
         int currentStock = stockObj instanceof Number ? ((Number) stockObj).intValue() : 0;
         g.V(depot).property("currentStock", currentStock + quantity).iterate();
+        networkChanged();
     }
 
-    public List<Map<String, Object>> findOptimalSupplyRoute(String fromDepotId, String toDepotId) {
-        try {
-            // Find shortest path with lowest risk between depots
-            List<Object> path = g.V().has("SupplyDepot", "depotId", fromDepotId)
-                    .repeat(
-                        __.outE("SupplyRoute").has("isActive", true)
-                        .order().by("riskFactor", org.apache.tinkerpop.gremlin.process.traversal.Order.asc)
-                        .inV().simplePath()
-                    ).until(
-                        __.has("SupplyDepot", "depotId", toDepotId)
-                    ).path().limit(1)
-                    .next()
-                    .objects();
-            
-            return path.stream()
-                    .map(object -> {
-                        Map<String, Object> result = new HashMap<>();
-                        if (object instanceof Vertex) {
-                            Vertex v = (Vertex) object;
-                            result.put("type", "depot");
-                            result.put("id", v.value("depotId"));
-                            result.put("name", v.value("name"));
-                        } else if (object instanceof Edge) {
-                            Edge e = (Edge) object;
-                            result.put("type", "route");
-                            result.put("distance", e.value("distance"));
-                            result.put("riskFactor", e.value("riskFactor"));
-                        }
-                        return result;
-                    })
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
+    /**
+     * The route as alternating depot and route entries, or an empty list if there is none
+     */
+    public List<Map<String, Object>> findOptimalSupplyRoute(String fromDepotId, String toDepotId, Metric metric,
+                                                            double riskWeight, int maxHops, double maxCost,
+                                                            double minCapacity) {
+        SupplyRoutePlan plan = planSupplyRoute(fromDepotId, toDepotId, metric, riskWeight, maxHops, maxCost,
+                minCapacity);
+        if (plan == null || !plan.isFound()) {
             return List.of();
         }
+        SupplyNetwork current = getNetwork();
+        List<Map<String, Object>> path = new ArrayList<>();
+        for (int i = 0; i < plan.getDepotIds().size(); i++) {
+            if (i > 0) {
+                SupplyRouteLeg leg = plan.getLegs().get(i - 1);
+                Map<String, Object> route = new HashMap<>();
+                route.put("type", "route");
+                route.put("distance", leg.getDistance());
+                route.put("riskFactor", leg.getRiskFactor());
+                path.add(route);
+            }
+            String depotId = plan.getDepotIds().get(i);
+            Map<String, Object> depot = new HashMap<>();
+            depot.put("type", "depot");
+            depot.put("id", depotId);
+            depot.put("name", current.name(current.ordinal(depotId)));
+            path.add(depot);
+        }
+        return path;
+    }
+
+    /**
+     * Cheapest route over active supply routes, searched in memory with bounded work.
+     * @param maxHops capped at {@link #MAX_ROUTE_HOPS}
+     * @param maxCost in the metric's units, infinity for no limit
+     * @param minCapacity routes with a lower capacity are avoided; routes without a capacity are used
+     * @return the plan, or null if either depot does not exist
+     */
+    public SupplyRoutePlan planSupplyRoute(String fromDepotId, String toDepotId, Metric metric,
+                                           double riskWeight, int maxHops, double maxCost, double minCapacity) {
+        SupplyNetwork current = getNetwork();
+        int from = current.ordinal(fromDepotId);
+        int to = current.ordinal(toDepotId);
+        if (from < 0 || to < 0) {
+            return null;
+        }
+        int hops = Math.max(0, Math.min(maxHops, MAX_ROUTE_HOPS));
+        RouteSearch.Result result = RouteSearch.find(current, from, to, metric, riskWeight, hops, maxCost,
+                minCapacity, maxRelaxations);
+
+        List<String> depotIds = new ArrayList<>();
+        for (int depot : result.depots()) {
+            depotIds.add(current.depotId(depot));
+        }
+        List<SupplyRouteLeg> legs = new ArrayList<>();
+        double totalDistance = 0;
+        double survival = 1;
+        for (int i = 0; i < result.routes().size(); i++) {
+            int route = result.routes().get(i);
+            double capacity = current.capacity(route);
+            legs.add(new SupplyRouteLeg(depotIds.get(i), depotIds.get(i + 1), current.distance(route),
+                    current.riskFactor(route), Double.isNaN(capacity) ? null : capacity));
+            totalDistance += current.distance(route);
+            survival *= 1 - Math.min(1, Math.max(0, current.riskFactor(route)));
+        }
+        return new SupplyRoutePlan(fromDepotId, toDepotId, metric, result.found(), result.cost(), totalDistance,
+                1 - survival, depotIds, legs, result.relaxations(), result.truncated());
+    }
+
+    /**
+     * Depots reachable from a depot over active routes within maxHops, nearest first
+     * @param maxHops capped at {@link #MAX_ROUTE_HOPS}
+     * @return the depots, or null if the depot does not exist
+     */
+    public List<ReachableDepot> getReachableDepots(String depotId, int maxHops) {
+        SupplyNetwork current = getNetwork();
+        int from = current.ordinal(depotId);
+        if (from < 0) {
+            return null;
+        }
+        int[] hops = RouteSearch.hopsFrom(current, from, Math.max(0, Math.min(maxHops, MAX_ROUTE_HOPS)));
+        List<ReachableDepot> reachable = new ArrayList<>();
+        for (int depot = 0; depot < hops.length; depot++) {
+            if (hops[depot] > 0) {
+                reachable.add(new ReachableDepot(current.depotId(depot), current.name(depot), hops[depot]));
+            }
+        }
+        reachable.sort((a, b) -> Integer.compare(a.getHops(), b.getHops()));
+        return reachable;
+    }
+
+    private SupplyNetwork getNetwork() {
+        SupplyNetwork current = network;
+        if (current == null || networkStale) {
+            current = reloadNetworkIfStale();
+        }
+        return current;
+    }
+
+    private synchronized SupplyNetwork reloadNetworkIfStale() {
+        // Another thread may have reloaded while we waited for the lock
+        if (network == null || networkStale) {
+            // Clear the flag first so a change during the load triggers another reload
+            networkStale = false;
+            network = loadNetwork();
+        }
+        return network;
+    }
+
+    // The revision written by networkChanged plus the depot and route counts, in one round trip
+    private Map<String, Object> loadFingerprint() {
+        return g.inject(0)
+                .project("revision", "depots", "routes")
+                .by(__.V().hasLabel("SupplyNetwork").values("revision").fold())
+                .by(__.V().hasLabel("SupplyDepot").count())
+                .by(__.E().hasLabel("SupplyRoute").count())
+                .next();
+    }
+
+    // Three server-side projections, so the cost is three round trips however large the network is.
+    // The fingerprint is read first, so a change made during the load shows up at the next check.
+    private SupplyNetwork loadNetwork() {
+        SupplyNetwork.Builder builder = SupplyNetwork.builder().fingerprint(loadFingerprint());
+        List<Map<Object, Object>> depots = g.V().hasLabel("SupplyDepot").has("depotId")
+                .valueMap(DEPOT_PROPERTIES)
+                .toList();
+        for (Map<Object, Object> depot : depots) {
+            Map<String, Object> properties = unwrap(depot);
+            builder.addDepot(properties.get("depotId").toString(), properties);
+        }
+
+        List<Map<String, Object>> routes = g.E().hasLabel("SupplyRoute")
+                .project("source", "target", "distance", "riskFactor", "capacity", "isActive")
+                .by(__.outV().values("depotId").fold())
+                .by(__.inV().values("depotId").fold())
+                .by(__.values("distance").fold())
+                .by(__.values("riskFactor").fold())
+                .by(__.values("capacity").fold())
+                .by(__.values("isActive").fold())
+                .toList();
+        for (Map<String, Object> route : routes) {
+            Object source = first(route.get("source"));
+            Object target = first(route.get("target"));
+            if (source == null || target == null) {
+                continue;
+            }
+            // Same defaults as getAllSupplyRoutes uses for missing properties
+            Double distance = asDouble(first(route.get("distance")));
+            Double riskFactor = asDouble(first(route.get("riskFactor")));
+            Double capacity = asDouble(first(route.get("capacity")));
+            Object isActive = first(route.get("isActive"));
+            builder.addRoute(source.toString(), target.toString(),
+                    distance != null ? distance : 1000.0,
+                    riskFactor != null ? riskFactor : 0.5,
+                    capacity != null ? capacity : Double.NaN,
+                    !(isActive instanceof Boolean) || (Boolean) isActive);
+        }
+        SupplyNetwork loaded = builder.build();
+        System.out.println("Supply network loaded with " + loaded.size() + " depots and " + loaded.routeCount() + " routes");
+        return loaded;
+    }
+
+    // valueMap() lists every property; single values are unwrapped as the depot endpoints always returned them
+    private static Map<String, Object> unwrap(Map<Object, Object> valueMap) {
+        Map<String, Object> convertedMap = new HashMap<>();
+        valueMap.forEach((k, v) -> {
+            if (v instanceof List && ((List<?>) v).size() == 1) {
+                convertedMap.put(k.toString(), ((List<?>) v).get(0));
+            } else {
+                convertedMap.put(k.toString(), v);
+            }
+        });
+        return convertedMap;
+    }
+
+    // fold() turns an optional property into a list of zero or one values
+    private static Object first(Object folded) {
+        if (folded instanceof List<?> list) {
+            return list.isEmpty() ? null : list.get(0);
+        }
+        return folded;
+    }
+
+    private static Double asDouble(Object value) {
+        return value instanceof Number number ? number.doubleValue() : null;
     }
 
     public List<Map<String, Object>> findDepotsWithMissileType(String missileTypeId, int minQuantity) {
@@ -161,148 +400,119 @@ public class MissileSupplyGraphService {
     }
     
     public List<Map<String, Object>> getAllDepots() {
-        List<Map<Object, Object>> results = g.V()
-                .hasLabel("SupplyDepot")
-                .valueMap("depotId", "name", "latitude", "longitude", "capacity", "currentStock", "type", "securityLevel")
-                .toList();
-        
-        return results.stream()
-                .map(m -> {
-                    Map<String, Object> convertedMap = new HashMap<>();
-                    m.forEach((k, v) -> {
-                        if (v instanceof List && ((List<?>) v).size() == 1) {
-                            convertedMap.put(k.toString(), ((List<?>) v).get(0));
-                        } else {
-                            convertedMap.put(k.toString(), v);
-                        }
-                    });
-                    return convertedMap;
-                })
-                .collect(Collectors.toList());
+        SupplyNetwork current = getNetwork();
+        List<Map<String, Object>> depots = new ArrayList<>(current.size());
+        for (int depot = 0; depot < current.size(); depot++) {
+            depots.add(new HashMap<>(current.depotProperties(depot)));
+        }
+        return depots;
     }
     
     public Map<String, Object> getDepotById(String depotId) {
-        try {
-            Map<Object, Object> result = g.V()
-                    .has("SupplyDepot", "depotId", depotId)
-                    .valueMap("depotId", "name", "latitude", "longitude", "capacity", "currentStock", "type", "securityLevel")
-                    .next();
-            
-            Map<String, Object> convertedMap = new HashMap<>();
-            result.forEach((k, v) -> {
-                if (v instanceof List && ((List<?>) v).size() == 1) {
-                    convertedMap.put(k.toString(), ((List<?>) v).get(0));
-                } else {
-                    convertedMap.put(k.toString(), v);
-                }
-            });
-            
-            return convertedMap;
-        } catch (Exception e) {
-            return null;
-        }
+        SupplyNetwork current = getNetwork();
+        int depot = current.ordinal(depotId);
+        return depot < 0 ? null : new HashMap<>(current.depotProperties(depot));
     }
     
     public List<Map<String, Object>> getAllSupplyRoutes() {
+        return loadSupplyRoutes(null);
+    }
+
+    /**
+     * Routes drawn at least partly inside a map viewport, as straight lines between their depots
+     */
+    public List<Map<String, Object>> getSupplyRoutesInBox(double minLon, double minLat, double maxLon, double maxLat) {
+        return loadSupplyRoutes(new double[] { minLon, minLat, maxLon, maxLat });
+    }
+
+    // One server-side projection of the routes with their endpoints, read in batches as the server streams them.
+    // With a box, routes that cannot cross it are dropped on the server and the rest are clipped here.
+    private List<Map<String, Object>> loadSupplyRoutes(double[] box) {
         try {
-            System.out.println("Getting all supply routes...");
-            
-            // Try to count edges first
-            long edgeCount = g.E().hasLabel("SupplyRoute").count().next();
-            System.out.println("Supply route edge count: " + edgeCount);
-            
-            // Use a different approach: get edges with their connected vertices
+            GraphTraversal<Edge, Edge> edges = g.with(Tokens.ARGS_BATCH_SIZE, routeBatchSize)
+                    .E().hasLabel("SupplyRoute");
+            if (box != null) {
+                edges = overlappingBox(edges, box);
+            }
+            Iterator<Map<String, Object>> results = edges
+                    .project("properties", "source", "target")
+                    .by(__.valueMap())
+                    .by(__.outV().valueMap("depotId", "latitude", "longitude"))
+                    .by(__.inV().valueMap("depotId", "latitude", "longitude"));
+
             List<Map<String, Object>> routes = new ArrayList<>();
-            
-            // Get all depots first
-            Map<Object, Vertex> depotMap = new HashMap<>();
-            List<Vertex> allDepots = g.V().hasLabel("SupplyDepot").toList();
-            for (Vertex depot : allDepots) {
-                try {
-                    Object depotId = depot.value("depotId");
-                    depotMap.put(depotId, depot);
-                    System.out.println("Added depot to map: " + depotId + " - " + depot.id());
-                } catch (Exception e) {
-                    System.err.println("Error getting depot ID: " + e.getMessage());
+            Set<String> pairs = new HashSet<>();
+            while (results.hasNext()) {
+                Map<String, Object> result = results.next();
+                Map<?, ?> source = (Map<?, ?>) result.get("source");
+                Map<?, ?> target = (Map<?, ?>) result.get("target");
+                Object sourceDepotId = first(source.get("depotId"));
+                Object targetDepotId = first(target.get("depotId"));
+                // As before, only the first route between an ordered pair of depots is listed
+                if (sourceDepotId == null || targetDepotId == null || !pairs.add(sourceDepotId + "\n" + targetDepotId)) {
+                    continue;
                 }
-            }
-            
-            // Create routes directly from pairs of depots
-            for (Vertex source : allDepots) {
-                for (Vertex target : allDepots) {
-                    if (source != target) {
-                        try {
-                            // Check if an edge exists between these depots
-                            List<Edge> connectingEdges = g.V(source).outE("SupplyRoute").where(__.inV().is(target)).toList();
-                            
-                            if (!connectingEdges.isEmpty()) {
-                                Edge edge = connectingEdges.get(0);
-                                System.out.println("Found edge: " + edge.id() + " from " + source.value("name") + " to " + target.value("name"));
-                                
-                                // Create route map
-                                Map<String, Object> routeMap = new HashMap<>();
-                                routeMap.put("sourceDepotId", source.value("depotId"));
-                                routeMap.put("targetDepotId", target.value("depotId"));
-                                
-                                // Get edge properties with safe access
-                                double distance = getEdgePropertySafe(edge, "distance", 1000.0);
-                                double riskFactor = getEdgePropertySafe(edge, "riskFactor", 0.5);
-                                boolean isActive = getEdgePropertySafe(edge, "isActive", true);
-                                
-                                routeMap.put("distance", distance);
-                                routeMap.put("riskFactor", riskFactor);
-                                routeMap.put("isActive", isActive);
-                                
-                                // Optional properties
-                                String transportType = getEdgePropertySafe(edge, "transportType", null);
-                                if (transportType != null) {
-                                    routeMap.put("transportType", transportType);
-                                }
-                                
-                                String securityLevel = getEdgePropertySafe(edge, "securityLevel", null);
-                                if (securityLevel != null) {
-                                    routeMap.put("securityLevel", securityLevel);
-                                }
-                                
-                                Integer capacity = getEdgePropertySafe(edge, "capacity", null);
-                                if (capacity != null) {
-                                    routeMap.put("capacity", capacity);
-                                }
-                                
-                                routes.add(routeMap);
-                            }
-                        } catch (Exception e) {
-                            System.err.println("Error checking edge between depots: " + e.getMessage());
-                        }
-                    }
+                if (box != null && !crossesBox(source, target, box)) {
+                    continue;
                 }
+
+                Map<String, Object> routeMap = new HashMap<>();
+                ((Map<?, ?>) result.get("properties")).forEach((key, value) -> routeMap.put(key.toString(), first(value)));
+                routeMap.put("sourceDepotId", sourceDepotId);
+                routeMap.put("targetDepotId", targetDepotId);
+                routeMap.putIfAbsent("distance", 1000.0);
+                routeMap.putIfAbsent("riskFactor", 0.5);
+                routeMap.putIfAbsent("isActive", true);
+                routes.add(routeMap);
             }
-            
-            System.out.println("Returning " + routes.size() + " routes");
             return routes;
-            
         } catch (Exception e) {
             System.err.println("Error getting supply routes: " + e.getMessage());
             e.printStackTrace();
             return new ArrayList<>();
         }
     }
-    
-    // Helper method to safely get edge properties with default values
-    @SuppressWarnings("unchecked")
-    private <T> T getEdgePropertySafe(Edge edge, String key, T defaultValue) {
-        try {
-            if (edge.properties(key).hasNext()) {
-                Object value = edge.value(key);
-                if (defaultValue != null && value.getClass().isAssignableFrom(defaultValue.getClass())) {
-                    return (T) value;
+
+    // Keeps routes whose endpoints' bounding rectangle overlaps the box: some endpoint is on the inner side of each edge
+    private static GraphTraversal<Edge, Edge> overlappingBox(GraphTraversal<Edge, Edge> edges, double[] box) {
+        return edges
+                .or(__.outV().has("longitude", P.gte(box[0])), __.inV().has("longitude", P.gte(box[0])))
+                .or(__.outV().has("latitude", P.gte(box[1])), __.inV().has("latitude", P.gte(box[1])))
+                .or(__.outV().has("longitude", P.lte(box[2])), __.inV().has("longitude", P.lte(box[2])))
+                .or(__.outV().has("latitude", P.lte(box[3])), __.inV().has("latitude", P.lte(box[3])));
+    }
+
+    // Liang-Barsky clipping in the longitude/latitude plane, the way the map draws a route
+    private static boolean crossesBox(Map<?, ?> source, Map<?, ?> target, double[] box) {
+        Double lat1 = asDouble(first(source.get("latitude")));
+        Double lon1 = asDouble(first(source.get("longitude")));
+        Double lat2 = asDouble(first(target.get("latitude")));
+        Double lon2 = asDouble(first(target.get("longitude")));
+        if (lat1 == null || lon1 == null || lat2 == null || lon2 == null) {
+            return false;
+        }
+        double dx = lon2 - lon1;
+        double dy = lat2 - lat1;
+        double[] p = { -dx, dx, -dy, dy };
+        double[] q = { lon1 - box[0], box[2] - lon1, lat1 - box[1], box[3] - lat1 };
+        double enter = 0;
+        double exit = 1;
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                // Parallel to this edge of the box; outside it means outside the box
+                if (q[i] < 0) {
+                    return false;
                 }
-                return (T) value;
+            } else if (p[i] < 0) {
+                enter = Math.max(enter, q[i] / p[i]);
+            } else {
+                exit = Math.min(exit, q[i] / p[i]);
+            }
+            if (enter > exit) {
+                return false;
             }
-        } catch (Exception e) {
-            System.out.println("Error getting property " + key + ": " + e.getMessage());
         }
-        return defaultValue;
+        return true;
     }
     
     public Map<String, Object> updateRouteStatus(String sourceDepotId, String targetDepotId, boolean isActive) {
@@ -327,6 +537,7 @@ public class MissileSupplyGraphService {
             
             Edge route = edges.get(0);
             route.property("isActive", isActive);
+            networkChanged();
             
             Map<String, Object> routeMap = new HashMap<>();
             routeMap.put("sourceDepotId", sourceDepotId);
@@ -366,6 +577,7 @@ public class MissileSupplyGraphService {
         // Then clear all vertices
         g.V().hasLabel("SupplyDepot").drop().iterate();
         g.V().hasLabel("MissileType").drop().iterate();
+        networkChanged();
         
         System.out.println("Supply chain data has been cleared successfully");
     }
@@ -516,6 +728,7 @@ public class MissileSupplyGraphService {
             }
             
             System.out.println("Sample supply chain generated successfully!");
+            networkChanged();
             
             // Return total count of depots
             return 8;
@@ -0,0 +1,255 @@
+package itmo.rshd.service;
+
+import itmo.rshd.model.User;
+import itmo.rshd.model.websocket.NearbyEntry;
+import itmo.rshd.model.websocket.NearbyUsersUpdate;
+import itmo.rshd.model.websocket.UserPosition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends each session only the changes to its nearby-user list.
+ * The list last delivered to every subscribed session is kept here; a new
+ * list is diffed against it into entered, moved and left users, and nothing
+ * is sent when nothing changed. Every session also gets a periodic full
+ * resync, and can request one when it detects a sequence gap.
+ */
+@Service
+public class NearbyUsersPublisher {
+
+    public static final String NEARBY_QUEUE = "/queue/users-nearby-update";
+    private static final String USER_NEARBY_DESTINATION = "/user" + NEARBY_QUEUE;
+
+    // Coordinates are rounded to about a meter; smaller jitter is not reported as a move
+    private static final double COORDINATE_SCALE = 1e5;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+
+    // sessionId -> list last delivered to that session
+    private final Map<String, SessionView> views = new ConcurrentHashMap<>();
+    // userId -> sessions whose list currently contains that user
+    private final Map<String, Set<String>> watchers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public NearbyUsersPublisher(SimpMessagingTemplate messagingTemplate, SimpUserRegistry userRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+    }
+
+    /**
+     * Diff the user's new nearby list against what each of their sessions has and send the changes
+     */
+    public void publish(String userId, List<User> nearbyUsers) {
+        Map<String, NearbyEntry> next = new LinkedHashMap<>();
+        Map<String, UserPosition> positions = new LinkedHashMap<>();
+        for (User user : nearbyUsers) {
+            if (user.getId() != null && user.getCurrentLocation() != null) {
+                UserPosition position = compact(user);
+                positions.put(user.getId(), position);
+                next.put(user.getId(), NearbyEntry.of(user, position));
+            }
+        }
+        for (String sessionId : subscribedSessions(userId)) {
+            SessionView view = views.computeIfAbsent(sessionId, id -> new SessionView(userId));
+            synchronized (view) {
+                NearbyUsersUpdate update = view.seq == 0 ? view.full(sessionId, next) : view.diff(sessionId, next, positions);
+                if (update != null) {
+                    send(view.userId, sessionId, update);
+                }
+            }
+        }
+    }
+
+    /**
+     * True if the user has a session subscribed to the nearby queue
+     */
+    public boolean isSubscribed(String userId) {
+        return !subscribedSessions(userId).isEmpty();
+    }
+
+    /**
+     * Users whose nearby list currently shows the given user
+     */
+    public Set<String> watchersOf(String userId) {
+        Set<String> sessionIds = watchers.get(userId);
+        Set<String> result = new HashSet<>();
+        if (sessionIds != null) {
+            for (String sessionId : sessionIds) {
+                SessionView view = views.get(sessionId);
+                if (view != null) {
+                    result.add(view.userId);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Send the session its whole current list again
+     */
+    public void resync(String sessionId) {
+        SessionView view = views.get(sessionId);
+        if (view != null) {
+            synchronized (view) {
+                send(view.userId, sessionId, view.full(sessionId, view.neighbours));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${zov.websocket.nearby.resync-ms:30000}")
+    public void resyncAll() {
+        for (Map.Entry<String, SessionView> entry : views.entrySet()) {
+            if (isSessionSubscribed(entry.getValue().userId, entry.getKey())) {
+                resync(entry.getKey());
+            } else {
+                // Catches views created while their session was closing
+                drop(entry.getKey());
+            }
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        // A new subscription starts from a full list
+        if (USER_NEARBY_DESTINATION.equals(accessor.getDestination()) && accessor.getSessionId() != null) {
+            drop(accessor.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        drop(event.getSessionId());
+    }
+
+    private void drop(String sessionId) {
+        SessionView view = views.remove(sessionId);
+        if (view != null) {
+            synchronized (view) {
+                view.neighbours.keySet().forEach(id -> unwatch(id, sessionId));
+            }
+        }
+    }
+
+    private List<String> subscribedSessions(String userId) {
+        SimpUser user = userRegistry.getUser(userId);
+        if (user == null) {
+            return List.of();
+        }
+        List<String> sessionIds = new ArrayList<>();
+        for (SimpSession session : user.getSessions()) {
+            if (session.getSubscriptions().stream().anyMatch(s -> USER_NEARBY_DESTINATION.equals(s.getDestination()))) {
+                sessionIds.add(session.getId());
+            }
+        }
+        return sessionIds;
+    }
+
+    private boolean isSessionSubscribed(String userId, String sessionId) {
+        return subscribedSessions(userId).contains(sessionId);
+    }
+
+    private void send(String userId, String sessionId, NearbyUsersUpdate update) {
+        // The session id header makes the user destination resolve to that one session
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(userId, NEARBY_QUEUE, update, accessor.getMessageHeaders());
+    }
+
+    private void watch(String userId, String sessionId) {
+        watchers.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(sessionId);
+    }
+
+    private void unwatch(String userId, String sessionId) {
+        watchers.computeIfPresent(userId, (id, sessions) -> {
+            sessions.remove(sessionId);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    private static UserPosition compact(User user) {
+        UserPosition position = UserPosition.of(user);
+        position.setLat(Math.round(position.getLat() * COORDINATE_SCALE) / COORDINATE_SCALE);
+        position.setLon(Math.round(position.getLon() * COORDINATE_SCALE) / COORDINATE_SCALE);
+        return position;
+    }
+
+    private static boolean samePosition(NearbyEntry user, UserPosition position) {
+        return user.getLat() == position.getLat() && user.getLon() == position.getLon()
+                && user.getRating() == position.getRating() && user.getStatus() == position.getStatus();
+    }
+
+    private final class SessionView {
+        final String userId;
+        Map<String, NearbyEntry> neighbours = Map.of();
+        long seq;
+
+        SessionView(String userId) {
+            this.userId = userId;
+        }
+
+        NearbyUsersUpdate full(String sessionId, Map<String, NearbyEntry> next) {
+            replace(sessionId, next);
+            return new NearbyUsersUpdate(++seq, true, new ArrayList<>(next.values()), List.of(), List.of());
+        }
+
+        /**
+         * @return the changes, or null if the list is unchanged
+         */
+        NearbyUsersUpdate diff(String sessionId, Map<String, NearbyEntry> next, Map<String, UserPosition> positions) {
+            List<NearbyEntry> entered = new ArrayList<>();
+            List<UserPosition> moved = new ArrayList<>();
+            List<String> left = new ArrayList<>();
+            for (Map.Entry<String, NearbyEntry> entry : next.entrySet()) {
+                NearbyEntry previous = neighbours.get(entry.getKey());
+                if (previous == null) {
+                    entered.add(entry.getValue());
+                } else if (!samePosition(previous, positions.get(entry.getKey()))) {
+                    moved.add(positions.get(entry.getKey()));
+                }
+            }
+            for (String id : neighbours.keySet()) {
+                if (!next.containsKey(id)) {
+                    left.add(id);
+                }
+            }
+            if (entered.isEmpty() && moved.isEmpty() && left.isEmpty()) {
+                return null;
+            }
+            replace(sessionId, next);
+            return new NearbyUsersUpdate(++seq, false, entered, moved, left);
+        }
+
+        private void replace(String sessionId, Map<String, NearbyEntry> next) {
+            for (String id : neighbours.keySet()) {
+                if (!next.containsKey(id)) {
+                    unwatch(id, sessionId);
+                }
+            }
+            for (String id : next.keySet()) {
+                watch(id, sessionId);
+            }
+            neighbours = next;
+        }
+    }
+}
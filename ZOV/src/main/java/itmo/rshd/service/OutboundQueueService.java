@@ -0,0 +1,341 @@
+package itmo.rshd.service;
+
+import itmo.rshd.model.websocket.OutboundQueueStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded per-session send queues for WebSocket clients.
+ * Outbound frames are queued per session and written by a small sender pool,
+ * so a slow client only ever holds a sender thread and never a broker thread.
+ * When a queue is full, by frame count or by bytes, the configured overflow policy applies.
+ * A write that stays blocked past the send time limit closes its session, so stalled
+ * clients cannot hold the sender pool. Spring's own session decorator sits above these
+ * queues and only sees the enqueue, so both limits are enforced here.
+ */
+@Service
+public class OutboundQueueService implements WebSocketHandlerDecoratorFactory {
+
+    public enum OverflowPolicy {
+        CONFLATE,    // Newer frames replace queued frames for the same destination, then drop oldest
+        DROP_OLDEST, // Drop the oldest queued frame
+        DISCONNECT   // Close the session as an unreliable consumer
+    }
+
+    @Value("${zov.websocket.outbound.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${zov.websocket.outbound.overflow-policy:CONFLATE}")
+    private OverflowPolicy overflowPolicy;
+
+    // Destinations where only the latest frame matters, matched by suffix
+    @Value("${zov.websocket.outbound.conflate-destinations:/queue/social-rating-update,/queue/region-change}")
+    private List<String> conflateDestinations;
+
+    @Value("${zov.websocket.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs;
+
+    @Value("${zov.websocket.send-buffer-size-limit:524288}")
+    private long sendBufferSizeLimit;
+
+    @Value("${zov.websocket.outbound.stall-check-ms:1000}")
+    private long stallCheckMs;
+
+    private final ThreadPoolTaskExecutor senders = new ThreadPoolTaskExecutor();
+    // Own thread, since closing a stalled session can itself block for a while
+    private final ThreadPoolTaskScheduler watchdog = new ThreadPoolTaskScheduler();
+    private final Map<String, BoundedSession> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong disconnected = new AtomicLong();
+
+    public OutboundQueueService(@Value("${zov.websocket.outbound.sender-threads:8}") int senderThreads) {
+        senders.setCorePoolSize(senderThreads);
+        senders.setMaxPoolSize(senderThreads);
+        senders.setThreadNamePrefix("ws-sender-");
+        senders.initialize();
+    }
+
+    @PostConstruct
+    public void startStallCheck() {
+        watchdog.setThreadNamePrefix("ws-stall-check-");
+        watchdog.initialize();
+        watchdog.scheduleWithFixedDelay(this::closeStalledSessions, Duration.ofMillis(stallCheckMs));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdown();
+        senders.shutdown();
+    }
+
+    private void closeStalledSessions() {
+        long now = System.nanoTime();
+        long limitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs);
+        for (BoundedSession session : sessions.values()) {
+            long started = session.sendStartedNanos;
+            if (started != 0 && now - started > limitNanos) {
+                session.closeStalled();
+            }
+        }
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                BoundedSession bounded = new BoundedSession(session);
+                sessions.put(session.getId(), bounded);
+                super.afterConnectionEstablished(bounded);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    public OutboundQueueStats getStats() {
+        int maxDepth = 0;
+        int slowSessions = 0;
+        long queued = 0;
+        for (BoundedSession session : sessions.values()) {
+            int depth = session.depth();
+            queued += depth;
+            maxDepth = Math.max(maxDepth, depth);
+            // Sessions more than half full are falling behind
+            if (depth * 2 > queueCapacity) {
+                slowSessions++;
+            }
+        }
+        return new OutboundQueueStats(sessions.size(), queued, maxDepth, slowSessions, queueCapacity,
+                overflowPolicy.name(), sent.get(), dropped.get(), conflated.get(), disconnected.get());
+    }
+
+    /**
+     * Extracts the destination header of an outbound STOMP frame, or null
+     */
+    static String destinationOf(WebSocketMessage<?> message) {
+        String head;
+        if (message instanceof TextMessage text) {
+            String payload = text.getPayload();
+            int end = payload.indexOf("\n\n");
+            head = end >= 0 ? payload.substring(0, end) : payload;
+        } else if (message instanceof BinaryMessage binary) {
+            ByteBuffer buffer = binary.getPayload().duplicate();
+            byte[] bytes = new byte[Math.min(buffer.remaining(), 1024)];
+            buffer.get(bytes);
+            head = new String(bytes, StandardCharsets.UTF_8);
+            int end = head.indexOf("\n\n");
+            head = end >= 0 ? head.substring(0, end) : head;
+        } else {
+            return null;
+        }
+        int start = head.indexOf("\ndestination:");
+        if (start < 0) {
+            return null;
+        }
+        start += "\ndestination:".length();
+        int end = head.indexOf('\n', start);
+        return end >= 0 ? head.substring(start, end) : head.substring(start);
+    }
+
+    private boolean isConflatable(String destination) {
+        if (destination == null) {
+            return false;
+        }
+        for (String suffix : conflateDestinations) {
+            if (destination.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private final class BoundedSession extends WebSocketSessionDecorator {
+
+        private final Deque<Entry> queue = new ArrayDeque<>();
+        private final Map<String, Entry> latestByDestination = new HashMap<>();
+        private long queuedBytes = 0;
+        private boolean draining = false;
+        private boolean closed = false;
+        // When the write in progress started, 0 while no write is in progress
+        volatile long sendStartedNanos = 0;
+
+        BoundedSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        synchronized int depth() {
+            return queue.size();
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            String destination = destinationOf(message);
+            boolean conflatable = overflowPolicy == OverflowPolicy.CONFLATE && isConflatable(destination);
+            boolean disconnect = false;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                Entry existing = conflatable ? latestByDestination.get(destination) : null;
+                if (existing != null) {
+                    // Replace in place so the newest state goes out at the older frame's position
+                    queuedBytes += message.getPayloadLength() - existing.message.getPayloadLength();
+                    existing.message = message;
+                    conflated.incrementAndGet();
+                } else {
+                    while (!queue.isEmpty() && (queue.size() >= queueCapacity
+                            || queuedBytes + message.getPayloadLength() > sendBufferSizeLimit)) {
+                        if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                            closed = true;
+                            disconnect = true;
+                            clear();
+                        } else {
+                            dropOldest();
+                        }
+                    }
+                    if (!disconnect) {
+                        Entry entry = new Entry(destination, message);
+                        queue.addLast(entry);
+                        queuedBytes += message.getPayloadLength();
+                        if (conflatable) {
+                            latestByDestination.put(destination, entry);
+                        }
+                    }
+                }
+                if (!disconnect && !draining) {
+                    draining = true;
+                    senders.execute(this::drain);
+                }
+            }
+            if (disconnect) {
+                disconnected.incrementAndGet();
+                System.err.println("Disconnecting slow WebSocket consumer " + getId()
+                        + " after " + queueCapacity + " queued frames or " + sendBufferSizeLimit + " queued bytes");
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            }
+        }
+
+        // A blocked write cannot be dropped to make room, so whatever the policy the session is closed
+        void closeStalled() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                clear();
+            }
+            disconnected.incrementAndGet();
+            System.err.println("Disconnecting stalled WebSocket consumer " + getId()
+                    + " after a write blocked for more than " + sendTimeLimitMs + " ms");
+            try {
+                // Closing the socket also fails the blocked write, which frees its sender thread
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error closing WebSocket session " + getId() + ": " + e.getMessage());
+            }
+        }
+
+        private void clear() {
+            queue.clear();
+            latestByDestination.clear();
+            queuedBytes = 0;
+        }
+
+        // Conflated frames hold the latest state for their destination, so stream frames are dropped first
+        private void dropOldest() {
+            Iterator<Entry> it = queue.iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.destination == null || latestByDestination.get(entry.destination) != entry) {
+                    it.remove();
+                    queuedBytes -= entry.message.getPayloadLength();
+                    dropped.incrementAndGet();
+                    return;
+                }
+            }
+            Entry oldest = queue.pollFirst();
+            if (oldest != null) {
+                latestByDestination.remove(oldest.destination, oldest);
+                queuedBytes -= oldest.message.getPayloadLength();
+                dropped.incrementAndGet();
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Entry entry;
+                synchronized (this) {
+                    entry = queue.pollFirst();
+                    if (entry == null || closed) {
+                        draining = false;
+                        return;
+                    }
+                    if (entry.destination != null) {
+                        latestByDestination.remove(entry.destination, entry);
+                    }
+                    queuedBytes -= entry.message.getPayloadLength();
+                }
+                sendStartedNanos = System.nanoTime();
+                try {
+                    getDelegate().sendMessage(entry.message);
+                    sent.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Error sending to WebSocket session " + getId() + ": " + e.getMessage());
+                    synchronized (this) {
+                        closed = true;
+                        clear();
+                        draining = false;
+                    }
+                    return;
+                } finally {
+                    sendStartedNanos = 0;
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        final String destination;
+        WebSocketMessage<?> message;
+
+        Entry(String destination, WebSocketMessage<?> message) {
+            this.destination = destination;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package itmo.rshd.service;
+
+import itmo.rshd.model.RatingDistribution;
+import itmo.rshd.model.Region.RegionType;
+import itmo.rshd.model.RegionMembership;
+import itmo.rshd.model.User;
+import itmo.rshd.model.User.SocialStatus;
+import itmo.rshd.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.stream.Stream;
+
+/**
+ * Social rating histograms per region, one bucket per rating point.
+ * Every user is counted once, in the region they are directly assigned to;
+ * a region's distribution is the merge of its own histogram with those of
+ * all its sub-regions, and a country's covers every user of that country.
+ * Seeded from MongoDB at startup and then maintained incrementally, so
+ * percentiles never load raw users. Changes made while the seed stream is
+ * read are applied to the new histograms once they are installed.
+ */
+@Service
+public class RatingDistributionService {
+
+    public static final int BUCKETS = 100;
+    private static final double MAX_RATING = 100;
+    private static final double BUCKET_WIDTH = MAX_RATING / BUCKETS;
+
+    private final UserRepository userRepository;
+    private final RegionHierarchyService regionHierarchyService;
+    private final IndexRebuildGuard<User> guard = new IndexRebuildGuard<>();
+
+    // Users by the region they are directly assigned to: their district, else their region
+    private volatile Map<String, Histogram> ownHistograms = new ConcurrentHashMap<>();
+    private volatile Map<String, Histogram> countryHistograms = new ConcurrentHashMap<>();
+    private volatile Map<String, Placement> placements = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RatingDistributionService(UserRepository userRepository, RegionHierarchyService regionHierarchyService) {
+        this.userRepository = userRepository;
+        this.regionHierarchyService = regionHierarchyService;
+    }
+
+    /**
+     * Seed the histograms once all startup data generators have finished
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        guard.startRebuild();
+        Map<String, Histogram> freshOwn = new ConcurrentHashMap<>();
+        Map<String, Histogram> freshCountries = new ConcurrentHashMap<>();
+        Map<String, Placement> freshPlacements = new ConcurrentHashMap<>();
+        try (Stream<User> stream = userRepository.streamActiveUsersByRating()) {
+            for (User user : (Iterable<User>) stream::iterator) {
+                Placement placement = placementOf(user);
+                apply(freshOwn, freshCountries, placement, 1);
+                freshPlacements.put(user.getId(), placement);
+            }
+        } catch (RuntimeException e) {
+            guard.finishRebuild(null, this::place);
+            throw e;
+        }
+        int replayed = guard.finishRebuild(() -> {
+            ownHistograms = freshOwn;
+            countryHistograms = freshCountries;
+            placements = freshPlacements;
+        }, this::place);
+        System.out.println("Rating histograms seeded with " + freshPlacements.size() + " active users, "
+                + replayed + " changes replayed");
+    }
+
+    /**
+     * Move the user to their current rating and region, or out of every histogram if inactive
+     */
+    public void onUserChanged(User user) {
+        if (user.getId() != null) {
+            guard.change(user.getId(), user, this::place);
+        }
+    }
+
+    public void onUserRemoved(String userId) {
+        guard.change(userId, null, this::place);
+    }
+
+    private void place(String userId, User user) {
+        if (user == null || !user.isActive()) {
+            remove(userId);
+            return;
+        }
+        Placement placement = placementOf(user);
+        // compute() serializes changes to one user, so nobody is counted twice
+        placements.compute(userId, (id, previous) -> {
+            if (placement.equals(previous)) {
+                return previous;
+            }
+            if (previous != null) {
+                apply(ownHistograms, countryHistograms, previous, -1);
+            }
+            apply(ownHistograms, countryHistograms, placement, 1);
+            return placement;
+        });
+    }
+
+    private void remove(String userId) {
+        placements.computeIfPresent(userId, (id, previous) -> {
+            apply(ownHistograms, countryHistograms, previous, -1);
+            return null;
+        });
+    }
+
+    /**
+     * Merge the histograms of the region and everything below it
+     * @param margin rating points on either side of each status threshold counted as near it
+     */
+    public RatingDistribution getDistribution(String regionId, int margin) {
+        long[] counts = new long[BUCKETS];
+        double[] sum = new double[1];
+        if (regionHierarchyService.typeOf(regionId) == RegionType.COUNTRY) {
+            mergeInto(countryHistograms.get(regionId), counts, sum);
+        } else {
+            for (String id : regionHierarchyService.selfAndDescendants(regionId)) {
+                mergeInto(ownHistograms.get(id), counts, sum);
+            }
+        }
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+
+        Map<String, Long> nearThresholds = new LinkedHashMap<>();
+        nearThresholds.put(SocialStatus.REGULAR.name(), countNear(counts, UserService.REGULAR_MIN_RATING, margin));
+        nearThresholds.put(SocialStatus.IMPORTANT.name(), countNear(counts, UserService.IMPORTANT_MIN_RATING, margin));
+        nearThresholds.put(SocialStatus.VIP.name(), countNear(counts, UserService.VIP_MIN_RATING, margin));
+
+        if (total == 0) {
+            return new RatingDistribution(regionId, 0, null, null, null, null, BUCKET_WIDTH, counts, nearThresholds);
+        }
+        return new RatingDistribution(regionId, total, sum[0] / total,
+                percentile(counts, total, 0.1), percentile(counts, total, 0.5), percentile(counts, total, 0.9),
+                BUCKET_WIDTH, counts, nearThresholds);
+    }
+
+    // Interpolates linearly inside the bucket that holds the requested rank
+    private static double percentile(long[] counts, long total, double quantile) {
+        double rank = quantile * total;
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 && seen + counts[i] >= rank) {
+                return (i + (rank - seen) / counts[i]) * BUCKET_WIDTH;
+            }
+            seen += counts[i];
+        }
+        return MAX_RATING;
+    }
+
+    private static long countNear(long[] counts, double threshold, int margin) {
+        int from = Math.max(0, bucketOf(threshold - margin * BUCKET_WIDTH));
+        int to = Math.min(BUCKETS, bucketOf(threshold) + margin);
+        long count = 0;
+        for (int i = from; i < to; i++) {
+            count += counts[i];
+        }
+        return count;
+    }
+
+    private static void mergeInto(Histogram histogram, long[] counts, double[] sum) {
+        if (histogram == null) {
+            return;
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += histogram.counts.get(i);
+        }
+        sum[0] += histogram.ratingSum.sum();
+    }
+
+    private static void apply(Map<String, Histogram> own, Map<String, Histogram> countries,
+                              Placement placement, int sign) {
+        if (placement.regionId() != null) {
+            own.computeIfAbsent(placement.regionId(), id -> new Histogram()).add(placement, sign);
+        }
+        if (placement.countryId() != null) {
+            countries.computeIfAbsent(placement.countryId(), id -> new Histogram()).add(placement, sign);
+        }
+    }
+
+    private static Placement placementOf(User user) {
+        String regionId = isAssigned(user.getDistrictId()) ? user.getDistrictId()
+                : isAssigned(user.getRegionId()) ? user.getRegionId() : null;
+        String countryId = isAssigned(user.getCountryId()) ? user.getCountryId() : null;
+        return new Placement(regionId, countryId, user.getSocialRating());
+    }
+
+    // Ratings outside 0-100 fall into the end buckets
+    private static int bucketOf(double rating) {
+        return (int) Math.max(0, Math.min(BUCKETS - 1, Math.floor(rating / BUCKET_WIDTH)));
+    }
+
+    private static boolean isAssigned(String regionId) {
+        return regionId != null && !regionId.equals(RegionMembership.NONE);
+    }
+
+    private record Placement(String regionId, String countryId, double rating) {
+    }
+
+    private static final class Histogram {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        final DoubleAdder ratingSum = new DoubleAdder();
+
+        void add(Placement placement, int sign) {
+            counts.addAndGet(bucketOf(placement.rating()), sign);
+            ratingSum.add(sign * placement.rating());
+        }
+    }
+}
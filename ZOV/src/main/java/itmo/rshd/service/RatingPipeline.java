@@ -0,0 +1,400 @@
+package itmo.rshd.service;
+
+import itmo.rshd.model.User;
+import itmo.rshd.model.websocket.RatingAck;
+import itmo.rshd.model.websocket.RatingPipelineStats;
+import itmo.rshd.model.websocket.RatingResult;
+import itmo.rshd.model.websocket.RatingUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies rating changes off the request threads.
+ * Each change is queued by the id of the user whose rating it writes, and every
+ * partition is drained by a single writer, so changes to one user are applied
+ * strictly in order and never race. A writer takes up to max-batch-size changes
+ * at a time, applies them to users loaded in one query, writes them back in one
+ * bulk update and recomputes each affected region once. The changes of one batch
+ * submission are spread over several writers, so their regions are collected and
+ * recomputed once, by whichever writer applies the submission's last change.
+ */
+@Service
+public class RatingPipeline {
+
+    // Largest batch a client may submit at once
+    public static final int MAX_BATCH_ITEMS = 1000;
+
+    private enum Kind {
+        ASSIGN,  // Set the rating directly
+        ADJUST,  // Add to the rating within 0-100
+        FEEDBACK // A rater rated another user; routed by the rater
+    }
+
+    private record RatingEvent(Kind kind, String userId, String otherUserId, double value, long enqueuedNanos,
+                               Submission submission) {
+    }
+
+    // Changes queued by one rateAll call, and the regions they affect so far
+    private static final class Submission {
+        // One per queued change not yet applied, plus one held by the submitter until everything is queued
+        final AtomicInteger pending = new AtomicInteger(1);
+        final Set<String> regionIds = ConcurrentHashMap.newKeySet();
+    }
+
+    private final UserService userService;
+    private final WebSocketService webSocketService;
+    private final int queueCapacity;
+    private final int maxBatchSize;
+    private final Partition[] partitions;
+    private final ThreadPoolTaskExecutor writers = new ThreadPoolTaskExecutor();
+    // Cleared on shutdown: new changes are refused and the writers stop once their queues are empty
+    private volatile boolean running = true;
+
+    @Autowired
+    public RatingPipeline(UserService userService, WebSocketService webSocketService,
+                          @Value("${zov.ratings.partitions:8}") int partitionCount,
+                          @Value("${zov.ratings.queue-capacity:10000}") int queueCapacity,
+                          @Value("${zov.ratings.max-batch-size:256}") int maxBatchSize,
+                          @Value("${zov.ratings.shutdown-timeout-seconds:30}") int shutdownTimeoutSeconds) {
+        this.userService = userService;
+        this.webSocketService = webSocketService;
+        this.queueCapacity = queueCapacity;
+        this.maxBatchSize = maxBatchSize;
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i);
+        }
+        writers.setCorePoolSize(partitionCount);
+        writers.setMaxPoolSize(partitionCount);
+        writers.setThreadNamePrefix("rating-writer-");
+        writers.setWaitForTasksToCompleteOnShutdown(true);
+        writers.setAwaitTerminationSeconds(shutdownTimeoutSeconds);
+        writers.initialize();
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Partition partition : partitions) {
+            writers.execute(partition::run);
+        }
+    }
+
+    /**
+     * Refuse new changes and wait up to the shutdown timeout for the writers to apply the queued ones
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        writers.shutdown();
+        long pending = 0;
+        for (Partition partition : partitions) {
+            pending += partition.queue.size();
+        }
+        if (pending > 0) {
+            System.err.println("Rating pipeline stopped with " + pending + " changes not applied");
+        }
+    }
+
+    /**
+     * Queue setting the user's rating directly
+     */
+    public RatingAck assignRating(String userId, double rating) {
+        return submit(new RatingEvent(Kind.ASSIGN, userId, null, rating, System.nanoTime(), null), false);
+    }
+
+    /**
+     * Queue the effect of a rater rating another user. Depending on the rater's status
+     * it changes either the rater's own rating or, for VIP and IMPORTANT raters, the target's.
+     */
+    public RatingAck rate(String raterId, String targetUserId, double ratingChange) {
+        return submit(new RatingEvent(Kind.FEEDBACK, raterId, targetUserId, ratingChange, System.nanoTime(), null), false);
+    }
+
+    /**
+     * Queue a batch of ratings, each with the same effect as {@link #assignRating} on the target
+     * followed by {@link #rate} for the rater. The changes for one partition are queued back to back,
+     * so its writer normally takes them as one bulk update. Every region the batch affects is
+     * recomputed and published once, after the last of its changes is applied.
+     * @return one result per item, in submission order
+     */
+    public List<RatingResult> rateAll(List<RatingUpdate> updates) {
+        List<RatingResult> results = new ArrayList<>(updates.size());
+        List<RatingEvent> assignments = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        long now = System.nanoTime();
+        Submission submission = new Submission();
+        for (int i = 0; i < updates.size(); i++) {
+            RatingUpdate update = updates.get(i);
+            String error = validate(update, i);
+            results.add(new RatingResult(i, update != null ? update.getTargetUserId() : null, null, error));
+            if (error == null) {
+                assignments.add(new RatingEvent(Kind.ASSIGN, update.getTargetUserId(), null, update.getRatingChange(),
+                        now, submission));
+                positions.add(i);
+            }
+        }
+
+        List<RatingAck> acks = submitAll(assignments);
+        List<RatingEvent> feedback = new ArrayList<>();
+        List<Integer> feedbackPositions = new ArrayList<>();
+        for (int j = 0; j < acks.size(); j++) {
+            RatingResult result = results.get(positions.get(j));
+            RatingAck ack = acks.get(j);
+            result.setAck(ack);
+            if (!ack.isAccepted()) {
+                result.setError("Rating queue is full");
+                continue;
+            }
+            RatingUpdate update = updates.get(positions.get(j));
+            if (update.getUserId() != null && !update.getUserId().isEmpty()) {
+                feedback.add(new RatingEvent(Kind.FEEDBACK, update.getUserId(), update.getTargetUserId(),
+                        update.getRatingChange(), now, submission));
+                feedbackPositions.add(positions.get(j));
+            }
+        }
+        List<RatingAck> feedbackAcks = submitAll(feedback);
+        for (int j = 0; j < feedbackAcks.size(); j++) {
+            if (!feedbackAcks.get(j).isAccepted()) {
+                // The assignment is queued and safe to repeat, so the item is retried as a whole
+                RatingResult result = results.get(feedbackPositions.get(j));
+                result.setAck(feedbackAcks.get(j));
+                result.setError("Rater's rating queue is full");
+            }
+        }
+        release(submission);
+        return results;
+    }
+
+    public RatingPipelineStats getStats() {
+        long now = System.nanoTime();
+        long maxLagMs = 0;
+        List<RatingPipelineStats.Partition> partitionStats = new ArrayList<>(partitions.length);
+        for (Partition partition : partitions) {
+            long lagMs = partition.lagMs(now);
+            maxLagMs = Math.max(maxLagMs, lagMs);
+            partitionStats.add(new RatingPipelineStats.Partition(partition.index, partition.queue.size(), lagMs,
+                    partition.submitted.get(), partition.rejected.get(), partition.applied.get(),
+                    partition.skipped.get(), partition.batches.get(), partition.failedBatches.get()));
+        }
+        return new RatingPipelineStats(queueCapacity, maxBatchSize, maxLagMs, partitionStats);
+    }
+
+    // Changes forwarded between writers skip the capacity check, so two full partitions cannot wait on each other
+    private RatingAck submit(RatingEvent event, boolean forwarded) {
+        return partitionOf(event.userId()).offer(event, forwarded);
+    }
+
+    // Queues the events partition by partition; acks come back in the order of the events
+    private List<RatingAck> submitAll(List<RatingEvent> events) {
+        Map<Partition, List<Integer>> byPartition = new LinkedHashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            byPartition.computeIfAbsent(partitionOf(events.get(i).userId()), key -> new ArrayList<>()).add(i);
+        }
+        RatingAck[] acks = new RatingAck[events.size()];
+        byPartition.forEach((partition, indexes) -> {
+            synchronized (partition) {
+                for (int index : indexes) {
+                    acks[index] = partition.offer(events.get(index), false);
+                }
+            }
+        });
+        return List.of(acks);
+    }
+
+    private static String validate(RatingUpdate update, int index) {
+        if (index >= MAX_BATCH_ITEMS) {
+            return "Batches are limited to " + MAX_BATCH_ITEMS + " items";
+        }
+        if (update == null || update.getTargetUserId() == null || update.getTargetUserId().isEmpty()) {
+            return "targetUserId is required";
+        }
+        if (!Double.isFinite(update.getRatingChange())) {
+            return "ratingChange must be a finite number";
+        }
+        return null;
+    }
+
+    private Partition partitionOf(String userId) {
+        return partitions[Math.floorMod(userId.hashCode(), partitions.length)];
+    }
+
+    // Applies the batch and counts each event as applied, forwarded or skipped
+    private void apply(Partition partition, List<RatingEvent> batch) {
+        Set<String> ids = new HashSet<>();
+        for (RatingEvent event : batch) {
+            ids.add(event.userId());
+            if (event.otherUserId() != null) {
+                ids.add(event.otherUserId());
+            }
+        }
+        Map<String, User> users = new HashMap<>();
+        for (User user : userService.getUsersByIds(ids)) {
+            users.put(user.getId(), user);
+        }
+
+        // Only users routed to this partition are written here
+        Map<String, User> changed = new LinkedHashMap<>();
+        // Users changed by single changes get their regions recomputed with this batch, the rest with their submission
+        Set<String> changedNow = new HashSet<>();
+        Map<String, Set<Submission>> changedBySubmission = new HashMap<>();
+        int appliedEvents = 0;
+        int skippedEvents = 0;
+        for (RatingEvent event : batch) {
+            User user = users.get(event.userId());
+            if (user == null) {
+                skippedEvents++;
+                continue;
+            }
+            if (event.kind() == Kind.FEEDBACK) {
+                User target = users.get(event.otherUserId());
+                if (target == null) {
+                    skippedEvents++;
+                    continue;
+                }
+                if (userService.hasRatingPower(user)) {
+                    // The target's rating belongs to the target's partition, which counts it once applied
+                    submit(new RatingEvent(Kind.ADJUST, target.getId(), null,
+                            userService.ratingPowerImpact(user, event.value()), event.enqueuedNanos(),
+                            event.submission()), true);
+                    continue;
+                }
+            }
+            changed.put(user.getId(), user);
+            if (event.submission() == null) {
+                changedNow.add(user.getId());
+            } else {
+                changedBySubmission.computeIfAbsent(user.getId(), id -> new HashSet<>()).add(event.submission());
+            }
+            appliedEvents++;
+            if (event.kind() == Kind.ASSIGN) {
+                userService.assignSocialRating(user, event.value());
+            } else if (event.kind() == Kind.ADJUST) {
+                userService.adjustSocialRating(user, event.value());
+            } else {
+                userService.adjustSocialRating(user, userService.raterImpact(users.get(event.otherUserId()), event.value()));
+            }
+        }
+        partition.skipped.addAndGet(skippedEvents);
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        // The stored documents carry any location written since the batch was read
+        List<User> savedUsers = userService.saveRatings(changed.values());
+        partition.applied.addAndGet(appliedEvents);
+        Set<String> regionIds = new LinkedHashSet<>();
+        for (User user : savedUsers) {
+            Set<String> related = userService.relatedRegionIds(user);
+            if (changedNow.contains(user.getId())) {
+                regionIds.addAll(related);
+            }
+            for (Submission submission : changedBySubmission.getOrDefault(user.getId(), Set.of())) {
+                submission.regionIds.addAll(related);
+            }
+            webSocketService.notifySocialRatingChange(user.getId(), user);
+        }
+        if (!regionIds.isEmpty()) {
+            webSocketService.notifyRegionStatusDeltas(userService.updateRegionStatistics(regionIds));
+        }
+    }
+
+    // Counts down one change of the submission; the last one recomputes and publishes its regions
+    private void release(Submission submission) {
+        if (submission.pending.decrementAndGet() > 0 || submission.regionIds.isEmpty()) {
+            return;
+        }
+        try {
+            webSocketService.notifyRegionStatusDeltas(userService.updateRegionStatistics(submission.regionIds));
+        } catch (RuntimeException e) {
+            System.err.println("Error recomputing " + submission.regionIds.size()
+                    + " regions of a rating batch: " + e.getMessage());
+        }
+    }
+
+    private final class Partition {
+        final int index;
+        final LinkedBlockingQueue<RatingEvent> queue = new LinkedBlockingQueue<>();
+        long sequence;
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong applied = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong failedBatches = new AtomicLong();
+
+        Partition(int index) {
+            this.index = index;
+        }
+
+        // Synchronized so sequence numbers follow queue order
+        synchronized RatingAck offer(RatingEvent event, boolean forwarded) {
+            if (!forwarded && (!running || queue.size() >= queueCapacity)) {
+                rejected.incrementAndGet();
+                return new RatingAck(sequence, index, false, queue.size());
+            }
+            if (event.submission() != null) {
+                // Counted before the writer can see it, so the submission cannot finish early
+                event.submission().pending.incrementAndGet();
+            }
+            queue.add(event);
+            submitted.incrementAndGet();
+            return new RatingAck(++sequence, index, true, queue.size());
+        }
+
+        long lagMs(long now) {
+            RatingEvent oldest = queue.peek();
+            return oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(now - oldest.enqueuedNanos());
+        }
+
+        void run() {
+            List<RatingEvent> batch = new ArrayList<>(maxBatchSize);
+            // After shutdown the queue is still drained; only forwarded changes can arrive by then
+            while (running || !queue.isEmpty()) {
+                try {
+                    RatingEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchSize - 1);
+                    apply(this, batch);
+                    batches.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    // One bad batch must not stop the writer; its changes are lost
+                    failedBatches.incrementAndGet();
+                    System.err.println("Error applying " + batch.size() + " rating changes in partition "
+                            + index + ": " + e.getMessage());
+                } finally {
+                    // Applied, skipped, forwarded or failed, the change is done with
+                    for (RatingEvent event : batch) {
+                        if (event.submission() != null) {
+                            release(event.submission());
+                        }
+                    }
+                    batch.clear();
+                }
+            }
+        }
+    }
+}
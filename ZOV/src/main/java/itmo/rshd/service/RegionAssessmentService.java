@@ -3,6 +3,8 @@ package itmo.rshd.service;
 import java.util.List;
 import java.util.Optional;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -23,6 +25,15 @@ public class RegionAssessmentService {
     
     @Autowired
     private WebSocketService webSocketService;
+    
+    @Autowired
+    private HeatmapService heatmapService;
+    
+    @Autowired
+    private LeaderboardService leaderboardService;
+    
+    @Autowired
+    private RatingDistributionService ratingDistributionService;
 
     public boolean shouldDeployOreshnik(String regionId) {
         // Get the region by ID
@@ -171,7 +182,14 @@ public class RegionAssessmentService {
         
         // Mark users as eliminated
         int eliminatedCount = 0;
+        Set<String> removedFromHeatmap = new HashSet<>();
         for (User user : usersToEliminate) {
+            // The same user can be listed twice (region and district lookups overlap)
+            if (removedFromHeatmap.add(user.getId())) {
+                heatmapService.onUserRemoved(user.getId());
+                leaderboardService.onUserRemoved(user.getId());
+                ratingDistributionService.onUserRemoved(user.getId());
+            }
             user.setSocialRating(0);
             user.setActive(false); // Mark users as eliminated
             userRepository.save(user);
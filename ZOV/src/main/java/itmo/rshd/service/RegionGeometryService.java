@@ -0,0 +1,152 @@
+package itmo.rshd.service;
+
+import itmo.rshd.geo.PolylineCodec;
+import itmo.rshd.geo.Simplifier;
+import itmo.rshd.model.CompactRegion;
+import itmo.rshd.model.Region;
+import itmo.rshd.model.RegionStatus;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact region boundaries for map clients.
+ * Each boundary is simplified once per zoom level with Douglas-Peucker and
+ * kept as encoded polylines, together with a content hash of the original
+ * coordinates that clients compare to tell when a boundary changed. Both are
+ * computed once per region and kept until RegionService evicts the region
+ * on create, update or delete.
+ */
+@Service
+public class RegionGeometryService {
+
+    // Zoom levels with a precomputed simplification; anything above the last one gets the full outline
+    private static final int[] ZOOM_LEVELS = { 4, 6, 8, 10, 12 };
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Content hash of the region boundary, zero if the region has none
+     */
+    public static int geometryVersion(Region region) {
+        GeoJsonPolygon polygon = region.getBoundaries();
+        if (polygon == null) {
+            return 0;
+        }
+        int hash = 1;
+        for (GeoJsonLineString ring : polygon.getCoordinates()) {
+            for (Point point : ring.getCoordinates()) {
+                hash = 31 * hash + Double.hashCode(point.getX());
+                hash = 31 * hash + Double.hashCode(point.getY());
+            }
+            hash = 31 * hash + 1;
+        }
+        return hash;
+    }
+
+    public RegionStatus toStatus(Region region) {
+        return RegionStatus.of(region, entryFor(region).version);
+    }
+
+    public CompactRegion toCompact(Region region, int zoom) {
+        Entry entry = entryFor(region);
+        RegionStatus status = RegionStatus.of(region, entry.version);
+        if (region.getId() == null || region.getBoundaries() == null) {
+            return new CompactRegion(status, zoom, List.of());
+        }
+        return new CompactRegion(status, zoom, entry.levels(region.getBoundaries()).get(levelFor(zoom)));
+    }
+
+    public List<CompactRegion> toCompact(List<Region> regions, int zoom) {
+        List<CompactRegion> result = new ArrayList<>(regions.size());
+        for (Region region : regions) {
+            result.add(toCompact(region, zoom));
+        }
+        return result;
+    }
+
+    /**
+     * Drop the cached version and outlines of a region whose boundary may have changed
+     */
+    public void evict(String regionId) {
+        if (regionId != null) {
+            cache.remove(regionId);
+        }
+    }
+
+    // Status updates only need the version, so the outlines are built on the first compact request
+    private Entry entryFor(Region region) {
+        if (region.getId() == null) {
+            return new Entry(geometryVersion(region));
+        }
+        return cache.computeIfAbsent(region.getId(), id -> new Entry(geometryVersion(region)));
+    }
+
+    private static int levelFor(int zoom) {
+        for (int i = 0; i < ZOOM_LEVELS.length; i++) {
+            if (zoom <= ZOOM_LEVELS[i]) {
+                return i;
+            }
+        }
+        return ZOOM_LEVELS.length;
+    }
+
+    // Roughly one screen pixel in degrees at the given web map zoom level
+    private static double toleranceFor(int zoom) {
+        return 360.0 / (256 * Math.pow(2, zoom));
+    }
+
+    private static final class Entry {
+        final int version;
+        private volatile List<List<String>> levels; // One list of encoded rings per zoom level, full outline last
+
+        private Entry(int version) {
+            this.version = version;
+        }
+
+        // Two first requests may both build the outlines; either result is the same
+        List<List<String>> levels(GeoJsonPolygon polygon) {
+            List<List<String>> built = levels;
+            if (built == null) {
+                built = build(polygon);
+                levels = built;
+            }
+            return built;
+        }
+
+        private static List<List<String>> build(GeoJsonPolygon polygon) {
+            List<double[]> rings = new ArrayList<>();
+            for (GeoJsonLineString lineString : polygon.getCoordinates()) {
+                List<Point> points = lineString.getCoordinates();
+                double[] ring = new double[points.size() * 2];
+                for (int i = 0; i < points.size(); i++) {
+                    ring[i * 2] = points.get(i).getX();
+                    ring[i * 2 + 1] = points.get(i).getY();
+                }
+                rings.add(ring);
+            }
+
+            List<List<String>> levels = new ArrayList<>(ZOOM_LEVELS.length + 1);
+            for (int zoom : ZOOM_LEVELS) {
+                double tolerance = toleranceFor(zoom);
+                List<String> encoded = new ArrayList<>(rings.size());
+                for (double[] ring : rings) {
+                    encoded.add(PolylineCodec.encode(Simplifier.simplifyRing(ring, tolerance)));
+                }
+                levels.add(List.copyOf(encoded));
+            }
+            List<String> full = new ArrayList<>(rings.size());
+            for (double[] ring : rings) {
+                full.add(PolylineCodec.encode(ring));
+            }
+            levels.add(List.copyOf(full));
+            return List.copyOf(levels);
+        }
+    }
+}
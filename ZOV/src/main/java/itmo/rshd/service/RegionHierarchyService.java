@@ -0,0 +1,108 @@
+package itmo.rshd.service;
+
+import itmo.rshd.model.Region;
+import itmo.rshd.model.Region.RegionType;
+import itmo.rshd.repository.RegionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parent, child and type of every region, kept in memory so in-memory
+ * aggregates can walk the hierarchy without querying MongoDB.
+ * Rebuilt lazily whenever regions are created, updated or deleted.
+ */
+@Service
+public class RegionHierarchyService {
+
+    private final RegionRepository regionRepository;
+
+    private volatile Hierarchy hierarchy;
+    private volatile boolean stale = true;
+
+    @Autowired
+    public RegionHierarchyService(RegionRepository regionRepository) {
+        this.regionRepository = regionRepository;
+    }
+
+    /**
+     * Mark the hierarchy as outdated; it is reloaded on the next lookup
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    public RegionType typeOf(String regionId) {
+        return get().types.get(regionId);
+    }
+
+    /**
+     * The region followed by its parent, grandparent and so on up to the top
+     */
+    public List<String> selfAndAncestors(String regionId) {
+        Hierarchy current = get();
+        List<String> chain = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        // The seen set guards against a cycle in hand-edited parent links
+        for (String id = regionId; id != null && seen.add(id); id = current.parents.get(id)) {
+            chain.add(id);
+        }
+        return chain;
+    }
+
+    /**
+     * The region and every region below it
+     */
+    public Set<String> selfAndDescendants(String regionId) {
+        Hierarchy current = get();
+        Set<String> result = new LinkedHashSet<>();
+        List<String> pending = new ArrayList<>(List.of(regionId));
+        while (!pending.isEmpty()) {
+            String id = pending.remove(pending.size() - 1);
+            if (result.add(id)) {
+                pending.addAll(current.children.getOrDefault(id, List.of()));
+            }
+        }
+        return result;
+    }
+
+    private Hierarchy get() {
+        Hierarchy current = hierarchy;
+        if (current == null || stale) {
+            current = refreshIfStale();
+        }
+        return current;
+    }
+
+    private synchronized Hierarchy refreshIfStale() {
+        // Another thread may have reloaded while we waited for the lock
+        if (hierarchy == null || stale) {
+            // Clear the flag first so an invalidation during the load triggers another reload
+            stale = false;
+            Hierarchy fresh = new Hierarchy();
+            for (Region region : regionRepository.findAll()) {
+                fresh.types.put(region.getId(), region.getType());
+                if (region.getParentRegionId() != null) {
+                    fresh.parents.put(region.getId(), region.getParentRegionId());
+                    fresh.children.computeIfAbsent(region.getParentRegionId(), id -> new ArrayList<>()).add(region.getId());
+                }
+            }
+            hierarchy = fresh;
+        }
+        return hierarchy;
+    }
+
+    // Never modified once published
+    private static final class Hierarchy {
+        final Map<String, String> parents = new HashMap<>();
+        final Map<String, List<String>> children = new HashMap<>();
+        final Map<String, RegionType> types = new HashMap<>();
+    }
+}
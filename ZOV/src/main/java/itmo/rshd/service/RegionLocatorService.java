@@ -0,0 +1,109 @@
+package itmo.rshd.service;
+
+import itmo.rshd.geo.RegionPolygonIndex;
+import itmo.rshd.model.GeoLocation;
+import itmo.rshd.model.Region;
+import itmo.rshd.model.RegionMembership;
+import itmo.rshd.model.User;
+import itmo.rshd.repository.RegionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Resolves which regions a point belongs to without querying MongoDB.
+ * Keeps an in-memory polygon index over all region boundaries that is
+ * rebuilt lazily whenever regions are created, updated or deleted.
+ */
+@Service
+public class RegionLocatorService {
+
+    private final RegionRepository regionRepository;
+
+    private volatile RegionPolygonIndex index;
+    private volatile boolean stale = true;
+
+    @Autowired
+    public RegionLocatorService(RegionRepository regionRepository) {
+        this.regionRepository = regionRepository;
+    }
+
+    /**
+     * Build the index once all startup data generators have finished
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        refresh();
+    }
+
+    public synchronized RegionPolygonIndex refresh() {
+        // Clear the flag first so an invalidation during the load triggers another rebuild
+        stale = false;
+        List<Region> regions = regionRepository.findAll();
+        index = RegionPolygonIndex.build(regions);
+        System.out.println("Region polygon index built with " + index.size() + " regions");
+        return index;
+    }
+
+    /**
+     * Mark the index as outdated; it is rebuilt on the next lookup
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    public RegionPolygonIndex getIndex() {
+        RegionPolygonIndex current = index;
+        if (current == null || stale) {
+            current = refreshIfStale();
+        }
+        return current;
+    }
+
+    private synchronized RegionPolygonIndex refreshIfStale() {
+        // Another thread may have rebuilt the index while we waited for the lock
+        if (index == null || stale) {
+            return refresh();
+        }
+        return index;
+    }
+
+    /**
+     * @return the membership chain for the location, or null if it lies outside every region
+     */
+    public RegionMembership locate(GeoLocation location) {
+        return getIndex().locate(location.getLongitude(), location.getLatitude());
+    }
+
+    public List<String> findRegionIdsContainingPoint(GeoLocation location) {
+        return getIndex().regionsContaining(location.getLongitude(), location.getLatitude());
+    }
+
+    /**
+     * Reconstruct the membership chain currently stored on a user
+     */
+    public RegionMembership membershipOf(User user) {
+        RegionPolygonIndex current = getIndex();
+        RegionMembership membership = new RegionMembership(
+                orNone(user.getDistrictId()),
+                RegionMembership.NONE,
+                orNone(user.getRegionId()),
+                orNone(user.getCountryId()));
+
+        if (!RegionMembership.NONE.equals(membership.getDistrictId())) {
+            String cityId = current.parentOf(membership.getDistrictId());
+            membership.setCityId(orNone(cityId));
+        } else if (current.typeOf(membership.getRegionId()) == Region.RegionType.CITY) {
+            // City officials are attached to the city itself
+            membership.setCityId(membership.getRegionId());
+        }
+        return membership;
+    }
+
+    private static String orNone(String id) {
+        return id != null ? id : RegionMembership.NONE;
+    }
+}
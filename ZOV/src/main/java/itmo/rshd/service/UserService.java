@@ -1,30 +1,76 @@
 package itmo.rshd.service;
 
+import itmo.rshd.geo.GeoDistance;
 import itmo.rshd.model.GeoLocation;
+import itmo.rshd.model.NearbyUser;
+import itmo.rshd.model.RegionMembership;
 import itmo.rshd.model.User;
 import itmo.rshd.model.User.SocialStatus;
+import itmo.rshd.model.websocket.RegionChange;
+import itmo.rshd.model.websocket.RegionStatusDelta;
 import itmo.rshd.repository.UserRepository;
 import itmo.rshd.model.Region;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class UserService {
 
+    // Radius and size of the neighbour lists pushed over WebSocket
+    public static final double NEARBY_RADIUS_KM = 50.0;
+    public static final int NEARBY_USERS_LIMIT = 50;
+
+    private static final int MAX_NEAREST_USERS = 500;
+
+    // A shared nearby-list query may load this many times the users the separate queries would
+    private static final int SHARED_NEARBY_CANDIDATE_FACTOR = 2;
+    // Radius of the sphere MongoDB measures $near distances on
+    private static final double MONGO_EARTH_RADIUS_KM = 6378.1;
+
+    // Lowest rating of each status for ratings that change by impacts
+    public static final double VIP_MIN_RATING = 90;
+    public static final double IMPORTANT_MIN_RATING = 70;
+    public static final double REGULAR_MIN_RATING = 40;
+
     private final UserRepository userRepository;
     private final RegionService regionService;
+    private final RegionLocatorService regionLocatorService;
+    private final HeatmapService heatmapService;
+    private final LeaderboardService leaderboardService;
+    private final RatingDistributionService ratingDistributionService;
+    private final LocationBroadcaster locationBroadcaster;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public UserService(UserRepository userRepository, RegionService regionService) {
+    public UserService(UserRepository userRepository, RegionService regionService,
+            RegionLocatorService regionLocatorService, HeatmapService heatmapService,
+            LeaderboardService leaderboardService, RatingDistributionService ratingDistributionService,
+            LocationBroadcaster locationBroadcaster, ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
         this.regionService = regionService;
+        this.regionLocatorService = regionLocatorService;
+        this.heatmapService = heatmapService;
+        this.leaderboardService = leaderboardService;
+        this.ratingDistributionService = ratingDistributionService;
+        this.locationBroadcaster = locationBroadcaster;
+        this.eventPublisher = eventPublisher;
     }
 
     public User createUser(User user) {
-        return userRepository.save(user);
+        User createdUser = userRepository.save(user);
+        onUserChanged(createdUser);
+        return createdUser;
     }
 
     public List<User> getAllUsers() {
@@ -40,52 +86,172 @@ public class UserService {
     }
 
     public User updateUser(User user) {
-        return userRepository.save(user);
+        User updatedUser = userRepository.save(user);
+        onUserChanged(updatedUser);
+        return updatedUser;
     }
 
     public void deleteUser(String id) {
         userRepository.deleteById(id);
+        heatmapService.onUserRemoved(id);
+        leaderboardService.onUserRemoved(id);
+        ratingDistributionService.onUserRemoved(id);
+        locationBroadcaster.remove(id);
     }
 
+    /**
+     * Set the location and membership given by the caller. Only those fields are written,
+     * so rating changes made in the meantime are kept.
+     */
     public User updateUserLocation(String userId, GeoLocation location, String regionId, String districtId, String countryId) {
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            user.setCurrentLocation(location);
-            user.setRegionId(regionId);
-            user.setDistrictId(districtId);
-            user.setCountryId(countryId);
-            user.setLastLocationUpdateTimestamp(System.currentTimeMillis());
-            return userRepository.save(user);
+        User updatedUser = userRepository.updateLocation(userId, location, regionId, districtId, countryId,
+                System.currentTimeMillis());
+        if (updatedUser != null) {
+            onUserChanged(updatedUser);
         }
-        return null;
+        return updatedUser;
     }
 
-    public User updateSocialRating(String userId, double newRating) {
+    /**
+     * Mark the user as active now. Only the location timestamp is written, so rating changes
+     * made in the meantime are kept; the aggregates do not depend on it and are left alone.
+     * @return the user as stored after the update, or null if there is no such user
+     */
+    public User touchUser(String userId) {
+        return userRepository.touchLocationTimestamp(userId, System.currentTimeMillis());
+    }
+
+    /**
+     * Move a user and resolve their district, region and country from the new location.
+     * Publishes a {@link RegionChange} event when the membership changes.
+     * If the location is outside every known region the previous membership is kept.
+     * Only the location and membership are written, so rating changes made in the meantime are kept.
+     */
+    public User moveUser(String userId, GeoLocation location) {
         Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            user.setSocialRating(newRating);
-            
-            // Update user status based on rating
-            if (newRating >= 900) {
-                user.setStatus(SocialStatus.VIP);
-            } else if (newRating >= 700) {
-                user.setStatus(SocialStatus.IMPORTANT);
-            } else if (newRating >= 400) {
-                user.setStatus(SocialStatus.REGULAR);
-            } else {
-                user.setStatus(SocialStatus.LOW);
+        if (userOpt.isEmpty()) {
+            return null;
+        }
+
+        // Payloads from clients only carry latitude/longitude, so rebuild the GeoJSON point
+        GeoLocation normalized = new GeoLocation(location.getLatitude(), location.getLongitude());
+        RegionMembership previous = regionLocatorService.membershipOf(userOpt.get());
+        RegionMembership current = regionLocatorService.locate(normalized);
+
+        boolean changed = false;
+        String regionId = null;
+        if (current != null) {
+            regionId = current.getRegionId();
+            // Users attached directly to a city (officials) keep that attachment while inside it
+            if (RegionMembership.NONE.equals(previous.getDistrictId())
+                    && RegionMembership.NONE.equals(current.getDistrictId())
+                    && previous.getRegionId().equals(current.getCityId())) {
+                regionId = previous.getRegionId();
             }
-            
-            User updatedUser = userRepository.save(user);
-            
-            // Update region statistics for all affected regions
-            updateUserRelatedRegionStatistics(user);
-            
-            return updatedUser;
+            changed = !previous.getDistrictId().equals(current.getDistrictId())
+                    || !previous.getRegionId().equals(regionId)
+                    || !previous.getCountryId().equals(current.getCountryId());
+        }
+
+        User updatedUser = userRepository.updateLocation(userId, normalized, regionId,
+                current != null ? current.getDistrictId() : null,
+                current != null ? current.getCountryId() : null,
+                System.currentTimeMillis());
+        if (updatedUser == null) {
+            // Deleted since it was read
+            return null;
+        }
+        onUserChanged(updatedUser);
+        if (changed) {
+            eventPublisher.publishEvent(new RegionChange(userId, previous, current));
+        }
+        return updatedUser;
+    }
+
+    /**
+     * Set a directly assigned rating and the matching status, without saving
+     */
+    public void assignSocialRating(User user, double newRating) {
+        user.setSocialRating(newRating);
+        
+        // Update user status based on rating
+        if (newRating >= 900) {
+            user.setStatus(SocialStatus.VIP);
+        } else if (newRating >= 700) {
+            user.setStatus(SocialStatus.IMPORTANT);
+        } else if (newRating >= 400) {
+            user.setStatus(SocialStatus.REGULAR);
+        } else {
+            user.setStatus(SocialStatus.LOW);
+        }
+    }
+
+    /**
+     * Add an impact to the rating, keep it within 0-100 and update the status, without saving
+     */
+    public void adjustSocialRating(User user, double impact) {
+        user.setSocialRating(Math.max(0, Math.min(100, user.getSocialRating() + impact)));
+        updateUserStatusBasedOnRating(user);
+    }
+
+    /**
+     * VIP and IMPORTANT raters change the rating of the person they rate instead of their own
+     */
+    public boolean hasRatingPower(User rater) {
+        return rater.getStatus() == SocialStatus.VIP || rater.getStatus() == SocialStatus.IMPORTANT;
+    }
+
+    /**
+     * Impact a rater with rating power has on the person they rate
+     */
+    public double ratingPowerImpact(User rater, double ratingChange) {
+        double multiplier = rater.getStatus() == SocialStatus.VIP ? 2.0 : 1.5;
+        double baseImpact = ratingChange > 0 ? 0.5 : -0.5;
+        return baseImpact * multiplier;
+    }
+
+    /**
+     * Impact on a regular or low rater's own rating for rating the target
+     */
+    public double raterImpact(User target, double ratingChange) {
+        switch (target.getStatus()) {
+            case VIP:
+                return ratingChange > 0 ? 5.0 : -10.0;
+            case IMPORTANT:
+                return ratingChange > 0 ? 3.0 : -7.0;
+            case REGULAR:
+                return ratingChange > 0 ? 1.0 : -3.0;
+            case LOW:
+                return ratingChange > 0 ? 0.5 : -1.0;
+            default:
+                return 0;
+        }
+    }
+
+    public List<User> getUsersByIds(Collection<String> ids) {
+        return userRepository.findAllById(ids);
+    }
+
+    /**
+     * Save the rating and status of users changed by one batch of rating events, then refresh
+     * the in-memory aggregates once per user from the stored documents. Region statistics are
+     * left to the caller, see {@link #relatedRegionIds} and {@link #updateRegionStatistics}.
+     * @return the users as stored after the write
+     */
+    public List<User> saveRatings(Collection<User> users) {
+        List<User> savedUsers = userRepository.updateRatings(users);
+        for (User user : savedUsers) {
+            onUserChanged(user);
         }
-        return null;
+        return savedUsers;
+    }
+
+    /**
+     * Recompute the statistics of the given regions once each
+     * @return one delta per region whose statistics changed
+     */
+    public List<RegionStatusDelta> updateRegionStatistics(Collection<String> regionIds) {
+        return regionService.updateRegionStatistics(regionIds);
     }
 
     public List<User> findUsersInRegion(String regionId) {
@@ -108,135 +274,139 @@ public class UserService {
         );
     }
 
-    public List<User> findUsersBelowRating(double threshold) {
-        return userRepository.findUsersBelowRating(threshold);
+    /**
+     * Same as {@link #findUsersNearLocation(GeoLocation, double)} but returns at most
+     * {@code limit} users, closest first
+     */
+    public List<User> findUsersNearLocation(GeoLocation location, double maxDistanceKm, int limit) {
+        return userRepository.findByCurrentLocationNear(
+            location.getLatitude(),
+            location.getLongitude(),
+            maxDistanceKm * 1000,
+            Limit.of(limit)
+        );
     }
 
     /**
-     * Update user's social rating based on their rating of another user
-     * @param raterId ID of the user giving the rating
-     * @param targetId ID of the user being rated
-     * @param ratingChange The rating change (positive for like, negative for dislike)
-     * @return The updated rater user
+     * Nearby lists for several locations, each as {@link #findUsersNearLocation(GeoLocation, double, int)}
+     * would return it. The users around all the locations are loaded with one distance-sorted query
+     * and every list is cut out of them with the batch distance kernels. When that query would load
+     * too many users the lists are queried one by one instead.
+     * @param locations keyed by the id of the user each list is for
      */
-    public User updateRaterSocialRating(String raterId, String targetId, double ratingChange) {
-        Optional<User> raterOpt = userRepository.findById(raterId);
-        Optional<User> targetOpt = userRepository.findById(targetId);
-        
-        if (raterOpt.isPresent() && targetOpt.isPresent()) {
-            User rater = raterOpt.get();
-            User target = targetOpt.get();
-            double raterImpact = 0;
-            
-            // If rater is VIP or IMPORTANT, they have special rating power
-            if (rater.getStatus() == SocialStatus.VIP || rater.getStatus() == SocialStatus.IMPORTANT) {
-                double multiplier = rater.getStatus() == SocialStatus.VIP ? 2.0 : 1.5;
-                double baseImpact = ratingChange > 0 ? 0.5 : -0.5;
-                double impact = baseImpact * multiplier;
-                
-                // Calculate new rating by applying the impact
-                double newRating = target.getSocialRating() + impact;
-                
-                // Ensure rating stays within valid bounds (0-100)
-                newRating = Math.max(0, Math.min(100, newRating));
-                
-                target.setSocialRating(newRating);
-                // Update target's status based on new rating
-                updateUserStatusBasedOnRating(target);
-                User updatedTarget = userRepository.save(target);
-                
-                // Update region statistics for the target's regions
-                updateUserRelatedRegionStatistics(target);
-                
-                return updatedTarget;
-            }
-            
-            // For regular and low status users, use the original impact calculation
-            switch (target.getStatus()) {
-                case VIP:
-                    raterImpact = ratingChange > 0 ? 5.0 : -10.0;
-                    break;
-                case IMPORTANT:
-                    raterImpact = ratingChange > 0 ? 3.0 : -7.0;
-                    break;
-                case REGULAR:
-                    raterImpact = ratingChange > 0 ? 1.0 : -3.0;
-                    break;
-                case LOW:
-                    raterImpact = ratingChange > 0 ? 0.5 : -1.0;
-                    break;
-            }
-            
-            // Calculate new rating by adding the impact to current rating
-            double newRating = rater.getSocialRating() + raterImpact;
-            
-            // Ensure rating stays within valid bounds (0-100)
-            newRating = Math.max(0, Math.min(100, newRating));
-            
-            // Update rater's social rating
-            rater.setSocialRating(newRating);
-            
-            // Update status based on new rating
-            updateUserStatusBasedOnRating(rater);
-            
-            User updatedRater = userRepository.save(rater);
-            
-            // Update region statistics for the rater's regions
-            updateUserRelatedRegionStatistics(rater);
-            
-            return updatedRater;
+    public Map<String, List<User>> findUsersNearLocations(Map<String, GeoLocation> locations,
+                                                          double maxDistanceKm, int limit) {
+        Map<String, List<User>> lists = new LinkedHashMap<>();
+        if (locations.isEmpty()) {
+            return lists;
         }
-        
-        return null;
+        // The kernels measure on a smaller sphere than MongoDB, so the radius is converted to the same angle
+        double radiusKm = maxDistanceKm * GeoDistance.EARTH_RADIUS_KM / MONGO_EARTH_RADIUS_KM;
+        // A circle around the first location that contains the search circle of every location
+        GeoLocation centre = locations.values().iterator().next();
+        double coverKm = 0;
+        for (GeoLocation location : locations.values()) {
+            coverKm = Math.max(coverKm, centre.distanceFrom(location));
+        }
+        coverKm += radiusKm;
+
+        int maxCandidates = SHARED_NEARBY_CANDIDATE_FACTOR * locations.size() * limit;
+        List<User> candidates = locations.size() == 1 ? null : userRepository.findByCurrentLocationNear(
+                centre.getLatitude(), centre.getLongitude(),
+                coverKm * 1000 * MONGO_EARTH_RADIUS_KM / GeoDistance.EARTH_RADIUS_KM, Limit.of(maxCandidates + 1));
+        if (candidates == null || candidates.size() > maxCandidates) {
+            locations.forEach((id, location) -> lists.put(id, findUsersNearLocation(location, maxDistanceKm, limit)));
+            return lists;
+        }
+
+        double[] latitudes = new double[candidates.size()];
+        double[] longitudes = new double[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            latitudes[i] = candidates.get(i).getCurrentLocation().getLatitude();
+            longitudes[i] = candidates.get(i).getCurrentLocation().getLongitude();
+        }
+        GeoDistance.Points points = GeoDistance.Points.of(latitudes, longitudes);
+        locations.forEach((id, location) -> {
+            int[] nearest = GeoDistance.nearest(location.getLatitude(), location.getLongitude(), points,
+                    limit, radiusKm, null);
+            List<User> users = new ArrayList<>(nearest.length);
+            for (int index : nearest) {
+                users.add(candidates.get(index));
+            }
+            lists.put(id, users);
+        });
+        return lists;
+    }
+
+    /**
+     * k-nearest-neighbour search returning distance-ranked lightweight views
+     * @param maxDistanceKm optional search radius, null for unbounded
+     */
+    public List<NearbyUser> findNearestUsers(GeoLocation location, int limit, Double maxDistanceKm) {
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_NEAREST_USERS));
+        return userRepository.findNearestUsers(location.getLatitude(), location.getLongitude(), boundedLimit, maxDistanceKm);
+    }
+
+    public List<User> findUsersBelowRating(double threshold) {
+        return userRepository.findUsersBelowRating(threshold);
+    }
+
+    // Keeps the in-memory aggregates in sync with a saved user
+    private void onUserChanged(User user) {
+        heatmapService.onUserChanged(user);
+        leaderboardService.onUserChanged(user);
+        ratingDistributionService.onUserChanged(user);
     }
 
     // Helper method to update status based on rating
     private void updateUserStatusBasedOnRating(User user) {
         double rating = user.getSocialRating();
-        if (rating >= 90) {
+        if (rating >= VIP_MIN_RATING) {
             user.setStatus(SocialStatus.VIP);
-        } else if (rating >= 70) {
+        } else if (rating >= IMPORTANT_MIN_RATING) {
             user.setStatus(SocialStatus.IMPORTANT);
-        } else if (rating >= 40) {
+        } else if (rating >= REGULAR_MIN_RATING) {
             user.setStatus(SocialStatus.REGULAR);
         } else {
             user.setStatus(SocialStatus.LOW);
         }
     }
 
-    // Helper method to update region statistics for a user's regions
-    private void updateUserRelatedRegionStatistics(User user) {
-        // Update district, city, region, and country statistics
+    /**
+     * District, city, region and country whose statistics include the user
+     */
+    public Set<String> relatedRegionIds(User user) {
+        Set<String> regionIds = new LinkedHashSet<>();
         if (user.getDistrictId() != null && !user.getDistrictId().equals("none")) {
-            regionService.updateRegionStatistics(user.getDistrictId());
+            regionIds.add(user.getDistrictId());
             
             // Find parent city of this district
             Optional<Region> districtOpt = regionService.getRegionById(user.getDistrictId());
             if (districtOpt.isPresent() && districtOpt.get().getParentRegionId() != null) {
                 String cityId = districtOpt.get().getParentRegionId();
-                regionService.updateRegionStatistics(cityId);
+                regionIds.add(cityId);
                 
                 // Find parent region of this city
                 Optional<Region> cityOpt = regionService.getRegionById(cityId);
                 if (cityOpt.isPresent() && cityOpt.get().getParentRegionId() != null) {
-                    String regionId = cityOpt.get().getParentRegionId();
-                    regionService.updateRegionStatistics(regionId);
+                    regionIds.add(cityOpt.get().getParentRegionId());
                 }
             }
         } else if (user.getRegionId() != null && !user.getRegionId().equals("none")) {
             // User might be directly associated with a city or region
-            regionService.updateRegionStatistics(user.getRegionId());
+            regionIds.add(user.getRegionId());
             
             // Check if this is a city and update its parent region
             Optional<Region> regionOpt = regionService.getRegionById(user.getRegionId());
             if (regionOpt.isPresent() && regionOpt.get().getParentRegionId() != null) {
-                regionService.updateRegionStatistics(regionOpt.get().getParentRegionId());
+                regionIds.add(regionOpt.get().getParentRegionId());
             }
         }
         
         // Always update the country statistics
         if (user.getCountryId() != null) {
-            regionService.updateRegionStatistics(user.getCountryId());
+            regionIds.add(user.getCountryId());
         }
+        return regionIds;
     }
-} 
\ No newline at end of file
+}
@@ -1,47 +1,95 @@
 package itmo.rshd.service;
 
+import itmo.rshd.config.CborMessageConverter;
+import itmo.rshd.config.PayloadEncodingInterceptor;
 import itmo.rshd.model.Region;
 import itmo.rshd.model.User;
 import itmo.rshd.model.websocket.MissileLaunch;
+import itmo.rshd.model.websocket.RegionChange;
+import itmo.rshd.model.websocket.RegionStatusDelta;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Set;
 
 @Service
 public class WebSocketService {
     
     private final SimpMessagingTemplate messagingTemplate;
+    private final RegionGeometryService regionGeometryService;
+    private final LocationBroadcaster locationBroadcaster;
+    private final PayloadEncodingInterceptor payloadEncodingInterceptor;
+    private final NearbyUsersPublisher nearbyUsersPublisher;
     
     @Autowired
-    public WebSocketService(SimpMessagingTemplate messagingTemplate) {
+    public WebSocketService(SimpMessagingTemplate messagingTemplate, RegionGeometryService regionGeometryService,
+                            LocationBroadcaster locationBroadcaster, PayloadEncodingInterceptor payloadEncodingInterceptor,
+                            NearbyUsersPublisher nearbyUsersPublisher) {
         this.messagingTemplate = messagingTemplate;
+        this.regionGeometryService = regionGeometryService;
+        this.locationBroadcaster = locationBroadcaster;
+        this.payloadEncodingInterceptor = payloadEncodingInterceptor;
+        this.nearbyUsersPublisher = nearbyUsersPublisher;
     }
     
     /**
-     * Send user location update to all subscribers
+     * Send user location update to all subscribers.
+     * Updates are batched per tick by the LocationBroadcaster.
      */
     public void notifyUserLocationUpdate(User user) {
-        messagingTemplate.convertAndSend("/topic/user-location-update", user);
+        locationBroadcaster.enqueue(user);
     }
     
     /**
-     * Send nearby users update to a specific user
+     * Send nearby users update to a specific user.
+     * Each session only receives the users that entered, moved or left since its last update.
      */
     public void notifyNearbyUsersUpdate(String userId, List<User> nearbyUsers) {
-        messagingTemplate.convertAndSendToUser(
-                userId,
-                "/queue/users-nearby-update",
-                nearbyUsers
-        );
+        nearbyUsersPublisher.publish(userId, nearbyUsers);
     }
     
     /**
-     * Broadcast region status update to all subscribers
+     * Whether the user has a live session that shows a nearby-user list
+     */
+    public boolean isWatchingNearbyUsers(String userId) {
+        return nearbyUsersPublisher.isSubscribed(userId);
+    }
+    
+    /**
+     * Users whose nearby list currently contains the given user
+     */
+    public Set<String> getNearbyWatchers(String userId) {
+        return nearbyUsersPublisher.watchersOf(userId);
+    }
+    
+    /**
+     * Send a session its full nearby-user list, e.g. after it detected a sequence gap
+     */
+    public void resyncNearbyUsers(String sessionId) {
+        nearbyUsersPublisher.resync(sessionId);
+    }
+    
+    /**
+     * Broadcast region status update to all subscribers.
+     * Only the statistics are sent; clients refetch the boundary when its geometry version changes.
      */
     public void notifyRegionStatusUpdate(Region region) {
-        messagingTemplate.convertAndSend("/topic/region-status-update", region);
+        messagingTemplate.convertAndSend("/topic/region-status-update", regionGeometryService.toStatus(region));
+    }
+    
+    /**
+     * Broadcast the changed statistics of a bulk recompute as a single frame.
+     * Nothing is sent when no region changed.
+     */
+    public void notifyRegionStatusDeltas(List<RegionStatusDelta> deltas) {
+        if (!deltas.isEmpty()) {
+            messagingTemplate.convertAndSend("/topic/region-status-delta", deltas);
+        }
     }
     
     /**
@@ -59,10 +107,28 @@ public class WebSocketService {
      * Notify a specific user about their social rating change
      */
     public void notifySocialRatingChange(String userId, User updatedUser) {
-        messagingTemplate.convertAndSendToUser(
-                userId,
-                "/queue/social-rating-update",
-                updatedUser
-        );
+        sendToUser(userId, "/queue/social-rating-update", updatedUser);
+    }
+    
+    /**
+     * Notify a user that their location moved them into a different district, region or country
+     */
+    @EventListener
+    public void notifyRegionChange(RegionChange regionChange) {
+        sendToUser(regionChange.getUserId(), "/queue/region-change", regionChange);
+    }
+    
+    /**
+     * Send to a user queue, encoding straight to CBOR when every subscriber of that queue asked for it
+     */
+    private void sendToUser(String userId, String destination, Object payload) {
+        if (payloadEncodingInterceptor.prefersCbor(PayloadEncodingInterceptor.userDestination(userId, destination))) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setContentType(CborMessageConverter.APPLICATION_CBOR);
+            accessor.setLeaveMutable(true);
+            messagingTemplate.convertAndSendToUser(userId, destination, payload, accessor.getMessageHeaders());
+        } else {
+            messagingTemplate.convertAndSendToUser(userId, destination, payload);
+        }
     }
-} 
\ No newline at end of file
+}
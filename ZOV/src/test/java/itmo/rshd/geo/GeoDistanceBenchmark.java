@@ -0,0 +1,103 @@
+package itmo.rshd.geo;
+
+import itmo.rshd.model.GeoLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radius and k-nearest queries with the columnar kernels against the same queries
+ * done one GeoLocation.distanceFrom call at a time.
+ * <p>
+ * Usage: mvn test-compile, then
+ *        java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)
+ *        org.openjdk.jmh.Main GeoDistanceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoDistanceBenchmark {
+
+    private static final double ORIGIN_LAT = 55.75;
+    private static final double ORIGIN_LON = 37.62;
+    private static final int K = 50;
+
+    @Param({ "10000", "100000" })
+    private int size;
+
+    // Below the prefilter's cap, and above it where every candidate gets the exact haversine
+    @Param({ "50", "2000" })
+    private double radiusKm;
+
+    private List<GeoLocation> locations;
+    private GeoLocation origin;
+    private GeoDistance.Points points;
+    private int[] indices;
+    private double[] distances;
+
+    @Setup
+    public void setUp() {
+        // Users spread over European Russia, denser around the origin as in the generated data
+        Random random = new Random(1);
+        locations = new ArrayList<>(size);
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            double spread = random.nextDouble() < 0.3 ? 0.5 : 15;
+            latitudes[i] = ORIGIN_LAT + (random.nextDouble() - 0.5) * spread;
+            longitudes[i] = ORIGIN_LON + (random.nextDouble() - 0.5) * spread * 2;
+            locations.add(new GeoLocation(latitudes[i], longitudes[i]));
+        }
+        origin = new GeoLocation(ORIGIN_LAT, ORIGIN_LON);
+        points = GeoDistance.Points.of(latitudes, longitudes);
+        indices = new int[size];
+        distances = new double[size];
+    }
+
+    @Benchmark
+    public int withinRadiusDistanceFrom() {
+        int count = 0;
+        for (int i = 0; i < locations.size(); i++) {
+            if (origin.distanceFrom(locations.get(i)) <= radiusKm) {
+                indices[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int withinRadiusColumns() {
+        return GeoDistance.withinRadius(ORIGIN_LAT, ORIGIN_LON, radiusKm, points, indices, distances);
+    }
+
+    @Benchmark
+    public List<GeoLocation> nearestDistanceFrom() {
+        return locations.stream()
+                .filter(location -> origin.distanceFrom(location) <= radiusKm)
+                .sorted(Comparator.comparingDouble(origin::distanceFrom))
+                .limit(K)
+                .toList();
+    }
+
+    @Benchmark
+    public int[] nearestColumns() {
+        return GeoDistance.nearest(ORIGIN_LAT, ORIGIN_LON, points, K, radiusKm, distances);
+    }
+}
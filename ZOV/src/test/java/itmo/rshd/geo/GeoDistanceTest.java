@@ -0,0 +1,131 @@
+package itmo.rshd.geo;
+
+import itmo.rshd.model.GeoLocation;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the batch kernels against GeoLocation.distanceFrom one point at a time,
+ * with points placed just inside and just outside the radius where the prefilter decides
+ */
+class GeoDistanceTest {
+
+    // Origins whose circles end on both sides of the prefilter's 80 degree limit, at the poles
+    // and across the antimeridian
+    private static final double[][] ORIGINS = {
+            { 0, 0 }, { 55.75, 37.62 }, { 70.9, 20 }, { -71, 45 }, { 79.9, 10 }, { 80, 10 }, { 80.1, 10 },
+            { -79.99, -60 }, { -80.01, 120 }, { 89.5, 0 }, { -90, 0 }, { 65, 179.9 }, { -10, -179.95 } };
+
+    // Radii on both sides of the prefilter's 1000 km cap, plus a tiny and a half-globe one
+    private static final double[] RADII = { 0.5, 50, 999.999, 1000, 1000.001, 3000, 20000 };
+
+    @Test
+    void withinRadiusMatchesDistanceFrom() {
+        Random random = new Random(5);
+        for (double[] origin : ORIGINS) {
+            for (double radius : RADII) {
+                List<GeoLocation> locations = aroundRadius(random, origin, radius);
+                GeoDistance.Points points = pointsOf(locations);
+                GeoLocation center = new GeoLocation(origin[0], origin[1]);
+
+                int[] indices = new int[locations.size()];
+                double[] distances = new double[locations.size()];
+                int count = GeoDistance.withinRadius(origin[0], origin[1], radius, points, indices, distances);
+
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < locations.size(); i++) {
+                    if (center.distanceFrom(locations.get(i)) <= radius) {
+                        expected.add(i);
+                    }
+                }
+                String query = Arrays.toString(origin) + " within " + radius + " km";
+                assertEquals(expected, toList(indices, count), query);
+                for (int c = 0; c < count; c++) {
+                    assertEquals(center.distanceFrom(locations.get(indices[c])), distances[c], 1e-9, query);
+                }
+            }
+        }
+    }
+
+    @Test
+    void nearestMatchesSortedDistanceFrom() {
+        Random random = new Random(9);
+        for (double[] origin : ORIGINS) {
+            for (double radius : RADII) {
+                List<GeoLocation> locations = aroundRadius(random, origin, radius);
+                GeoDistance.Points points = pointsOf(locations);
+                GeoLocation center = new GeoLocation(origin[0], origin[1]);
+
+                double[] expected = locations.stream()
+                        .mapToDouble(center::distanceFrom)
+                        .filter(distance -> distance <= radius)
+                        .sorted()
+                        .toArray();
+                for (int k : new int[] { 1, 7, expected.length, expected.length + 3 }) {
+                    double[] distances = new double[locations.size()];
+                    int[] nearest = GeoDistance.nearest(origin[0], origin[1], points, k, radius, distances);
+                    String query = Arrays.toString(origin) + " k=" + k + " within " + radius + " km";
+                    // Ties may come in any order, so the distances are compared rather than the indices
+                    assertArrayEquals(Arrays.copyOf(expected, Math.min(k, expected.length)),
+                            Arrays.copyOf(distances, nearest.length), 1e-9, query);
+                    for (int i = 0; i < nearest.length; i++) {
+                        assertEquals(center.distanceFrom(locations.get(nearest[i])), distances[i], 1e-9, query);
+                    }
+                }
+            }
+        }
+    }
+
+    // Points a hair inside and outside the radius in every direction, plus random points around it
+    private static List<GeoLocation> aroundRadius(Random random, double[] origin, double radiusKm) {
+        List<GeoLocation> locations = new ArrayList<>();
+        for (int bearing = 0; bearing < 360; bearing += 5) {
+            for (double factor : new double[] { 1 - 1e-6, 1 - 1e-9, 1 + 1e-9, 1 + 1e-6 }) {
+                locations.add(destination(origin[0], origin[1], bearing + random.nextDouble(), radiusKm * factor));
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            locations.add(destination(origin[0], origin[1], random.nextDouble() * 360,
+                    radiusKm * 2 * random.nextDouble()));
+        }
+        return locations;
+    }
+
+    // The point at the given great-circle distance and initial bearing from the origin
+    private static GeoLocation destination(double latitude, double longitude, double bearingDegrees, double km) {
+        double delta = km / GeoDistance.EARTH_RADIUS_KM;
+        double theta = Math.toRadians(bearingDegrees);
+        double phi1 = Math.toRadians(latitude);
+        double lambda1 = Math.toRadians(longitude);
+        double phi2 = Math.asin(Math.sin(phi1) * Math.cos(delta) + Math.cos(phi1) * Math.sin(delta) * Math.cos(theta));
+        double lambda2 = lambda1 + Math.atan2(Math.sin(theta) * Math.sin(delta) * Math.cos(phi1),
+                Math.cos(delta) - Math.sin(phi1) * Math.sin(phi2));
+        double lon = (Math.toDegrees(lambda2) + 540) % 360 - 180;
+        return new GeoLocation(Math.toDegrees(phi2), lon);
+    }
+
+    private static GeoDistance.Points pointsOf(List<GeoLocation> locations) {
+        double[] latitudes = new double[locations.size()];
+        double[] longitudes = new double[locations.size()];
+        for (int i = 0; i < locations.size(); i++) {
+            latitudes[i] = locations.get(i).getLatitude();
+            longitudes[i] = locations.get(i).getLongitude();
+        }
+        return GeoDistance.Points.of(latitudes, longitudes);
+    }
+
+    private static List<Integer> toList(int[] values, int count) {
+        List<Integer> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(values[i]);
+        }
+        return list;
+    }
+}
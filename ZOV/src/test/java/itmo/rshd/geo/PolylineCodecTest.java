@@ -0,0 +1,34 @@
+package itmo.rshd.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PolylineCodecTest {
+
+    @Test
+    void encodesTheReferenceExample() {
+        // The worked example of the encoded polyline format, given as longitude, latitude pairs
+        double[] coordinates = { -120.2, 38.5, -120.95, 40.7, -126.453, 43.252 };
+        String encoded = PolylineCodec.encode(coordinates);
+
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", encoded);
+        assertArrayEquals(coordinates, PolylineCodec.decode(encoded), 1e-9);
+    }
+
+    @Test
+    void roundTripsToFiveDecimalDigits() {
+        Random random = new Random(3);
+        for (int points : new int[] { 0, 1, 7, 5000 }) {
+            double[] coordinates = new double[points * 2];
+            for (int i = 0; i < coordinates.length; i += 2) {
+                coordinates[i] = random.nextDouble() * 360 - 180;
+                coordinates[i + 1] = random.nextDouble() * 180 - 90;
+            }
+            assertArrayEquals(coordinates, PolylineCodec.decode(PolylineCodec.encode(coordinates)), 0.5e-5 + 1e-12);
+        }
+    }
+}
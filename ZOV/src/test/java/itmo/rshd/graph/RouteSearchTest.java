@@ -0,0 +1,182 @@
+package itmo.rshd.graph;
+
+import itmo.rshd.geo.GeoDistance;
+import itmo.rshd.graph.RouteSearch.Metric;
+import itmo.rshd.graph.RouteSearch.Result;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the bounded A* and Dijkstra search against a hop-bounded Bellman-Ford over the same network
+ */
+class RouteSearchTest {
+
+    private static final int DEPOTS = 60;
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    void findsTheCheapestRouteWithinTheHopLimit() {
+        Random random = new Random(7);
+        for (int round = 0; round < 5; round++) {
+            SupplyNetwork network = randomNetwork(random);
+            for (Metric metric : Metric.values()) {
+                for (int query = 0; query < 100; query++) {
+                    int from = random.nextInt(DEPOTS);
+                    int to = random.nextInt(DEPOTS);
+                    int maxHops = 1 + random.nextInt(5);
+                    Result result = RouteSearch.find(network, from, to, metric, 1, maxHops,
+                            Double.POSITIVE_INFINITY, 0, Integer.MAX_VALUE);
+                    assertMatchesBellmanFord(network, from, to, metric, maxHops, 0, result);
+                }
+            }
+        }
+    }
+
+    @Test
+    void skipsRoutesBelowTheMinimumCapacity() {
+        Random random = new Random(11);
+        SupplyNetwork network = randomNetwork(random);
+        for (int query = 0; query < 200; query++) {
+            int from = random.nextInt(DEPOTS);
+            int to = random.nextInt(DEPOTS);
+            int maxHops = 1 + random.nextInt(5);
+            double minCapacity = random.nextInt(1000);
+            Result result = RouteSearch.find(network, from, to, Metric.DISTANCE, 1, maxHops,
+                    Double.POSITIVE_INFINITY, minCapacity, Integer.MAX_VALUE);
+            assertMatchesBellmanFord(network, from, to, Metric.DISTANCE, maxHops, minCapacity, result);
+        }
+    }
+
+    @Test
+    void returnsTheBestRouteSeenWhenTheBudgetRunsOut() {
+        SupplyNetwork network = SupplyNetwork.builder()
+                .addDepot("a", Map.of())
+                .addDepot("b", Map.of())
+                .addDepot("c", Map.of())
+                .addRoute("a", "c", 100, 0, Double.NaN, true)
+                .addRoute("a", "b", 1, 0, Double.NaN, true)
+                .addRoute("b", "c", 1, 0, Double.NaN, true)
+                .build();
+        int a = network.ordinal("a");
+        int c = network.ordinal("c");
+
+        Result truncated = RouteSearch.find(network, a, c, Metric.DISTANCE, 1, 5, Double.POSITIVE_INFINITY, 0, 2);
+        assertTrue(truncated.found());
+        assertTrue(truncated.truncated());
+        assertEquals(100, truncated.cost(), EPSILON);
+        assertEquals(List.of(a, c), truncated.depots());
+
+        Result complete = RouteSearch.find(network, a, c, Metric.DISTANCE, 1, 5, Double.POSITIVE_INFINITY, 0, 100);
+        assertTrue(complete.found());
+        assertFalse(complete.truncated());
+        assertEquals(2, complete.cost(), EPSILON);
+
+        Result nothingSeen = RouteSearch.find(network, network.ordinal("b"), a, Metric.DISTANCE, 1, 5,
+                Double.POSITIVE_INFINITY, 0, 0);
+        assertFalse(nothingSeen.found());
+    }
+
+    @Test
+    void treatsARiskLimitOfOneAsNoLimit() {
+        SupplyNetwork network = SupplyNetwork.builder()
+                .addDepot("a", Map.of())
+                .addDepot("b", Map.of())
+                .addRoute("a", "b", 1, 0.7, Double.NaN, true)
+                .build();
+        int a = network.ordinal("a");
+        int b = network.ordinal("b");
+
+        Result unlimited = RouteSearch.find(network, a, b, Metric.RISK, 1, 5, 1, 0, Integer.MAX_VALUE);
+        assertTrue(unlimited.found());
+        assertEquals(0.7, unlimited.cost(), EPSILON);
+
+        assertFalse(RouteSearch.find(network, a, b, Metric.RISK, 1, 5, 0.5, 0, Integer.MAX_VALUE).found());
+    }
+
+    // Depots spread over a few degrees; some routes inactive and some without a capacity
+    private static SupplyNetwork randomNetwork(Random random) {
+        SupplyNetwork.Builder builder = SupplyNetwork.builder();
+        double[][] points = new double[DEPOTS][];
+        for (int i = 0; i < DEPOTS; i++) {
+            points[i] = new double[] { 50 + random.nextDouble() * 5, 30 + random.nextDouble() * 10 };
+            builder.addDepot("depot-" + i, Map.of("latitude", points[i][0], "longitude", points[i][1]));
+        }
+        for (int i = 0; i < DEPOTS * 4; i++) {
+            int source = random.nextInt(DEPOTS);
+            int target = random.nextInt(DEPOTS);
+            if (source == target) {
+                continue;
+            }
+            double straight = GeoDistance.haversineKm(points[source][0], points[source][1],
+                    points[target][0], points[target][1]);
+            double capacity = random.nextDouble() < 0.2 ? Double.NaN : random.nextInt(1000);
+            builder.addRoute("depot-" + source, "depot-" + target, straight * (1 + random.nextDouble()),
+                    random.nextDouble() * 0.5, capacity, random.nextDouble() < 0.9);
+        }
+        return builder.build();
+    }
+
+    private static void assertMatchesBellmanFord(SupplyNetwork network, int from, int to, Metric metric, int maxHops,
+                                                 double minCapacity, Result result) {
+        double expected = bellmanFord(network, from, to, metric, maxHops, minCapacity);
+        String query = metric + " " + from + "->" + to + " within " + maxHops + " hops";
+        assertFalse(result.truncated(), query);
+        if (Double.isInfinite(expected)) {
+            assertFalse(result.found(), query);
+            return;
+        }
+        assertTrue(result.found(), query);
+        double reported = metric == Metric.RISK ? -Math.log1p(-result.cost()) : result.cost();
+        assertEquals(expected, reported, EPSILON * Math.max(1, expected), query);
+
+        // The routes form a usable chain from the start to the destination that costs what was reported
+        assertTrue(result.routes().size() <= maxHops, query);
+        assertEquals(result.routes().size() + 1, result.depots().size(), query);
+        assertEquals(from, result.depots().get(0), query);
+        assertEquals(to, result.depots().get(result.depots().size() - 1), query);
+        double sum = 0;
+        for (int i = 0; i < result.routes().size(); i++) {
+            int route = result.routes().get(i);
+            assertTrue(network.isActive(route), query);
+            assertFalse(network.capacity(route) < minCapacity, query);
+            assertEquals(result.depots().get(i + 1), network.target(route), query);
+            assertTrue(route >= network.firstRoute(result.depots().get(i))
+                    && route < network.endRoute(result.depots().get(i)), query);
+            sum += RouteSearch.cost(network, route, metric, 1);
+        }
+        assertEquals(expected, sum, EPSILON * Math.max(1, expected), query);
+    }
+
+    // Cheapest cost with at most maxHops routes, in additive units (-ln of survival for RISK)
+    private static double bellmanFord(SupplyNetwork network, int from, int to, Metric metric, int maxHops,
+                                      double minCapacity) {
+        double[] cost = new double[network.size()];
+        Arrays.fill(cost, Double.POSITIVE_INFINITY);
+        cost[from] = 0;
+        for (int hop = 0; hop < maxHops; hop++) {
+            double[] next = cost.clone();
+            for (int depot = 0; depot < network.size(); depot++) {
+                if (Double.isInfinite(cost[depot])) {
+                    continue;
+                }
+                for (int route = network.firstRoute(depot); route < network.endRoute(depot); route++) {
+                    if (!network.isActive(route) || network.capacity(route) < minCapacity) {
+                        continue;
+                    }
+                    int target = network.target(route);
+                    next[target] = Math.min(next[target], cost[depot] + RouteSearch.cost(network, route, metric, 1));
+                }
+            }
+            cost = next;
+        }
+        return cost[to];
+    }
+}
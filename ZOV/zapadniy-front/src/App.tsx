@@ -77,14 +77,7 @@ function App() {
     if (currentUser?.id) {
       socketService.connect(currentUser.id);
       
-      // Set up event handlers
-      socketService.onUserLocationUpdate((updatedUser) => {
-        if (updatedUser.id === currentUser.id) {
-          // Update the current user if it's us
-          setCurrentUser(updatedUser);
-        }
-      });
-      
+      // Set up event handlers; our own location comes back from the location update request
       socketService.onSocialRatingUpdate((updatedUser) => {
         if (updatedUser.id === currentUser.id) {
           // Update our social rating
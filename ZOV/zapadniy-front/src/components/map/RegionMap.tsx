@@ -1,10 +1,11 @@
 import React, { useState, useEffect } from 'react';
-import { MapContainer, TileLayer, Marker, Popup, Polygon, useMap } from 'react-leaflet';
-import { Region , GeoLocation } from '../../types';
+import { MapContainer, TileLayer, Marker, Popup, Polygon, CircleMarker, useMap, useMapEvents } from 'react-leaflet';
+import { Region , GeoLocation, UserPosition } from '../../types';
 import { ExclamationTriangleIcon } from '@heroicons/react/24/solid';
 import 'leaflet/dist/leaflet.css';
 import L from 'leaflet';
 import { regionService } from '../../services/regionService';
+import { socketService } from '../../services/socketService';
 
 // Fix the marker icon issue in Leaflet with React
 delete (L.Icon.Default.prototype as any)._getIconUrl;
@@ -37,6 +38,52 @@ const MapCenter: React.FC<{ center: [number, number] }> = ({ center }) => {
   return null;
 };
 
+// Live positions of the users inside the visible map area, fed by the tile topics of the viewport
+const ViewportUsers: React.FC = () => {
+  const [positions, setPositions] = useState<Map<string, UserPosition>>(new Map());
+
+  const subscribe = (bounds: L.LatLngBounds) => {
+    // Users of tiles that are no longer visible get no further updates, so they are dropped now
+    setPositions(prev => new Map([...prev].filter(([, p]) => bounds.contains([p.lat, p.lon]))));
+    socketService.subscribeToViewport(bounds.getSouth(), bounds.getWest(), bounds.getNorth(), bounds.getEast(),
+      (update) => {
+        setPositions(prev => {
+          const next = new Map(prev);
+          update.left?.forEach(id => next.delete(id));
+          update.moved?.forEach(position => next.set(position.id, position));
+          return next;
+        });
+      });
+  };
+
+  const map = useMapEvents({
+    moveend: () => subscribe(map.getBounds()),
+    zoomend: () => subscribe(map.getBounds())
+  });
+
+  useEffect(() => {
+    subscribe(map.getBounds());
+    return () => socketService.unsubscribeFromViewport();
+  }, [map]);
+
+  return (
+    <>
+      {[...positions.values()].map(position => (
+        <CircleMarker
+          key={position.id}
+          center={[position.lat, position.lon]}
+          radius={4}
+          pathOptions={{ color: '#2563eb', fillOpacity: 0.8, weight: 1 }}
+        >
+          <Popup>
+            <p className="text-sm">Rating: {position.rating.toFixed(1)} ({position.status})</p>
+          </Popup>
+        </CircleMarker>
+      ))}
+    </>
+  );
+};
+
 const RegionMap: React.FC<RegionMapProps> = ({ 
   regions, 
   currentLocation, 
@@ -183,6 +230,8 @@ const RegionMap: React.FC<RegionMapProps> = ({
       
       <MapCenter center={center} />
       
+      <ViewportUsers />
+      
       {displayRegions && displayRegions.length > 0 ? (
         // First render the parent region (if we have one)
         displayRegions
@@ -1,7 +1,43 @@
 import { useState, useEffect } from 'react';
-import { User, GeoLocation } from '../types';
+import { User, GeoLocation, NearbyEntry, NearbyUsersUpdate } from '../types';
 import { userService, socketService } from '../services';
 
+// Fills in the User fields the list shows from a compact nearby entry
+const toUser = (nearby: NearbyEntry, previous?: User): User => ({
+  ...(previous ?? { regionId: '', districtId: '', countryId: '', active: true, lastLocationUpdateTimestamp: 0 }),
+  id: nearby.id,
+  username: nearby.username,
+  fullName: nearby.fullName,
+  socialRating: nearby.rating,
+  status: nearby.status,
+  currentLocation: { latitude: nearby.lat, longitude: nearby.lon }
+});
+
+const applyUpdate = (users: User[], update: NearbyUsersUpdate): User[] => {
+  if (update.full) {
+    return (update.entered ?? []).map(nearby => toUser(nearby, users.find(user => user.id === nearby.id)));
+  }
+  const left = new Set(update.left ?? []);
+  const moved = new Map((update.moved ?? []).map(position => [position.id, position]));
+  const result = users
+    .filter(user => !left.has(user.id!))
+    .map(user => {
+      const position = moved.get(user.id!);
+      return position ? {
+        ...user,
+        socialRating: position.rating,
+        status: position.status,
+        currentLocation: { latitude: position.lat, longitude: position.lon }
+      } : user;
+    });
+  for (const nearby of update.entered ?? []) {
+    if (!result.some(user => user.id === nearby.id)) {
+      result.push(toUser(nearby));
+    }
+  }
+  return result;
+};
+
 export function useNearbyUsers(currentLocation: GeoLocation | null, currentUserId: string | undefined, maxDistance: number = 5) {
   const [nearbyUsers, setNearbyUsers] = useState<User[]>([]);
   const [loading, setLoading] = useState(true);
@@ -30,9 +66,9 @@ export function useNearbyUsers(currentLocation: GeoLocation | null, currentUserI
 
     // Set up socket listener for real-time updates
     if (socketService.isConnected()) {
-      socketService.onUsersNearbyUpdate((users) => {
-        const filteredUsers = users.filter(user => user.id !== currentUserId);
-        setNearbyUsers(filteredUsers);
+      socketService.onUsersNearbyUpdate((update) => {
+        setNearbyUsers(prevUsers =>
+          applyUpdate(prevUsers, update).filter(user => user.id !== currentUserId));
       });
     }
 
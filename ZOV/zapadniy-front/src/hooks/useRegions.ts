@@ -2,12 +2,24 @@ import { useState, useEffect } from 'react';
 import { MissileType, Region, RegionType } from '../types';
 import { regionService, missileService, socketService } from '../services';
 
+// Zoom level the region outlines are simplified for
+const MAP_GEOMETRY_ZOOM = 10;
+
 export function useRegions(regionType: RegionType = RegionType.COUNTRY) {
   const [regions, setRegions] = useState<Region[]>([]);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState<string | null>(null);
   const [targetRegionId, setTargetRegionId] = useState<string | null>(null);
 
+  const refreshGeometry = async (regionId: string) => {
+    try {
+      const fresh = await regionService.getRegionByIdCompact(regionId, MAP_GEOMETRY_ZOOM);
+      setRegions(prevRegions => prevRegions.map(region => region.id === fresh.id ? fresh : region));
+    } catch (err) {
+      console.error('Error refreshing region geometry:', err);
+    }
+  };
+
   useEffect(() => {
     const fetchRegions = async () => {
       try {
@@ -15,7 +27,7 @@ export function useRegions(regionType: RegionType = RegionType.COUNTRY) {
         await regionService.updateAllRegionsStatistics();
         
         // Then fetch the regions with updated data
-        const fetchedRegions = await regionService.getRegionsByType(regionType);
+        const fetchedRegions = await regionService.getRegionsByTypeCompact(regionType, MAP_GEOMETRY_ZOOM);
         console.log('Fetched regions:', fetchedRegions);
         setRegions(fetchedRegions);
         setLoading(false);
@@ -30,15 +42,32 @@ export function useRegions(regionType: RegionType = RegionType.COUNTRY) {
 
     // Set up socket listener for real-time updates
     if (socketService.isConnected()) {
-      socketService.onRegionStatusUpdate((updatedRegion) => {
-        if (updatedRegion.type === regionType) {
+      socketService.onRegionStatusUpdate((status) => {
+        if (status.type === regionType) {
+          // Status messages carry stats only; keep the boundary unless its version changed
           setRegions(prevRegions => 
-            prevRegions.map(region => 
-              region.id === updatedRegion.id ? updatedRegion : region
-            )
+            prevRegions.map(region => {
+              if (region.id !== status.id) {
+                return region;
+              }
+              if (region.geometryVersion !== status.geometryVersion) {
+                refreshGeometry(status.id);
+              }
+              return { ...region, ...status, boundaries: region.boundaries };
+            })
           );
         }
       });
+
+      socketService.onRegionStatusDelta((deltas) => {
+        const byId = new Map(deltas.map(delta => [delta.id, delta]));
+        setRegions(prevRegions =>
+          prevRegions.map(region => {
+            const delta = byId.get(region.id!);
+            return delta ? { ...region, ...delta } : region;
+          })
+        );
+      });
     }
   }, [regionType]);
 
@@ -66,8 +95,11 @@ export function useRegions(regionType: RegionType = RegionType.COUNTRY) {
   const updateRegionStatistics = async () => {
     try {
       await regionService.updateAllRegionsStatistics();
-      // Refetch regions to get updated data
-      const updatedRegions = await regionService.getRegionsByType(regionType);
+      // With a live socket the changes arrive as a delta frame
+      if (socketService.isConnected()) {
+        return;
+      }
+      const updatedRegions = await regionService.getRegionsByTypeCompact(regionType, MAP_GEOMETRY_ZOOM);
       setRegions(updatedRegions);
     } catch (err) {
       setError('Failed to update region statistics');
@@ -97,7 +129,7 @@ export function useRegions(regionType: RegionType = RegionType.COUNTRY) {
       await updateRegionStatistics();
       
       // Specifically update the display regions
-      const updatedRegions = await regionService.getRegionsByType(regionType);
+      const updatedRegions = await regionService.getRegionsByTypeCompact(regionType, MAP_GEOMETRY_ZOOM);
       setRegions(updatedRegions);
     } catch (err) {
       console.error('Failed to launch missile:', err);
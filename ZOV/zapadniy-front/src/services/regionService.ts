@@ -1,5 +1,5 @@
 import api from './api';
-import { Region, RegionType, GeoLocation } from '../types';
+import { Region, RegionType, GeoLocation, HeatmapCell, CompactRegion } from '../types';
 
 // Transform GeoJsonPolygon from backend to GeoLocation[] for frontend
 const transformRegionBoundaries = (region: any): Region => {
@@ -52,6 +52,37 @@ const transformRegionBoundaries = (region: any): Region => {
   return transformedRegion as Region;
 };
 
+// Decode an encoded polyline (5 decimal digits) into points
+const decodePolyline = (encoded: string): GeoLocation[] => {
+  const points: GeoLocation[] = [];
+  let index = 0;
+  let lat = 0;
+  let lng = 0;
+  const readValue = (): number => {
+    let result = 0;
+    let shift = 0;
+    let b: number;
+    do {
+      b = encoded.charCodeAt(index++) - 63;
+      result |= (b & 0x1f) << shift;
+      shift += 5;
+    } while (b >= 0x20);
+    return (result & 1) ? ~(result >> 1) : (result >> 1);
+  };
+  while (index < encoded.length) {
+    lat += readValue();
+    lng += readValue();
+    points.push({ latitude: lat / 1e5, longitude: lng / 1e5 });
+  }
+  return points;
+};
+
+// Expand a compact region into the shape the map components use (outer ring only)
+const fromCompactRegion = (compact: CompactRegion): Region => ({
+  ...compact.status,
+  boundaries: compact.rings.length > 0 ? decodePolyline(compact.rings[0]) : []
+});
+
 export const regionService = {
   getAllRegions: async (): Promise<Region[]> => {
     const response = await api.get('/regions');
@@ -86,6 +117,20 @@ export const regionService = {
     return response.data.map(transformRegionBoundaries);
   },
   
+  getRegionsByTypeCompact: async (type: RegionType, zoom: number): Promise<Region[]> => {
+    const response = await api.get(`/regions/type/${type}/compact`, {
+      params: { zoom }
+    });
+    return response.data.map(fromCompactRegion);
+  },
+  
+  getRegionByIdCompact: async (id: string, zoom: number): Promise<Region> => {
+    const response = await api.get(`/regions/${id}/compact`, {
+      params: { zoom }
+    });
+    return fromCompactRegion(response.data);
+  },
+  
   getSubRegions: async (parentId: string): Promise<Region[]> => {
     const response = await api.get(`/regions/parent/${parentId}`);
     return response.data.map(transformRegionBoundaries);
@@ -120,5 +165,13 @@ export const regionService = {
   getRegionsUnderThreat: async (type: RegionType): Promise<Region[]> => {
     const response = await api.get(`/regions/under-threat/${type}`);
     return response.data.map(transformRegionBoundaries);
+  },
+  
+  // bbox is "minLon,minLat,maxLon,maxLat", e.g. from Leaflet's map.getBounds().toBBoxString()
+  getHeatmap: async (bbox: string, zoom: number): Promise<HeatmapCell[]> => {
+    const response = await api.get('/regions/heatmap', {
+      params: { bbox, zoom }
+    });
+    return response.data;
   }
 }; 
\ No newline at end of file
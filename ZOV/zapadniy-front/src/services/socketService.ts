@@ -1,14 +1,40 @@
 import { Client } from '@stomp/stompjs';
 import SockJS from 'sockjs-client';
-import { User, Region } from '../types';
+import { User, RegionStatus, RegionStatusDelta, NearbyUsersUpdate, TileUpdate } from '../types';
 
 // Use a relative URL for WebSocket connection
 const SOCKET_URL = '/ws';
 
+// Zoom levels the server routes location frames to (zov.websocket.tile-zooms)
+const TILE_ZOOMS = [6, 9, 12];
+const MAX_VIEWPORT_TILES = 16;
+
+interface Viewport {
+  south: number;
+  west: number;
+  north: number;
+  east: number;
+  callback: (update: TileUpdate) => void;
+}
+
+const tileX = (longitude: number, zoom: number): number => {
+  const n = 1 << zoom;
+  return Math.min(n - 1, Math.max(0, Math.floor((longitude + 180) / 360 * n)));
+};
+
+const tileY = (latitude: number, zoom: number): number => {
+  const n = 1 << zoom;
+  const lat = Math.max(-85.05112878, Math.min(85.05112878, latitude)) * Math.PI / 180;
+  return Math.min(n - 1, Math.max(0, Math.floor((1 - Math.log(Math.tan(lat) + 1 / Math.cos(lat)) / Math.PI) / 2 * n)));
+};
+
 class SocketService {
   private stompClient: Client | null = null;
   private userId: string | null = null;
   private subscriptions: any[] = [];
+  private tileSubscriptions = new Map<string, any>();
+  private viewport: Viewport | null = null;
+  private nearbySeq = 0;
 
   connect(userId: string): void {
     this.userId = userId;
@@ -21,20 +47,30 @@ class SocketService {
       },
       reconnectDelay: 5000,
       heartbeatIncoming: 4000,
-      heartbeatOutgoing: 4000
+      heartbeatOutgoing: 4000,
+      // The server addresses /user/queue destinations to the user named here
+      connectHeaders: { userId }
     });
 
     this.stompClient.onConnect = (frame) => {
       console.log('Socket connected for user:', userId);
       
+      // Subscribe to user-specific and global topics before the connect
+      // message, so the replies it triggers are not missed
+      this.subscribeToTopics();
+      
+      // Tile subscriptions of the previous connection are gone after a reconnect
+      this.tileSubscriptions.clear();
+      if (this.viewport) {
+        const { south, west, north, east, callback } = this.viewport;
+        this.subscribeToViewport(south, west, north, east, callback);
+      }
+      
       // Send connect message
       this.stompClient?.publish({
         destination: '/app/connect',
         body: userId
       });
-      
-      // Subscribe to user-specific and global topics
-      this.subscribeToTopics();
     };
 
     this.stompClient.onStompError = (frame) => {
@@ -51,21 +87,22 @@ class SocketService {
     // Clear any existing subscriptions
     this.clearSubscriptions();
     
-    // Subscribe to global topics
+    // Subscribe to global topics; user locations come per viewport tile, see subscribeToViewport
     this.subscriptions.push(
-      this.stompClient.subscribe('/topic/user-location-update', (message) => {
-        const user = JSON.parse(message.body);
-        if (this.callbacks.userLocationUpdate) {
-          this.callbacks.userLocationUpdate(user);
+      this.stompClient.subscribe('/topic/region-status-update', (message) => {
+        const status = JSON.parse(message.body);
+        if (this.callbacks.regionStatusUpdate) {
+          this.callbacks.regionStatusUpdate(status);
         }
       })
     );
     
     this.subscriptions.push(
-      this.stompClient.subscribe('/topic/region-status-update', (message) => {
-        const region = JSON.parse(message.body);
-        if (this.callbacks.regionStatusUpdate) {
-          this.callbacks.regionStatusUpdate(region);
+      this.stompClient.subscribe('/topic/region-status-delta', (message) => {
+        // One frame per bulk recompute listing only the regions and fields that changed
+        const deltas: RegionStatusDelta[] = JSON.parse(message.body);
+        if (this.callbacks.regionStatusDelta) {
+          this.callbacks.regionStatusDelta(deltas);
         }
       })
     );
@@ -80,17 +117,28 @@ class SocketService {
     );
     
     // Subscribe to user-specific topics
+    this.nearbySeq = 0;
     this.subscriptions.push(
-      this.stompClient.subscribe(`/user/${this.userId}/queue/users-nearby-update`, (message) => {
-        const users = JSON.parse(message.body);
+      this.stompClient.subscribe('/user/queue/users-nearby-update', (message) => {
+        // Only changes since the previous update arrive; a gap in seq means one
+        // was lost, so drop diffs and ask for the full list until it arrives
+        const update: NearbyUsersUpdate = JSON.parse(message.body);
+        if (!update.full && update.seq !== this.nearbySeq + 1) {
+          if (this.nearbySeq !== -1) {
+            this.nearbySeq = -1;
+            this.stompClient?.publish({ destination: '/app/nearby-resync', body: '' });
+          }
+          return;
+        }
+        this.nearbySeq = update.seq;
         if (this.callbacks.usersNearbyUpdate) {
-          this.callbacks.usersNearbyUpdate(users);
+          this.callbacks.usersNearbyUpdate(update);
         }
       })
     );
     
     this.subscriptions.push(
-      this.stompClient.subscribe(`/user/${this.userId}/queue/social-rating-update`, (message) => {
+      this.stompClient.subscribe('/user/queue/social-rating-update', (message) => {
         const user = JSON.parse(message.body);
         if (this.callbacks.socialRatingUpdate) {
           this.callbacks.socialRatingUpdate(user);
@@ -110,8 +158,59 @@ class SocketService {
     this.subscriptions = [];
   }
 
+  /**
+   * Subscribe to location frames for the map tiles covering the viewport only.
+   * Uses the finest routed zoom that needs at most MAX_VIEWPORT_TILES tiles;
+   * tiles that left the viewport are unsubscribed. The viewport is kept and
+   * subscribed again after a reconnect.
+   */
+  subscribeToViewport(south: number, west: number, north: number, east: number,
+                      callback: (update: TileUpdate) => void): void {
+    this.viewport = { south, west, north, east, callback };
+    if (!this.stompClient || !this.stompClient.connected) return;
+
+    let wanted: string[] = [];
+    for (const zoom of [...TILE_ZOOMS].reverse()) {
+      const minX = tileX(west, zoom), maxX = tileX(east, zoom);
+      const minY = tileY(north, zoom), maxY = tileY(south, zoom);
+      if ((maxX - minX + 1) * (maxY - minY + 1) > MAX_VIEWPORT_TILES && zoom !== TILE_ZOOMS[0]) {
+        continue;
+      }
+      wanted = [];
+      for (let x = minX; x <= maxX; x++) {
+        for (let y = minY; y <= maxY; y++) {
+          wanted.push(`${zoom}/${x}/${y}`);
+        }
+      }
+      break;
+    }
+
+    this.tileSubscriptions.forEach((subscription, tile) => {
+      if (!wanted.includes(tile)) {
+        subscription.unsubscribe();
+        this.tileSubscriptions.delete(tile);
+      }
+    });
+    for (const tile of wanted) {
+      if (!this.tileSubscriptions.has(tile)) {
+        this.tileSubscriptions.set(tile, this.stompClient.subscribe(`/topic/tiles/${tile}`, (message) => {
+          callback(JSON.parse(message.body));
+        }));
+      }
+    }
+  }
+
+  unsubscribeFromViewport(): void {
+    this.viewport = null;
+    this.tileSubscriptions.forEach(subscription => subscription.unsubscribe());
+    this.tileSubscriptions.clear();
+  }
+
   disconnect(): void {
     this.clearSubscriptions();
+    // The viewport stays, so the map is subscribed again on the next connect
+    this.tileSubscriptions.forEach(subscription => subscription.unsubscribe());
+    this.tileSubscriptions.clear();
     
     if (this.stompClient) {
       this.stompClient.deactivate();
@@ -123,25 +222,25 @@ class SocketService {
 
   // Callback storage
   private callbacks: {
-    userLocationUpdate?: (user: User) => void;
-    usersNearbyUpdate?: (users: User[]) => void;
-    regionStatusUpdate?: (region: Region) => void;
+    usersNearbyUpdate?: (update: NearbyUsersUpdate) => void;
+    regionStatusUpdate?: (status: RegionStatus) => void;
+    regionStatusDelta?: (deltas: RegionStatusDelta[]) => void;
     missileLaunch?: (data: { regionId: string, missileType: string }) => void;
     socialRatingUpdate?: (user: User) => void;
   } = {};
 
-  onUserLocationUpdate(callback: (user: User) => void): void {
-    this.callbacks.userLocationUpdate = callback;
-  }
-
-  onUsersNearbyUpdate(callback: (users: User[]) => void): void {
+  onUsersNearbyUpdate(callback: (update: NearbyUsersUpdate) => void): void {
     this.callbacks.usersNearbyUpdate = callback;
   }
 
-  onRegionStatusUpdate(callback: (region: Region) => void): void {
+  onRegionStatusUpdate(callback: (status: RegionStatus) => void): void {
     this.callbacks.regionStatusUpdate = callback;
   }
 
+  onRegionStatusDelta(callback: (deltas: RegionStatusDelta[]) => void): void {
+    this.callbacks.regionStatusDelta = callback;
+  }
+
   onMissileLaunch(callback: (data: { regionId: string, missileType: string }) => void): void {
     this.callbacks.missileLaunch = callback;
   }
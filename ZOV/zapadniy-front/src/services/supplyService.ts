@@ -46,8 +46,11 @@ export const supplyService = {
   },
 
   // Routes
-  getAllRoutes: async (): Promise<SupplyRoute[]> => {
-    const response = await api.get("/missile-supply/routes");
+  // bbox limits the result to routes crossing a viewport: minLon,minLat,maxLon,maxLat
+  getAllRoutes: async (bbox?: string): Promise<SupplyRoute[]> => {
+    const response = await api.get("/missile-supply/routes", {
+      params: bbox ? { bbox } : undefined,
+    });
     return response.data;
   },
 
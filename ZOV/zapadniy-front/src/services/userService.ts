@@ -1,5 +1,5 @@
 import api from './api';
-import { User, GeoLocation } from '../types';
+import { User, GeoLocation, RatingAck } from '../types';
 
 export const userService = {
   login: async (username: string, password: string): Promise<User> => {
@@ -52,7 +52,7 @@ export const userService = {
     return response.data;
   },
   
-  updateSocialRating: async (id: string, rating: number, raterId?: string): Promise<User> => {
+  updateSocialRating: async (id: string, rating: number, raterId?: string): Promise<RatingAck> => {
     const params: any = { rating };
     if (raterId) {
       params.raterId = raterId;
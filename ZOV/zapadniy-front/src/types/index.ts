@@ -55,6 +55,36 @@ export interface Region {
   populationCount: number;
   importantPersonsCount: number;
   underThreat: boolean;
+  geometryVersion?: number;
+}
+
+// Region statistics broadcast without the boundary
+export interface RegionStatus {
+  id: string;
+  name: string;
+  type: RegionType;
+  parentRegionId?: string;
+  averageSocialRating: number;
+  populationCount: number;
+  importantPersonsCount: number;
+  underThreat: boolean;
+  geometryVersion: number;
+}
+
+// Changed statistics of one region after a bulk recompute; unchanged fields are omitted
+export interface RegionStatusDelta {
+  id: string;
+  averageSocialRating?: number;
+  populationCount?: number;
+  importantPersonsCount?: number;
+  underThreat?: boolean;
+}
+
+// Boundary rings are encoded polylines simplified for the requested zoom
+export interface CompactRegion {
+  status: RegionStatus;
+  zoom: number;
+  rings: string[];
 }
 
 export interface Missile {
@@ -67,6 +97,7 @@ export interface Missile {
   lastMaintenanceDate: string;
   supplyDepotId: string;
   currentLocation: GeoLocation;
+  version?: number; // Sent back on update so a stale edit is rejected with 409
 }
 
 export interface SupplyDepot {
@@ -80,6 +111,51 @@ export interface SupplyDepot {
   securityLevel?: string;
 }
 
+// Entry of a batched location frame, nationwide or per map tile
+export interface UserPosition {
+  id: string;
+  lat: number;
+  lon: number;
+  rating: number;
+  status: SocialStatus;
+}
+
+// One tick of changes on /topic/tiles/{z}/{x}/{y}: users that moved in or within
+// the tile, and users that left it for another tile or were removed
+export interface TileUpdate {
+  moved?: UserPosition[];
+  left?: string[];
+}
+
+// User in a nearby-user list, coordinates rounded to about a meter
+export interface NearbyEntry {
+  id: string;
+  username: string;
+  fullName: string;
+  lat: number;
+  lon: number;
+  rating: number;
+  status: SocialStatus;
+}
+
+// Change to a session's nearby-user list; a full update replaces the list,
+// otherwise it lists who entered, moved or left. seq grows by one per update.
+export interface NearbyUsersUpdate {
+  seq: number;
+  full?: boolean;
+  entered?: NearbyEntry[];
+  moved?: UserPosition[];
+  left?: string[];
+}
+
+// Answer to a queued rating change; the updated users follow over the socket
+export interface RatingAck {
+  sequence: number;
+  partition: number;
+  accepted: boolean;
+  queueDepth: number;
+}
+
 export interface SupplyRoute {
   sourceDepotId: string;
   targetDepotId: string;
@@ -89,4 +165,13 @@ export interface SupplyRoute {
   transportType?: string;
   securityLevel?: string;
   capacity?: number;
-} 
\ No newline at end of file
+}
+
+export interface HeatmapCell {
+  geohash: string;
+  latitude: number;
+  longitude: number;
+  count: number;
+  ratingSum: number;
+  averageRating: number;
+}